@@ -0,0 +1,274 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Class that runs micro-benchmarks and reports the average time and the number of bytes allocated per operation,
+ * in the style of JMH with -prof gc. Each benchmark is warmed up for a few iterations (so that the JIT compiler
+ * has compiled it) before it is measured. The results can be saved to a file and compared with the results of
+ * an earlier run, to track regressions.
+ * <p>
+ * Like JMH, each benchmark runs in a fresh JVM by default (a fork of the runner with the same class path and JVM
+ * options), so that the profile the JIT compiler gathers for one benchmark (for example at the call site of
+ * Operation.run, which every benchmark shares) does not affect the code compiled for the next one, and the result
+ * of a benchmark does not depend on the benchmarks run before it.
+ * <p>
+ * The bytes allocated are counted on all threads, so that benchmarks that run on several processors are measured
+ * in full; only the threads that are still alive at the end of an iteration are counted.
+ * <p>
+ * Usage: BenchmarkRunner [regex] [-o results.csv] [-c baseline.csv] [-f 0], where regex selects the benchmarks to
+ * run by name (all by default), and -f 0 runs them all in this JVM instead of forking.
+ */
+public class BenchmarkRunner {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+
+    /**
+     * A benchmarked operation. Its result is consumed by the runner, so that the JIT compiler cannot remove the
+     * work done to compute it
+     */
+    public interface Operation {
+        long run();
+    }
+
+    public record Result(String name, double nanosPerOp, double errorNanosPerOp, double bytesPerOp) {
+    }
+
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<Operation> operations = new ArrayList<>();
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private long sink;              // consumes the results of the operations
+    public static volatile long escape;
+
+    public void add(String name, Operation operation) {
+        names.add(name);
+        operations.add(operation);
+    }
+
+    /**
+     * Runs every benchmark whose name contains a match of the given regular expression, printing its result
+     * @param fork true to run each benchmark in a fresh JVM, false to run them all in this one
+     * @return the results, in the order in which the benchmarks were added, leaving out the ones whose fork failed
+     */
+    public ArrayList<Result> run(String regex, boolean fork) {
+        Pattern pattern = Pattern.compile(regex);
+        ArrayList<Result> results = new ArrayList<>();
+
+        for(int i = 0; i < names.size(); i++) {
+            if(pattern.matcher(names.get(i)).find()) {
+                Result result = fork ? measureInFork(names.get(i)) : measure(names.get(i), operations.get(i));
+                if(result == null) {
+                    System.out.println(names.get(i) + " failed");
+                    continue;
+                }
+                if(!fork) {     // a fork prints its own result
+                    System.out.printf("%-45s %12.1f +- %8.1f ns/op %10.1f B/op%n", result.name(), result.nanosPerOp(),
+                            result.errorNanosPerOp(), result.bytesPerOp());
+                }
+                results.add(result);
+            }
+        }
+        escape = sink;
+        return results;
+    }
+
+    // runs a single benchmark in a new JVM, which saves its result to a file; returns null if the fork fails
+    private static Result measureInFork(String name) {
+        try {
+            File file = File.createTempFile("benchmark", ".csv");
+            file.deleteOnExit();
+
+            ArrayList<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), BenchmarkRunner.class.getName(),
+                    "-f", "0", "-o", file.getPath(), "^" + Pattern.quote(name) + "$"));
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            if(process.waitFor() != 0) {
+                return null;
+            }
+
+            ArrayList<Result> results = new ArrayList<>();
+            return load(file.getPath(), results) == 0 && results.size() == 1 ? results.get(0) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Result measure(String name, Operation operation) {
+        long batch = 1;
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            batch = runIteration(operation, batch)[2];
+        }
+
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+        long totalOps = 0, totalBytes = 0;
+        for(int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long[] iteration = runIteration(operation, batch);
+            nanosPerOp[i] = (double) iteration[0] / iteration[2];
+            totalBytes += iteration[1];
+            totalOps += iteration[2];
+        }
+
+        double mean = 0;
+        for(double value : nanosPerOp) {
+            mean += value / MEASUREMENT_ITERATIONS;
+        }
+        double variance = 0;
+        for(double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean) / (MEASUREMENT_ITERATIONS - 1);
+        }
+        return new Result(name, mean, Math.sqrt(variance), (double) totalBytes / totalOps);
+    }
+
+    /*
+    Runs the operation in batches until the iteration time has passed. The batch size doubles until a batch takes
+    at least 1/100 of the iteration time, so that reading the clock does not affect the results.
+    Returns {elapsed nanoseconds, allocated bytes, number of operations}.
+     */
+    private long[] runIteration(Operation operation, long batch) {
+        HashMap<Long, Long> startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed = 0, ops = 0;
+
+        while(elapsed < ITERATION_NANOS) {
+            long batchStart = System.nanoTime();
+            for(long i = 0; i < batch; i++) {
+                sink += operation.run();
+            }
+            ops += batch;
+            long now = System.nanoTime();
+            if(now - batchStart < ITERATION_NANOS / 100) {
+                batch *= 2;
+            }
+            elapsed = now - start;
+        }
+
+        long bytes = 0;
+        for(var thread : allocatedBytes().entrySet()) {
+            bytes += thread.getValue() - startBytes.getOrDefault(thread.getKey(), 0L);
+        }
+        return new long[] {elapsed, bytes, ops};
+    }
+
+    // the number of bytes allocated so far by each live thread, by thread id
+    private HashMap<Long, Long> allocatedBytes() {
+        long[] ids = threadBean.getAllThreadIds();
+        long[] bytes = threadBean.getThreadAllocatedBytes(ids);
+        HashMap<Long, Long> allocated = new HashMap<>();
+        for(int i = 0; i < ids.length; i++) {
+            if(bytes[i] >= 0) {     // -1 for threads that have ended
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Attempts to save results to the file with the given filename, one line per benchmark
+     * @return 0 for success, -1 for error
+     */
+    public static int save(ArrayList<Result> results, String filename) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
+            for(Result result : results) {
+                out.println(result.name() + "," + result.nanosPerOp() + "," + result.errorNanosPerOp() + ","
+                        + result.bytesPerOp());
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Prints the change in time and allocation of each result compared with the results saved in the file with
+     * the given filename (benchmarks missing from the file are skipped)
+     * @return 0 for success, 1 for results file formatting error, 2 for general file error
+     */
+    public static int compare(ArrayList<Result> results, String filename) {
+        ArrayList<Result> saved = new ArrayList<>();
+        int status = load(filename, saved);
+        if(status != 0) {
+            return status;
+        }
+        HashMap<String, Result> baseline = new HashMap<>();
+        for(Result result : saved) {
+            baseline.put(result.name(), result);
+        }
+
+        for(Result result : results) {
+            Result old = baseline.get(result.name());
+            if(old != null) {
+                System.out.printf("%-45s %+8.1f%% time %+10.1f B/op%n", result.name(),
+                        100 * (result.nanosPerOp() - old.nanosPerOp()) / old.nanosPerOp(),
+                        result.bytesPerOp() - old.bytesPerOp());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Attempts to load the results saved in the file with the given filename (see save)
+     * @param results the list the results are added to
+     * @return 0 for success, 1 for results file formatting error, 2 for general file error
+     */
+    public static int load(String filename, ArrayList<Result> results) {
+        try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                if(fields.length != 4) {
+                    return 1;
+                }
+                results.add(new Result(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3])));
+            }
+        } catch (NumberFormatException e) {
+            return 1;
+        } catch (IOException e) {
+            return 2;
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) {
+        String regex = "";
+        String outputFile = null, baselineFile = null;
+        boolean fork = true;
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-o") && i + 1 < args.length) {
+                outputFile = args[++i];
+            } else if(args[i].equals("-c") && i + 1 < args.length) {
+                baselineFile = args[++i];
+            } else if(args[i].equals("-f") && i + 1 < args.length) {
+                fork = !args[++i].equals("0");
+            } else {
+                regex = args[i];
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        BoardBenchmark.addTo(runner);
+        RayBenchmark.addTo(runner);
+        SolverBenchmark.addTo(runner);
+        ArrayList<Result> results = runner.run(regex, fork);
+
+        if(outputFile != null && save(results, outputFile) != 0) {
+            System.out.println("Could not save results to " + outputFile);
+        }
+        if(baselineFile != null && compare(results, baselineFile) != 0) {
+            System.out.println("Could not read baseline results from " + baselineFile);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Benchmarks for building boards: constructing the cells and their neighbours, placing atoms and counting them,
+ * on empty, sparse (the 6 atoms of a game) and dense boards
+ */
+public class BoardBenchmark {
+
+    static final int[] NUM_ATOMS = {0, 6, 20};
+
+    public static void addTo(BenchmarkRunner runner) {
+        runner.add("BoardBenchmark.newBoard", () -> new Board().getNumCells());
+
+        for(int numAtoms : NUM_ATOMS) {
+            // generateAtoms only adds atoms, so every call needs a new board to place them on
+            runner.add("BoardBenchmark.newBoardWithAtoms:" + numAtoms, () -> {
+                Board board = new Board();
+                board.generateAtoms(numAtoms);
+                return board.getNumCells();
+            });
+
+            BoardPool pool = new BoardPool(1);
+            runner.add("BoardBenchmark.pooledBoardWithAtoms:" + numAtoms, () -> {
+                Board board = pool.acquire();
+                board.generateAtoms(numAtoms);
+                int numCells = board.getNumCells();
+                pool.release(board);
+                return numCells;
+            });
+
+            Board board = RayBenchmark.createBoard(numAtoms);
+            runner.add("BoardBenchmark.countAtoms:" + numAtoms, board::countAtoms);
+
+            // one operation generates a million layouts, on all available processors
+            LayoutGenerator generator = new LayoutGenerator(26);
+            runner.add("BoardBenchmark.generateMillionLayouts:" + numAtoms, () -> generator.generate(1_000_000, numAtoms)[0]);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.Random;
+
+/**
+ * Benchmarks for the ray engines on empty, sparse and dense boards, for a single ray and for the rays entering at
+ * all 54 input points. The object graph engine (Ray) is compared with the lookup table engine working on bit
+ * boards (RayTable).
+ */
+public class RayBenchmark {
+
+    private int inputPoint;     // cycles through all input points, so that no single path is measured
+
+    /**
+     * Creates a standard board with atoms in the same randomly chosen cells on every run, so that results can be
+     * compared between runs
+     */
+    static Board createBoard(int numAtoms) {
+        Board board = new Board();
+        Random random = new Random(26);
+        int atomsPlaced = 0;
+        while(atomsPlaced < numAtoms) {
+            Cell cell = board.getCell(random.nextInt(board.getNumCells()));
+            if(!cell.hasAtom()) {
+                cell.setAtom();
+                atomsPlaced++;
+            }
+        }
+        return board;
+    }
+
+    private int nextInputPoint() {
+        inputPoint = inputPoint % BitBoard.NUM_PORTS + 1;
+        return inputPoint;
+    }
+
+    public static void addTo(BenchmarkRunner runner) {
+        for(int numAtoms : BoardBenchmark.NUM_ATOMS) {
+            RayBenchmark benchmark = new RayBenchmark();
+            Board board = createBoard(numAtoms);
+            long atoms = BitBoard.fromBoard(board).atoms();
+
+            // Ray.process records the path of the ray on the cells, so it is measured on a new board for every
+            // round of 54 rays (like in a game) rather than on one board that keeps growing
+            runner.add("RayBenchmark.processAllRecorded:" + numAtoms, () -> {
+                Board roundBoard = new BitBoard(atoms).toBoard();
+                long sum = 0;
+                for(int point = 1; point <= BitBoard.NUM_PORTS; point++) {
+                    sum += Ray.process(roundBoard, point);
+                }
+                return sum;
+            });
+
+            runner.add("RayBenchmark.traceSingle:" + numAtoms, () -> Ray.trace(board, benchmark.nextInputPoint(), null));
+            runner.add("RayBenchmark.processAll:" + numAtoms, () -> Ray.processAll(board)[0]);
+            runner.add("RayBenchmark.bitBoardSingle:" + numAtoms, () -> RayTable.process(atoms, benchmark.nextInputPoint()));
+            runner.add("RayBenchmark.bitBoardAll:" + numAtoms, () -> RayTable.processAll(atoms)[0]);
+        }
+
+        // the bit-sliced engine traces one ray on 64 different boards per operation, so its time per operation
+        // should be compared with 64 times that of bitBoardSingle
+        for(int numAtoms : BoardBenchmark.NUM_ATOMS) {
+            RayBenchmark benchmark = new RayBenchmark();
+            long[] atomMasks = new long[BitSlicedRays.LANES];
+            Random random = new Random(numAtoms);
+            for(int lane = 0; lane < atomMasks.length; lane++) {
+                for(int i = 0; i < numAtoms; i++) {     // atoms may land in the same cell, so boards can have fewer
+                    atomMasks[lane] |= 1L << random.nextInt(BitBoard.NUM_CELLS);
+                }
+            }
+            long[] occupancy = BitSlicedRays.slice(atomMasks, 0, atomMasks.length);
+            BitSlicedRays engine = new BitSlicedRays(Board.BOARD_SIZE);
+            int[] outputPoints = new int[BitSlicedRays.LANES];
+
+            runner.add("RayBenchmark.bitSliced64:" + numAtoms, () -> {
+                engine.trace(occupancy, benchmark.nextInputPoint(), outputPoints);
+                return outputPoints[0];
+            });
+            runner.add("RayBenchmark.bitBoard64:" + numAtoms, () -> {
+                int inputPoint = benchmark.nextInputPoint();
+                long sum = 0;
+                for(long atoms : atomMasks) {
+                    sum += RayTable.process(atoms, inputPoint);
+                }
+                return sum;
+            });
+        }
+    }
+}
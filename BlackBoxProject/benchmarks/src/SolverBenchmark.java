@@ -0,0 +1,54 @@
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+
+/**
+ * Benchmarks for working out layouts from ray results, as in a game in progress: deducing cells from the rays
+ * sent so far, enumerating the layouts that agree with them and advising which ray to send next, with few, some
+ * and all rays sent, and checking that the results of all rays tell a layout apart from every other layout
+ */
+public class SolverBenchmark {
+
+    static final int[] NUM_RAYS = {3, 10, 54};
+
+    // the input points of the first rays sent, spread around the board
+    static int inputPoint(int ray) {
+        return ray * 7 % BitBoard.NUM_PORTS + 1;
+    }
+
+    public static void addTo(BenchmarkRunner runner) {
+        long atoms = BitBoard.fromBoard(RayBenchmark.createBoard(6)).atoms();
+
+        for(int numRays : NUM_RAYS) {
+            // one operation adds the rays one by one, like in a game
+            runner.add("SolverBenchmark.deduce:" + numRays, () -> {
+                AtomDeducer deducer = new AtomDeducer(6);
+                for(int ray = 0; ray < numRays; ray++) {
+                    deducer.addObservation(inputPoint(ray), RayTable.process(atoms, inputPoint(ray)));
+                }
+                return deducer.getAtoms();
+            });
+
+            LayoutEnumerator enumerator = new LayoutEnumerator(6);
+            for(int ray = 0; ray < numRays; ray++) {
+                enumerator.addObservation(inputPoint(ray), RayTable.process(atoms, inputPoint(ray)));
+            }
+            runner.add("SolverBenchmark.countLayouts:" + numRays, enumerator::count);
+
+            ArrayList<RayMarker> markers = new ArrayList<>();
+            for(int ray = 0; ray < numRays; ray++) {
+                markers.add(new RayMarker(inputPoint(ray), RayTable.process(atoms, inputPoint(ray)), Color.GRAY));
+            }
+            RayAdvisor advisor = new RayAdvisor(6);
+            runner.add("SolverBenchmark.advise:" + numRays, () -> advisor.advise(markers).size());
+        }
+
+        // one operation checks the next of a fixed set of layouts, so that easy and hard layouts are averaged
+        long[] layouts = new LayoutGenerator(7).generate(256, 6);
+        int[] next = new int[1];
+        runner.add("SolverBenchmark.signatureSearch", () ->
+                SignatureSearch.countLayouts(RayTable.processAll(layouts[next[0]++ & 255]), 6, 2));
+        runner.add("SolverBenchmark.findCollision", () ->
+                UniquenessChecker.findCollision(layouts[next[0]++ & 255]));
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Class that computes the signature of every layout with a number of atoms on the standard board (the results of
+ * the rays entering at all 54 input points, see Ray.processAll), groups the layouts that give the same signature
+ * and summarises the groups (see AmbiguityStats). With 6 atoms, this covers all C(61,6) = 55,525,372 layouts.
+ * <p>
+ * The layouts are numbered by LayoutCodec and split into chunks of consecutive ranks, which are traced in parallel
+ * on all processors. Within a chunk, each layout follows from the one before by Gosper's hack (the next larger
+ * atom mask with as many atoms, which is the next rank), and the layouts are traced 64 at a time by BitSlicedRays;
+ * consecutive layouts differ in few cells, so their rays mostly follow the same paths. No object is created per
+ * layout: each layout is reduced to a 64-bit key, the rank of the layout in the low bits (26 of them for 6 atoms)
+ * below as many bits of a fingerprint of its signature as fit, and the keys are sorted, so that the layouts with
+ * the same signature end up next to each other. Different signatures can share the bits of their fingerprints, so
+ * the layouts of each run of keys with equal fingerprint bits are traced again and grouped by their exact
+ * signatures; only the ambiguous layouts and a few thousand others (for 6 atoms) are traced twice, and the groups
+ * are exact.
+ * <p>
+ * To use less memory, the census can be split into passes: each pass traces every layout again, but only keeps the
+ * keys whose fingerprints fall into its share, so that only a fraction of them are held and sorted at once.
+ */
+public class AmbiguityCensus {
+
+    // number of layouts traced by one task, a multiple of the number of lanes of BitSlicedRays
+    static final int CHUNK_SIZE = 1 << 16;
+
+    // signatures are packed into WORDS longs of PORTS_PER_WORD 6-bit fields, each holding outputPoint+1
+    private static final int PORTS_PER_WORD = 9;
+    private static final int WORDS = BitBoard.NUM_PORTS / PORTS_PER_WORD;
+
+    private final int numAtoms;
+    private final long fingerprintMask;     // the bits of a key that hold the fingerprint, above the rank
+    private int passes = 1;
+    private PrintStream report;
+
+    /**
+     * Constructs a census of the layouts with the given number of atoms, done in a single pass
+     * @param numAtoms the number of atoms, in the range 0-61
+     */
+    public AmbiguityCensus(int numAtoms) {
+        if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid number of atoms for AmbiguityCensus");
+        }
+        this.numAtoms = numAtoms;
+        this.fingerprintMask = -1L << (Long.SIZE - Long.numberOfLeadingZeros(LayoutCodec.count(numAtoms) - 1));
+    }
+
+    /**
+     * Sets the number of passes: the memory used is about 8 bytes per layout divided by the number of passes,
+     * and the tracing time is multiplied by it
+     * @param passes the number of passes, at least 1
+     */
+    public void setPasses(int passes) {
+        if(passes < 1) {
+            throw new IllegalArgumentException("Invalid number of passes for AmbiguityCensus");
+        }
+        this.passes = passes;
+    }
+
+    /**
+     * Sets where the progress of the census is reported, one line per pass
+     * @param report the stream to report to, or null for no reports
+     */
+    public void setReport(PrintStream report) {
+        this.report = report;
+    }
+
+    /**
+     * @return the smallest number of passes for which the keys held at once (twice those of a pass, while
+     * they are collected) take at most half of the maximum heap size
+     */
+    public static int defaultPasses(int numAtoms) {
+        long bytes = LayoutCodec.count(numAtoms) * Long.BYTES * 2;
+        long budget = Runtime.getRuntime().maxMemory() / 2;
+        return (int) Math.max(1, (bytes + budget - 1) / budget);
+    }
+
+    /**
+     * Traces every layout, and groups the layouts by signature
+     * @return the statistics of the groups
+     */
+    public AmbiguityStats run() {
+        AmbiguityStats stats = new AmbiguityStats(numAtoms);
+        long numLayouts = LayoutCodec.count(numAtoms);
+        int numChunks = (int) ((numLayouts + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+        // the rays are counted in the first pass only, since every pass traces every layout
+        AtomicLongArray absorbed = new AtomicLongArray(BitBoard.NUM_PORTS + 1);
+        AtomicLongArray reflected = new AtomicLongArray(BitBoard.NUM_PORTS + 1);
+
+        for(int pass = 0; pass < passes; pass++) {
+            long start = System.nanoTime();
+            int currentPass = pass;
+            long[][] chunks = IntStream.range(0, numChunks).parallel().mapToObj(chunk -> {
+                long first = (long) chunk * CHUNK_SIZE;
+                int count = (int) Math.min(CHUNK_SIZE, numLayouts - first);
+                return currentPass == 0 ? traceChunk(first, count, currentPass, absorbed, reflected)
+                        : traceChunk(first, count, currentPass, null, null);
+            }).toArray(long[][]::new);
+
+            long[] keys = concatenate(chunks);
+            Arrays.parallelSort(keys);
+            addClasses(keys, stats);
+            if(report != null) {
+                report.printf("pass %d/%d: %d layouts in %.1f s%n", pass + 1, passes, keys.length,
+                        (System.nanoTime() - start) / 1e9);
+            }
+        }
+
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            stats.addRays(inputPoint, absorbed.get(inputPoint), reflected.get(inputPoint));
+        }
+        return stats;
+    }
+
+    /**
+     * Traces the layouts with consecutive ranks, and keeps the keys of the layouts whose fingerprints fall into the
+     * share of the given pass
+     *
+     * @param first the rank of the first layout
+     * @param count the number of layouts
+     * @param pass the pass, in the range 0 to passes-1
+     * @param absorbed if not null, incremented at each input point by the number of layouts absorbing its ray
+     * @param reflected if not null, incremented at each input point by the number of layouts reflecting its ray
+     * @return the keys kept, in rank order
+     */
+    long[] traceChunk(long first, int count, int pass, AtomicLongArray absorbed, AtomicLongArray reflected) {
+        BitSlicedRays engine = new BitSlicedRays(Board.BOARD_SIZE);
+        long[] layouts = new long[BitSlicedRays.LANES];
+        long[] packed = new long[BitSlicedRays.LANES * WORDS];
+        int[] outputPoints = new int[BitSlicedRays.LANES];
+        long[] numAbsorbed = new long[BitBoard.NUM_PORTS + 1];
+        long[] numReflected = new long[BitBoard.NUM_PORTS + 1];
+
+        long[] kept = new long[passes == 1 ? count : count / passes + BitSlicedRays.LANES];
+        int numKept = 0;
+        long atoms = LayoutCodec.unrank(first, numAtoms);
+        for(int done = 0; done < count; done += BitSlicedRays.LANES) {
+            int lanes = Math.min(BitSlicedRays.LANES, count - done);
+            for(int lane = 0; lane < lanes; lane++) {
+                layouts[lane] = atoms;
+                if(done + lane < count - 1) {
+                    atoms = nextLayout(atoms);
+                }
+            }
+
+            long[] occupancy = BitSlicedRays.slice(layouts, 0, lanes);
+            Arrays.fill(packed, 0);
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                engine.trace(occupancy, inputPoint, outputPoints);
+                int word = (inputPoint - 1) / PORTS_PER_WORD;
+                int shift = (inputPoint - 1) % PORTS_PER_WORD * 6;
+                for(int lane = 0; lane < lanes; lane++) {
+                    int outputPoint = outputPoints[lane];
+                    packed[lane * WORDS + word] |= (long) (outputPoint + 1) << shift;
+                    if(outputPoint == -1) {
+                        numAbsorbed[inputPoint]++;
+                    } else if(outputPoint == inputPoint) {
+                        numReflected[inputPoint]++;
+                    }
+                }
+            }
+
+            for(int lane = 0; lane < lanes; lane++) {
+                long fingerprint = fingerprint(packed, lane * WORDS);
+                if(passes == 1 || Long.remainderUnsigned(fingerprint, passes) == pass) {
+                    if(numKept == kept.length) {
+                        kept = Arrays.copyOf(kept, Math.min(count, kept.length * 2));
+                    }
+                    kept[numKept++] = fingerprint & fingerprintMask | (first + done + lane);
+                }
+            }
+        }
+
+        if(absorbed != null) {
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                absorbed.addAndGet(inputPoint, numAbsorbed[inputPoint]);
+                reflected.addAndGet(inputPoint, numReflected[inputPoint]);
+            }
+        }
+        return numKept == kept.length ? kept : Arrays.copyOf(kept, numKept);
+    }
+
+    // joins the keys of all chunks, releasing each chunk once it is copied
+    static long[] concatenate(long[][] chunks) {
+        long total = 0;
+        for(long[] chunk : chunks) {
+            total += chunk.length;
+        }
+        long[] all = new long[Math.toIntExact(total)];
+        int position = 0;
+        for(int i = 0; i < chunks.length; i++) {
+            System.arraycopy(chunks[i], 0, all, position, chunks[i].length);
+            position += chunks[i].length;
+            chunks[i] = null;
+        }
+        return all;
+    }
+
+    // records the layouts of a sorted array of keys as classes
+    private void addClasses(long[] sorted, AmbiguityStats stats) {
+        int start = 0;
+        for(int i = 1; i <= sorted.length; i++) {
+            if(i == sorted.length || !sameFingerprint(sorted[i], sorted[start])) {
+                addClasses(sorted, start, i, stats);
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * @return true if two keys have the same fingerprint bits, so that their layouts may give the same signature
+     */
+    boolean sameFingerprint(long key, long otherKey) {
+        return ((key ^ otherKey) & fingerprintMask) == 0;
+    }
+
+    /**
+     * Records the layouts of a run of keys with the same fingerprint bits as classes, tracing them again to group
+     * them by their exact signatures if there is more than one
+     *
+     * @param keys the keys, with the same fingerprint bits from index from to index to-1
+     * @param from the index of the first key of the run
+     * @param to the index after the last key of the run
+     */
+    void addClasses(long[] keys, int from, int to, AmbiguityStats stats) {
+        if(to - from == 1) {
+            stats.addClass(1);
+            return;
+        }
+
+        int[][] signatures = new int[to - from][];
+        for(int i = from; i < to; i++) {
+            signatures[i - from] = RayTable.processAll(LayoutCodec.unrank(keys[i] & ~fingerprintMask, numAtoms));
+        }
+        Arrays.sort(signatures, Arrays::compare);
+        int start = 0;
+        for(int i = 1; i <= signatures.length; i++) {
+            if(i == signatures.length || !Arrays.equals(signatures[i], signatures[start])) {
+                stats.addClass(i - start);
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Gosper's hack: finds the next layout in rank order (see LayoutCodec), the smallest larger atom mask with
+     * the same number of atoms
+     * @param atoms an atom mask with at least one atom, other than the last layout
+     */
+    static long nextLayout(long atoms) {
+        long lowest = atoms & -atoms;
+        long ripple = atoms + lowest;   // replaces the lowest block of atoms by an atom in the cell above it
+        return ripple | ((atoms ^ ripple) >>> 2) >>> Long.numberOfTrailingZeros(lowest);
+    }
+
+    /**
+     * @param signature the output point of the ray entering at each input point, at index inputPoint-1
+     * @return a 64-bit fingerprint of the signature, the same as the one used by the census
+     */
+    static long fingerprint(int[] signature) {
+        long[] packed = new long[WORDS];
+        for(int i = 0; i < BitBoard.NUM_PORTS; i++) {
+            packed[i / PORTS_PER_WORD] |= (long) (signature[i] + 1) << (i % PORTS_PER_WORD * 6);
+        }
+        return fingerprint(packed, 0);
+    }
+
+    // hashes the packed signature starting at the given index, mixing in one word at a time
+    private static long fingerprint(long[] packed, int from) {
+        long hash = 0x9E3779B97F4A7C15L;
+        for(int i = 0; i < WORDS; i++) {
+            hash ^= packed[from + i];
+            hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+            hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            hash ^= hash >>> 33;
+        }
+        return hash;
+    }
+
+    /**
+     * Runs a census from the command line and saves its statistics
+     * Usage: AmbiguityCensus filename [numAtoms] [passes]
+     */
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.out.println("Usage: AmbiguityCensus filename [numAtoms] [passes]");
+            return;
+        }
+
+        int numAtoms = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        AmbiguityCensus census = new AmbiguityCensus(numAtoms);
+        census.setPasses(args.length > 2 ? Integer.parseInt(args[2]) : defaultPasses(numAtoms));
+        census.setReport(System.out);
+        AmbiguityStats stats = census.run();
+        if(stats.save(args[0]) != 0) {
+            System.out.println("Could not write the statistics to " + args[0]);
+            return;
+        }
+        System.out.println(stats.getUniqueLayouts() + " of " + stats.getNumLayouts() + " layouts are unique, "
+                + stats.getNumClasses() + " signatures");
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmbiguityCensusTest {
+
+    // groups every layout with the given number of atoms by its exact signature
+    private static AmbiguityStats bruteForce(int numAtoms) {
+        HashMap<List<Integer>, Integer> classes = new HashMap<>();
+        AmbiguityStats stats = new AmbiguityStats(numAtoms);
+        for(long rank = 0; rank < LayoutCodec.count(numAtoms); rank++) {
+            int[] signature = RayTable.processAll(LayoutCodec.unrank(rank, numAtoms));
+            classes.merge(Arrays.stream(signature).boxed().toList(), 1, Integer::sum);
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                int outputPoint = signature[inputPoint - 1];
+                stats.addRays(inputPoint, outputPoint == -1 ? 1 : 0, outputPoint == inputPoint ? 1 : 0);
+            }
+        }
+        classes.values().forEach(stats::addClass);
+        return stats;
+    }
+
+    private static void assertStatsEqual(AmbiguityStats expected, AmbiguityStats actual) {
+        assertEquals(expected.getNumLayouts(), actual.getNumLayouts());
+        assertEquals(expected.getNumClasses(), actual.getNumClasses());
+        assertEquals(expected.getUniqueLayouts(), actual.getUniqueLayouts());
+        assertEquals(expected.getClassSizes(), actual.getClassSizes());
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            assertEquals(expected.getAbsorbed(inputPoint), actual.getAbsorbed(inputPoint));
+            assertEquals(expected.getReflected(inputPoint), actual.getReflected(inputPoint));
+        }
+    }
+
+    @Test
+    void testAgainstBruteForce() {
+        for(int numAtoms = 0; numAtoms <= 3; numAtoms++) {
+            AmbiguityStats stats = new AmbiguityCensus(numAtoms).run();
+            assertStatsEqual(bruteForce(numAtoms), stats);
+            assertEquals(LayoutCodec.count(numAtoms), stats.getNumLayouts());
+        }
+    }
+
+    // with 4 atoms there are ambiguous layouts, so classes of more than one layout are checked too
+    @Test
+    void testPasses() {
+        AmbiguityStats expected = bruteForce(4);
+        assertTrue(expected.getUniqueLayouts() < expected.getNumLayouts());
+        for(int passes : new int[]{1, 3}) {
+            AmbiguityCensus census = new AmbiguityCensus(4);
+            census.setPasses(passes);
+            assertStatsEqual(expected, census.run());
+        }
+    }
+
+    @Test
+    void testNextLayout() {
+        for(int numAtoms = 1; numAtoms <= 6; numAtoms++) {
+            for(long rank = 0; rank < Math.min(2000, LayoutCodec.count(numAtoms) - 1); rank++) {
+                assertEquals(LayoutCodec.unrank(rank + 1, numAtoms),
+                        AmbiguityCensus.nextLayout(LayoutCodec.unrank(rank, numAtoms)));
+            }
+        }
+        long last = LayoutCodec.unrank(LayoutCodec.count(6) - 1, 6);
+        assertEquals(last, AmbiguityCensus.nextLayout(LayoutCodec.unrank(LayoutCodec.count(6) - 2, 6)));
+    }
+
+    @Test
+    void testFingerprint() {
+        long first = 1L << 1 | 1L << 2 | 1L << 4 | 1L << 8;
+        long second = 1L << 1 | 1L << 3 | 1L << 4 | 1L << 8;
+        assertEquals(AmbiguityCensus.fingerprint(RayTable.processAll(first)),
+                AmbiguityCensus.fingerprint(RayTable.processAll(second)));
+        assertNotEquals(AmbiguityCensus.fingerprint(RayTable.processAll(first)),
+                AmbiguityCensus.fingerprint(RayTable.processAll(first | 1L << 40)));
+    }
+
+    @Test
+    void testSharedFingerprintBits() {
+        // keys of three layouts with the same (zero) fingerprint bits: two ambiguous layouts and an unrelated one
+        long first = 1L << 1 | 1L << 2 | 1L << 4 | 1L << 8;
+        long second = 1L << 1 | 1L << 3 | 1L << 4 | 1L << 8;
+        long other = 1L << 1 | 1L << 2 | 1L << 4 | 1L << 40;
+        long[] keys = {LayoutCodec.rank(first), LayoutCodec.rank(other), LayoutCodec.rank(second)};
+        AmbiguityCensus census = new AmbiguityCensus(4);
+        assertTrue(census.sameFingerprint(keys[0], keys[1]));
+
+        AmbiguityStats stats = new AmbiguityStats(4);
+        census.addClasses(keys, 0, keys.length, stats);
+        assertEquals(2, stats.getNumClasses());
+        assertEquals(1, stats.getUniqueLayouts());
+        assertEquals(1L, stats.getClassSizes().get(2));
+    }
+
+    @Test
+    void testSave() throws IOException {
+        File file = File.createTempFile("census", ".txt");
+        file.deleteOnExit();
+        AmbiguityStats stats = new AmbiguityCensus(2).run();
+        assertEquals(0, stats.save(file.getPath()));
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals("atoms 2", lines.get(0));
+        assertEquals("layouts " + LayoutCodec.count(2), lines.get(1));
+        assertEquals("unique " + stats.getUniqueLayouts(), lines.get(3));
+        assertEquals(4 + stats.getClassSizes().size() + BitBoard.NUM_PORTS, lines.size());
+        assertEquals(-1, stats.save(file.getPath() + File.separator + "missing"));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AmbiguityCensus(-1));
+        assertThrows(IllegalArgumentException.class, () -> new AmbiguityCensus(BitBoard.NUM_CELLS + 1));
+        assertThrows(IllegalArgumentException.class, () -> new AmbiguityCensus(3).setPasses(0));
+    }
+}
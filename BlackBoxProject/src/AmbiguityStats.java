@@ -0,0 +1,138 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary statistics of the layouts with a number of atoms on the standard board, grouped into ambiguity classes:
+ * the layouts that give the same signature (the results of the rays entering at all 54 input points, see
+ * Ray.processAll). A layout in a class of its own can be solved by the player; the layouts of larger classes
+ * cannot be told apart by any rays.
+ */
+public class AmbiguityStats {
+
+    private final int numAtoms;
+    private long numLayouts;
+    private long numClasses;
+    private final TreeMap<Integer, Long> classSizes = new TreeMap<>();
+
+    // number of layouts where the ray entering at each input point (at index inputPoint) is absorbed or reflected
+    private final long[] absorbed = new long[BitBoard.NUM_PORTS + 1];
+    private final long[] reflected = new long[BitBoard.NUM_PORTS + 1];
+
+    /**
+     * Constructs the statistics of no layouts, to which classes and rays are added as they are found
+     * @param numAtoms the number of atoms of the layouts
+     */
+    public AmbiguityStats(int numAtoms) {
+        this.numAtoms = numAtoms;
+    }
+
+    /**
+     * Records a class of layouts with the same signature
+     * @param size the number of layouts in the class
+     */
+    void addClass(int size) {
+        numLayouts += size;
+        numClasses++;
+        classSizes.merge(size, 1L, Long::sum);
+    }
+
+    /**
+     * Records the results of the rays entering at an input point on some layouts
+     *
+     * @param inputPoint the input point, in the range 1-54
+     * @param numAbsorbed the number of the layouts that absorb the ray
+     * @param numReflected the number of the layouts that reflect the ray back to the input point
+     */
+    void addRays(int inputPoint, long numAbsorbed, long numReflected) {
+        absorbed[inputPoint] += numAbsorbed;
+        reflected[inputPoint] += numReflected;
+    }
+
+    public int getNumAtoms() {
+        return numAtoms;
+    }
+
+    /**
+     * @return the number of layouts in all classes
+     */
+    public long getNumLayouts() {
+        return numLayouts;
+    }
+
+    /**
+     * @return the number of different signatures
+     */
+    public long getNumClasses() {
+        return numClasses;
+    }
+
+    /**
+     * @return the number of layouts that no other layout shares the signature with
+     */
+    public long getUniqueLayouts() {
+        return classSizes.getOrDefault(1, 0L);
+    }
+
+    /**
+     * @return the number of classes of each size, by size
+     */
+    public Map<Integer, Long> getClassSizes() {
+        return Collections.unmodifiableMap(classSizes);
+    }
+
+    /**
+     * @param inputPoint an input point in the range 1-54
+     * @return the number of layouts that absorb the ray entering at the input point
+     */
+    public long getAbsorbed(int inputPoint) {
+        return absorbed[inputPoint];
+    }
+
+    /**
+     * @param inputPoint an input point in the range 1-54
+     * @return the number of layouts that reflect the ray entering at the input point back to it
+     */
+    public long getReflected(int inputPoint) {
+        return reflected[inputPoint];
+    }
+
+    /**
+     * Writes the statistics as text, one value per line
+     * @param out the writer to write to
+     */
+    public void write(PrintWriter out) {
+        out.println("atoms " + numAtoms);
+        out.println("layouts " + numLayouts);
+        out.println("classes " + numClasses);
+        out.println("unique " + getUniqueLayouts());
+        for(Map.Entry<Integer, Long> entry : classSizes.entrySet()) {
+            out.println("class size " + entry.getKey() + ": " + entry.getValue());
+        }
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            out.printf("input point %d: absorbed %d (%.4f), reflected %d (%.4f)%n", inputPoint,
+                    absorbed[inputPoint], (double) absorbed[inputPoint] / numLayouts,
+                    reflected[inputPoint], (double) reflected[inputPoint] / numLayouts);
+        }
+    }
+
+    /**
+     * Attempts to write the statistics to the file with the given filename, overwriting it
+     * @param filename the file to write the statistics to
+     * @return 0 for success, -1 for error
+     */
+    public int save(String filename) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
+            write(out);
+            if(out.checkError()) {
+                return -1;
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,309 @@
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Class that works out which cells of the standard board must contain an atom and which must be empty, from the
+ * results of the rays sent so far (the ray markers of a board). Every cell is either known to contain an atom,
+ * known to be empty, or unknown.
+ * <p>
+ * Each observed ray is a constraint on the cells along its possible paths. To propagate it, the ray is traced
+ * over the known cells, branching on each unknown cell it reads (atom or empty); every branch that gives the
+ * observed result is a way the constraint can be met. The cells that contain an atom (or are empty) in every such
+ * way are deduced. New deductions are propagated to the other rays that branched on the cells deduced, until
+ * nothing changes. If the number of atoms is known, it is used as a constraint too: branches needing too many
+ * atoms are cut, and once all atoms (or all empty cells) are found, the remaining cells are deduced.
+ * <p>
+ * This finds the cells that follow from each ray on its own, given what is known about the others, without
+ * enumerating whole layouts. Cells that can only be deduced by combining rays in another way stay unknown. To keep
+ * each update well below a millisecond, the paths of a ray are not explored further once there are too many of
+ * them, and so is the work of a single update (see deduce).
+ */
+public class AtomDeducer {
+
+    public static final int UNKNOWN = 0;
+    public static final int ATOM = 1;
+    public static final int EMPTY = 2;
+
+    // number of branches after which the paths of a ray are not explored further, keeping updates fast on boards
+    // where little is known; the ray is explored again once more cells are known
+    static final int MAX_BRANCHES = 3000;
+
+    // number of branches explored by a single update (about a millisecond), after which the rays left to explore
+    // are kept for the next update (see deduce)
+    static final int MAX_UPDATE_BRANCHES = 40000;
+
+    private static final long ALL_CELLS = (1L << BitBoard.NUM_CELLS) - 1;
+
+    private final int numAtoms;
+
+    private long atoms;     // cells known to contain an atom
+    private long empty;     // cells known to be empty
+    private boolean consistent = true;
+
+    // observed output point of the ray entering at each input point (at index inputPoint), or 0 if not sent yet
+    private final int[] outputPoints = new int[BitBoard.NUM_PORTS + 1];
+
+    // watch lists: the unknown cells each ray branched on when it was last explored; the ray is only explored
+    // again when one of them becomes known
+    private final long[] watched = new long[BitBoard.NUM_PORTS + 1];
+    private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+    private final boolean[] isPending = new boolean[BitBoard.NUM_PORTS + 1];
+
+    // results of exploring the paths of the current ray
+    private int branches;
+    private int updateBranches;
+    private long ways;
+    private long atomsInAllWays;
+    private long emptyInAllWays;
+    private long branchedOn;
+
+    /**
+     * Constructs a deducer for a board with an unknown number of atoms
+     */
+    public AtomDeducer() {
+        this(-1);
+    }
+
+    /**
+     * Constructs a deducer for a board with a known number of atoms
+     * @param numAtoms the number of atoms on the board, or -1 if it is not known
+     */
+    public AtomDeducer(int numAtoms) {
+        if(numAtoms < -1 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid number of atoms for AtomDeducer");
+        }
+        this.numAtoms = numAtoms;
+        applyAtomCount();
+    }
+
+    /**
+     * Constructs a deducer from the ray markers of a board
+     *
+     * @param markers the ray markers (see Board.getRayMarkers)
+     * @param numAtoms the number of atoms on the board, or -1 if it is not known
+     */
+    public static AtomDeducer fromMarkers(Collection<RayMarker> markers, int numAtoms) {
+        AtomDeducer deducer = new AtomDeducer(numAtoms);
+        for(RayMarker marker : markers) {
+            deducer.addObservation(marker.inputPoint(), marker.outputPoint());
+        }
+        return deducer;
+    }
+
+    /**
+     * Adds the result of a ray and deduces what follows from it
+     *
+     * @param marker the ray marker of the ray
+     * @return false if the results seen so far cannot all be given by the same layout (see isConsistent)
+     */
+    public boolean addMarker(RayMarker marker) {
+        return addObservation(marker.inputPoint(), marker.outputPoint());
+    }
+
+    /**
+     * Adds the result of a ray and deduces what follows from it. Sending the same ray again adds nothing.
+     *
+     * @param inputPoint the input point of the ray, in the range 1-54
+     * @param outputPoint the output point of the ray, or -1 if it was absorbed
+     * @return false if the results seen so far cannot all be given by the same layout (see isConsistent)
+     */
+    public boolean addObservation(int inputPoint, int outputPoint) {
+        if(inputPoint < 1 || inputPoint > BitBoard.NUM_PORTS || outputPoint < -1 || outputPoint == 0
+                || outputPoint > BitBoard.NUM_PORTS) {
+            throw new IllegalArgumentException("Invalid argument to AtomDeducer.addObservation");
+        }
+
+        // a ray leaving at an output point also connects the output point back to the input point
+        for(int[] ray : new int[][]{{inputPoint, outputPoint}, {outputPoint, inputPoint}}) {
+            if(ray[0] == -1) {
+                continue;
+            }
+            if(outputPoints[ray[0]] == 0) {
+                outputPoints[ray[0]] = ray[1];
+                schedule(ray[0]);
+            } else if(outputPoints[ray[0]] != ray[1]) {
+                consistent = false;
+            }
+        }
+        propagate();
+        return consistent;
+    }
+
+    /**
+     * Continues deducing cells after an update that ran out of time (see MAX_UPDATE_BRANCHES), for one more update
+     *
+     * @return true if everything that can be deduced from the results seen so far has been deduced
+     */
+    public boolean deduce() {
+        propagate();
+        return pending.isEmpty() || !consistent;
+    }
+
+    /**
+     * @return false if no layout (with the given number of atoms) gives all results seen so far, so that at least
+     * one of them was not recorded correctly
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    /**
+     * @return true if the content of every cell is known
+     */
+    public boolean isSolved() {
+        return consistent && (atoms | empty) == ALL_CELLS;
+    }
+
+    /**
+     * @return the atom mask of the cells known to contain an atom
+     */
+    public long getAtoms() {
+        return atoms;
+    }
+
+    /**
+     * @return the mask of the cells known to be empty, with the same bits as an atom mask
+     */
+    public long getEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return the mask of the cells that may or may not contain an atom
+     */
+    public long getUnknown() {
+        return ALL_CELLS & ~(atoms | empty);
+    }
+
+    /**
+     * @param cell the index of a cell (see BitBoard.cellIndex)
+     * @return ATOM, EMPTY or UNKNOWN
+     */
+    public int getState(int cell) {
+        if(cell < 0 || cell >= BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid cell index for AtomDeducer.getState");
+        }
+        return (atoms >>> cell & 1) != 0 ? ATOM : (empty >>> cell & 1) != 0 ? EMPTY : UNKNOWN;
+    }
+
+    private void schedule(int inputPoint) {
+        if(!isPending[inputPoint]) {
+            isPending[inputPoint] = true;
+            pending.add(inputPoint);
+        }
+    }
+
+    // explores the scheduled rays until no more cells can be deduced
+    private void propagate() {
+        updateBranches = 0;
+        while(consistent && !pending.isEmpty()) {
+            int inputPoint = pending.peek();
+            branches = 0;
+            ways = 0;
+            atomsInAllWays = ALL_CELLS;
+            emptyInAllWays = ALL_CELLS;
+            branchedOn = 0;
+            explore(inputPoint, RayTable.EDGE_STATE, atoms, empty);
+            updateBranches += branches;
+            if(updateBranches > MAX_UPDATE_BRANCHES) {
+                return;     // the ray may not have been explored fully, so it is explored again on the next update
+            }
+            pending.poll();
+            isPending[inputPoint] = false;
+
+            // the ways found only depend on the cells branched on, so the result of exploring the ray again can
+            // only change once one of them is known
+            watched[inputPoint] = branchedOn;
+            if(branches > MAX_BRANCHES) {
+                continue;   // nothing deduced
+            }
+            if(ways == 0) {
+                consistent = false;
+            } else {
+                learn(atomsInAllWays & ~atoms, emptyInAllWays & ~empty);
+            }
+        }
+    }
+
+    // records newly deduced cells, and schedules the rays that depend on them
+    private void learn(long newAtoms, long newEmpty) {
+        if((newAtoms | newEmpty) == 0) {
+            return;
+        }
+        atoms |= newAtoms;
+        empty |= newEmpty;
+        if((atoms & empty) != 0) {
+            consistent = false;
+            return;
+        }
+        applyAtomCount();
+
+        long changed = newAtoms | newEmpty;
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            if((watched[inputPoint] & changed) != 0) {
+                schedule(inputPoint);
+            }
+        }
+    }
+
+    // once all atoms or all empty cells are known, the other cells are known too
+    private void applyAtomCount() {
+        if(numAtoms < 0) {
+            return;
+        }
+        int knownAtoms = Long.bitCount(atoms);
+        int possibleAtoms = BitBoard.NUM_CELLS - Long.bitCount(empty);
+        if(knownAtoms > numAtoms || possibleAtoms < numAtoms) {
+            consistent = false;
+        } else if(knownAtoms == numAtoms) {
+            learn(0, getUnknown());
+        } else if(possibleAtoms == numAtoms) {
+            learn(getUnknown(), 0);
+        }
+    }
+
+    /**
+     * Explores the paths of a ray from the given state, on a layout with the given known and assumed cells,
+     * branching on each unknown cell read by the ray
+     *
+     * @param inputPoint the input point of the ray
+     * @param state the state of the ray (see RayTable.advanceKnown)
+     * @param assumedAtoms the cells known or assumed to contain an atom
+     * @param assumedEmpty the cells known or assumed to be empty
+     */
+    private void explore(int inputPoint, int state, long assumedAtoms, long assumedEmpty) {
+        // assumptions are only added further down, so if the ways found so far already have all their cells in
+        // common with this branch, the ways below it cannot leave fewer cells in common
+        if(ways > 0 && (atomsInAllWays & ~assumedAtoms) == 0 && (emptyInAllWays & ~assumedEmpty) == 0) {
+            return;
+        }
+        if(++branches > MAX_BRANCHES || updateBranches + branches > MAX_UPDATE_BRANCHES) {
+            return;
+        }
+        if(numAtoms >= 0 && (Long.bitCount(assumedAtoms) > numAtoms
+                || BitBoard.NUM_CELLS - Long.bitCount(assumedEmpty) < numAtoms)) {
+            return;
+        }
+
+        long known = assumedAtoms | assumedEmpty | RayTable.NO_CELL_BIT;
+        state = RayTable.advanceKnown(assumedAtoms, known, inputPoint, state);
+        if(state < 0) {
+            addWay(inputPoint, -2 - state, assumedAtoms, assumedEmpty);
+            return;
+        }
+        long unknown = (state == RayTable.EDGE_STATE ? RayTable.edgeMask(inputPoint) : RayTable.readMask(state))
+                & ~known;
+        long cell = Long.lowestOneBit(unknown);
+        branchedOn |= cell;
+        explore(inputPoint, state, assumedAtoms | cell, assumedEmpty);
+        explore(inputPoint, state, assumedAtoms, assumedEmpty | cell);
+    }
+
+    private void addWay(int inputPoint, int outputPoint, long assumedAtoms, long assumedEmpty) {
+        if(outputPoint == outputPoints[inputPoint]) {
+            ways++;
+            atomsInAllWays &= assumedAtoms;
+            emptyInAllWays &= assumedEmpty;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomDeducerTest {
+
+    // adds the results of the rays on the given layout at the given input points, finishing the deduction
+    private static AtomDeducer deduce(long atoms, int numAtoms, int... inputPoints) {
+        AtomDeducer deducer = new AtomDeducer(numAtoms);
+        for(int inputPoint : inputPoints) {
+            assertTrue(deducer.addObservation(inputPoint, RayTable.process(atoms, inputPoint)));
+        }
+        while(!deducer.deduce()) {
+            // continue until everything is deduced
+        }
+        return deducer;
+    }
+
+    private static int[] allInputPoints() {
+        int[] inputPoints = new int[BitBoard.NUM_PORTS];
+        for(int i = 0; i < inputPoints.length; i++) {
+            inputPoints[i] = i + 1;
+        }
+        return inputPoints;
+    }
+
+    @Test
+    void testSound() {
+        // everything deduced is true of the layout, whatever the order of the rays
+        for(long atoms : new LayoutGenerator(5).generate(200, 6)) {
+            AtomDeducer deducer = new AtomDeducer(6);
+            for(int i = 0; i < BitBoard.NUM_PORTS; i++) {
+                int inputPoint = (int) ((atoms % 53 + i * 29L) % BitBoard.NUM_PORTS) + 1;
+                assertTrue(deducer.addObservation(inputPoint, RayTable.process(atoms, inputPoint)));
+                assertEquals(0, deducer.getAtoms() & ~atoms);
+                assertEquals(0, deducer.getEmpty() & atoms);
+            }
+        }
+    }
+
+    @Test
+    void testSolvesUniqueLayouts() {
+        int solved = 0;
+        for(long atoms : new LayoutGenerator(6).generate(100, 6)) {
+            AtomDeducer deducer = deduce(atoms, 6, allInputPoints());
+            if(deducer.isSolved()) {
+                // only a layout that no other layout shares the signature with can be solved
+                assertEquals(atoms, deducer.getAtoms());
+                assertTrue(SignatureSearch.isUnique(atoms));
+                solved++;
+            } else {
+                assertEquals(0, deducer.getAtoms() & ~atoms);
+                assertEquals(0, deducer.getEmpty() & atoms);
+            }
+        }
+        assertTrue(solved >= 95);
+    }
+
+    @Test
+    void testStraightRay() {
+        // a ray passing straight through a row shows that the row and the cells next to it are empty (with more
+        // atoms, the ray could also have been deflected away from the row and back)
+        long atoms = 1L << BitBoard.cellIndex(7, 1) | 1L << BitBoard.cellIndex(7, 5);
+        assertEquals(41, RayTable.process(atoms, 6));
+        AtomDeducer deducer = deduce(atoms, 2, 6);
+        assertEquals(AtomDeducer.EMPTY, deducer.getState(BitBoard.cellIndex(2, 3)));
+        assertEquals(AtomDeducer.EMPTY, deducer.getState(BitBoard.cellIndex(1, 3)));
+        assertEquals(AtomDeducer.UNKNOWN, deducer.getState(BitBoard.cellIndex(6, 3)));
+        assertFalse(deducer.isSolved());
+    }
+
+    @Test
+    void testAtomCount() {
+        // once the atom is found, every other cell must be empty
+        long atom = 1L << BitBoard.cellIndex(4, 4);
+        AtomDeducer deducer = deduce(atom, 1, allInputPoints());
+        assertTrue(deducer.isSolved());
+        assertEquals(atom, deducer.getAtoms());
+
+        assertTrue(new AtomDeducer(0).isSolved());
+        assertEquals((1L << BitBoard.NUM_CELLS) - 1, new AtomDeducer(61).getAtoms());
+    }
+
+    @Test
+    void testInconsistent() {
+        long atoms = new LayoutGenerator(1).generate(1, 6)[0];
+        int outputPoint = RayTable.process(atoms, 6);
+        AtomDeducer deducer = deduce(atoms, 6, 6);
+        assertTrue(deducer.isConsistent());
+        assertFalse(deducer.addObservation(6, outputPoint == 7 ? 8 : 7));     // the same ray sent twice
+        assertFalse(deducer.isConsistent());
+
+        // no atoms at all, but a ray is absorbed
+        assertFalse(new AtomDeducer(0).addObservation(1, -1));
+    }
+
+    @Test
+    void testFromMarkers() {
+        Board board = new Board();
+        board.getCells()[4][4].setAtom();
+        board.getCells()[2][1].setAtom();
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            board.addRayMarker(inputPoint, Ray.process(board, inputPoint));
+        }
+
+        AtomDeducer deducer = AtomDeducer.fromMarkers(board.getRayMarkers(), 2);
+        while(!deducer.deduce()) {
+            // continue until everything is deduced
+        }
+        assertTrue(deducer.isSolved());
+        assertEquals(BitBoard.fromBoard(board).atoms(), deducer.getAtoms());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AtomDeducer(62));
+        assertThrows(IllegalArgumentException.class, () -> new AtomDeducer().addObservation(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> new AtomDeducer().addObservation(5, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AtomDeducer().getState(61));
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * A bit board is a compact representation of the atoms placed on a standard BlackBox board, storing
+ * the whole atom occupancy in a single long. Rays can be processed directly on this representation (see
+ * RayTable), which gives the same output points as Ray.process but never touches Board or Cell objects
+ * (and so has no side effects).
+ *
+ * @param atoms the atom occupancy of the board: bit i is set if the cell with index i contains an atom.
+ *  Cells are indexed row by row, starting from 0 for the first cell of the upper row and ending with 60 for
+ *  the last cell of the lower row (see cellIndex)
+ */
+public record BitBoard(long atoms) {
+
+    static final int NUM_CELLS = 61;
+    static final int NUM_PORTS = 54;
+
+    // index of the first cell of each row
+    private static final int[] ROW_START = new int[Board.BOARD_SIZE + 1];
+
+    /*
+    Flat tables describing the structure of the standard board, shared by all bit boards:
+    - NEIGHBOURS[index*6 + position] stores the index of the neighbour of a cell at a certain position (using
+      the same encoding as Cell.getNeighbours), or -1 if the cell does not have a neighbour at that position
+    - OUTPUT_POINTS[index*6 + exitPoint] stores the output point of a ray exiting a cell on the edge of the board
+      through a side with no neighbour (unused entries are 0)
+    - INPUT_CELLS and ENTRY_POINTS store the index of the first cell on a ray's path and the entry point to it,
+      for each input point in the range 1-54 (index 0 is unused)
+     */
+    static final int[] NEIGHBOURS = new int[NUM_CELLS * 6];
+    static final int[] OUTPUT_POINTS = new int[NUM_CELLS * 6];
+    static final int[] INPUT_CELLS = new int[NUM_PORTS + 1];
+    static final int[] ENTRY_POINTS = new int[NUM_PORTS + 1];
+
+    static {
+        // copied from the topology shared by all standard boards, so they always agree with the one used by Ray
+        BoardTopology topology = BoardTopology.of(Board.BOARD_SIZE);
+
+        for(int row = 0; row < Board.BOARD_SIZE; row++) {
+            ROW_START[row + 1] = ROW_START[row] + topology.getRowLength(row);
+        }
+
+        for(int index = 0; index < NUM_CELLS; index++) {
+            for(int position = 0; position < 6; position++) {
+                NEIGHBOURS[index * 6 + position] = topology.getNeighbour(index, position);
+                OUTPUT_POINTS[index * 6 + position] = topology.getOutputPoint(index, position);
+            }
+        }
+
+        for(int inputPoint = 1; inputPoint <= NUM_PORTS; inputPoint++) {
+            INPUT_CELLS[inputPoint] = topology.getInputCell(inputPoint);
+            ENTRY_POINTS[inputPoint] = topology.getEntryPoint(inputPoint);
+        }
+    }
+
+    public BitBoard {
+        if((atoms >>> NUM_CELLS) != 0) {
+            throw new IllegalArgumentException("Invalid atom mask for BitBoard");
+        }
+    }
+
+    /**
+     * Creates the bit board representation of the atoms placed on a standard board
+     * @param board a Board of standard size
+     * @return a BitBoard with the same atoms as the given board
+     */
+    public static BitBoard fromBoard(Board board) {
+        if(board == null || board.getBoardSize() != Board.BOARD_SIZE) {
+            throw new IllegalArgumentException("Invalid argument to BitBoard.fromBoard");
+        }
+
+        long atoms = 0;
+        for(Cell[] cellRow : board.getCells()) {
+            for(Cell cell : cellRow) {
+                if(cell.hasAtom()) {
+                    atoms |= 1L << cellIndex(cell.getRow(), cell.getCol());
+                }
+            }
+        }
+        return new BitBoard(atoms);
+    }
+
+    /**
+     * Creates a new Board containing the atoms of this bit board
+     * @return a new Board with atoms placed in the cells marked in this bit board
+     */
+    public Board toBoard() {
+        Board board = new Board();
+        Cell[][] cells = board.getCells();
+        for(int row = 0; row < cells.length; row++) {
+            for(int col = 0; col < cells[row].length; col++) {
+                if(hasAtom(row, col)) {
+                    cells[row][col].setAtom();
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Computes the index of the cell at a certain row and column of a standard board
+     * @param row the row of the cell, in the range 0-8
+     * @param col the column of the cell, in the range 0 to the length of the row - 1
+     * @return the index of the cell, in the range 0-60
+     */
+    public static int cellIndex(int row, int col) {
+        if(row < 0 || row >= Board.BOARD_SIZE || col < 0 || col >= ROW_START[row + 1] - ROW_START[row]) {
+            throw new IllegalArgumentException("Invalid cell position");
+        }
+        return ROW_START[row] + col;
+    }
+
+    public boolean hasAtom(int row, int col) {
+        return hasAtom(cellIndex(row, col));
+    }
+
+    public boolean hasAtom(int index) {
+        return (atoms >>> index & 1) != 0;
+    }
+
+    /**
+     * Returns a bit board with the same atoms as this one, plus an atom at the given row and column
+     */
+    public BitBoard withAtom(int row, int col) {
+        return new BitBoard(atoms | 1L << cellIndex(row, col));
+    }
+
+    public int countAtoms() {
+        return Long.bitCount(atoms);
+    }
+
+    /**
+     * Processes a ray on this bit board, calculating its output point based on its input point and the atoms
+     * encountered, in the same way as Ray.process. This method has no side effects.
+     *
+     * @param inputPoint the input point of the ray, in the range 1-54
+     * @return the number of the output point for rays that exit the board or -1 for absorbed rays
+     */
+    public int process(int inputPoint) {
+        return RayTable.process(atoms, inputPoint);
+    }
+
+    /**
+     * Processes the rays entering this bit board at every input point (see Ray.processAll)
+     * @return the signature of this board, with the output point of the ray entering at input point i at index i-1
+     */
+    public int[] processAll() {
+        return RayTable.processAll(atoms);
+    }
+}
@@ -0,0 +1,69 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitBoardConversionTest {
+    Board board;
+
+    // test fixture
+    @BeforeEach
+    void constructBoard() {
+        board = new Board();
+        Cell[][] cells = board.getCells();
+        cells[0][0].setAtom();
+        cells[4][8].setAtom();
+        cells[8][4].setAtom();
+    }
+
+    @Test
+    void testCellIndex() {
+        assertEquals(0, BitBoard.cellIndex(0, 0));
+        assertEquals(5, BitBoard.cellIndex(1, 0));
+        assertEquals(34, BitBoard.cellIndex(4, 8));
+        assertEquals(60, BitBoard.cellIndex(8, 4));
+    }
+
+    @Test
+    void testFromBoard() {
+        BitBoard bitBoard = BitBoard.fromBoard(board);
+        assertEquals(3, bitBoard.countAtoms());
+        assertTrue(bitBoard.hasAtom(0, 0));
+        assertTrue(bitBoard.hasAtom(4, 8));
+        assertTrue(bitBoard.hasAtom(8, 4));
+        assertFalse(bitBoard.hasAtom(4, 4));
+    }
+
+    @Test
+    void testToBoard() {
+        Board converted = BitBoard.fromBoard(board).withAtom(4, 4).toBoard();
+        assertEquals(4, converted.countAtoms());
+        assertTrue(converted.getCells()[4][4].hasAtom());
+        assertTrue(converted.getCells()[8][4].hasAtom());
+    }
+}
+
+class BitBoardRayTest {
+
+    // compares the bit board ray engine with Ray.process on all input points of randomly generated boards
+    @Test
+    void testSameOutputsAsRay() {
+        for(int i = 0; i < 200; i++) {
+            Board board = new Board();
+            board.generateAtoms(1 + i % 8);
+            BitBoard bitBoard = BitBoard.fromBoard(board);
+
+            for(int inputPoint = 1; inputPoint <= 54; inputPoint++) {
+                assertEquals(Ray.process(board, inputPoint), bitBoard.process(inputPoint));
+            }
+        }
+    }
+
+    @Test
+    void testDeflections() {
+        BitBoard bitBoard = new BitBoard(0).withAtom(3, 1).withAtom(3, 5).withAtom(3, 6)
+                .withAtom(3, 0).withAtom(6, 3).withAtom(7, 3);
+        assertEquals(54, bitBoard.process(5));
+        assertEquals(32, bitBoard.process(33));
+    }
+}
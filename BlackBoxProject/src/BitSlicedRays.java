@@ -0,0 +1,248 @@
+/**
+ * Class that implements a bit-sliced ray engine, tracing a ray from the same input point on up to 64 boards at
+ * once. Bit i of every long belongs to board i (its lane): the atoms are given as one long per cell, with bit i
+ * set if board i has an atom in that cell, and the position of the ray on all boards is kept as one long per
+ * (cell, entry point) state. The deflection rules (see RayTable.computeExitPoint) are applied to all the boards
+ * whose ray is in the same state with a few bitwise operations, so boards whose rays follow the same path share
+ * all of the work. The output points are the same as the ones given by Ray.process.
+ * <p>
+ * An engine keeps reusable buffers, so it should only be used by one thread at a time.
+ */
+public class BitSlicedRays {
+
+    public static final int LANES = 64;
+
+    private final BoardTopology topology;
+    private final int numCells;
+
+    /*
+    Tables indexed by state = cellIndex*6 + entryPoint:
+    - readCells[state*4 + i] stores the cells read for the state, in the order of the RayTable atom mask (the
+      cell itself and its neighbours at entryPoint+2, +3 and +4). Missing neighbours are stored as numCells, the
+      index of an extra cell that never contains atoms
+    - nextStates[state*6 + exitPoint] stores the state of a ray exiting the cell through the given exit point, or
+      -outputPoint if the ray exits the board
+     */
+    private final int[] readCells;
+    private final int[] nextStates;
+
+    // occupancy of the cells of the boards being traced, with an extra empty cell at the end
+    private final long[] atoms;
+
+    // the lanes in each state, for the current and the next step, and the states with lanes in them
+    private long[] lanes;
+    private long[] nextLanes;
+    private int[] active;
+    private int[] nextActive;
+
+    /**
+     * Constructs an engine for boards of the given size
+     * @param boardSize the number of rows of the boards (see the Board constructor)
+     */
+    public BitSlicedRays(int boardSize) {
+        topology = BoardTopology.of(boardSize);
+        numCells = topology.getNumCells();
+        int numStates = numCells * 6;
+
+        readCells = new int[numStates * 4];
+        nextStates = new int[numStates * 6];
+        for(int cell = 0; cell < numCells; cell++) {
+            for(int entryPoint = 0; entryPoint < 6; entryPoint++) {
+                int state = cell * 6 + entryPoint;
+                readCells[state * 4] = cell;
+                for(int i = 1; i <= 3; i++) {
+                    readCells[state * 4 + i] = neighbourOrEmpty(cell, (entryPoint + i + 1) % 6);
+                }
+            }
+            // the next state only depends on the exit point
+            for(int exitPoint = 0; exitPoint < 6; exitPoint++) {
+                int neighbour = topology.getNeighbour(cell, exitPoint);
+                int next = neighbour == -1 ? -topology.getOutputPoint(cell, exitPoint)
+                        : neighbour * 6 + (exitPoint + 3) % 6;
+                for(int entryPoint = 0; entryPoint < 6; entryPoint++) {
+                    nextStates[(cell * 6 + entryPoint) * 6 + exitPoint] = next;
+                }
+            }
+        }
+
+        atoms = new long[numCells + 1];
+        lanes = new long[numStates];
+        nextLanes = new long[numStates];
+        active = new int[numStates];
+        nextActive = new int[numStates];
+    }
+
+    private int neighbourOrEmpty(int cell, int position) {
+        int neighbour = topology.getNeighbour(cell, position);
+        return neighbour == -1 ? numCells : neighbour;
+    }
+
+    /**
+     * Converts up to 64 bit boards into the per-cell occupancy used by trace
+     *
+     * @param atomMasks atom masks of bit boards
+     * @param from the position of the bit board for lane 0
+     * @param count the number of bit boards, at most 64. The remaining lanes hold empty boards
+     * @return the occupancy of the 61 cells of the standard board, with bit i of element c set if bit board
+     * from+i has an atom in cell c
+     */
+    public static long[] slice(long[] atomMasks, int from, int count) {
+        if(count < 0 || count > LANES || from < 0 || from + count > atomMasks.length) {
+            throw new IllegalArgumentException("Invalid argument to BitSlicedRays.slice");
+        }
+
+        long[] occupancy = new long[BitBoard.NUM_CELLS];
+        for(int lane = 0; lane < count; lane++) {
+            for(long bits = atomMasks[from + lane]; bits != 0; bits &= bits - 1) {
+                occupancy[Long.numberOfTrailingZeros(bits)] |= 1L << lane;
+            }
+        }
+        return occupancy;
+    }
+
+    /**
+     * Converts up to 64 boards of the same size into the per-cell occupancy used by trace
+     * @param boards the boards, one for each lane starting from lane 0
+     * @return the occupancy of the cells, with bit i of element c set if boards[i] has an atom in cell c
+     */
+    public static long[] slice(Board[] boards) {
+        if(boards.length == 0 || boards.length > LANES) {
+            throw new IllegalArgumentException("Invalid argument to BitSlicedRays.slice");
+        }
+
+        long[] occupancy = new long[boards[0].getNumCells()];
+        for(int lane = 0; lane < boards.length; lane++) {
+            if(boards[lane].getBoardSize() != boards[0].getBoardSize()) {
+                throw new IllegalArgumentException("Boards of different sizes passed to BitSlicedRays.slice");
+            }
+            for(int cell = 0; cell < occupancy.length; cell++) {
+                if(boards[lane].getCell(cell).hasAtom()) {
+                    occupancy[cell] |= 1L << lane;
+                }
+            }
+        }
+        return occupancy;
+    }
+
+    /**
+     * Traces the rays entering all 64 boards at the same input point
+     *
+     * @param occupancy the atoms of the boards, one long per cell (see slice)
+     * @param inputPoint the input point of the rays
+     * @param outputPoints filled in with the output point of the ray on the board of each lane (or -1 if the ray
+     *                     is absorbed), at the index of the lane
+     */
+    public void trace(long[] occupancy, int inputPoint, int[] outputPoints) {
+        if(occupancy.length != numCells || inputPoint < 1 || inputPoint > topology.getNumInputPoints()
+                || outputPoints.length < LANES) {
+            throw new IllegalArgumentException("Invalid argument to BitSlicedRays.trace");
+        }
+
+        System.arraycopy(occupancy, 0, atoms, 0, numCells);
+
+        int cell = topology.getInputCell(inputPoint);
+        int entryPoint = topology.getEntryPoint(inputPoint);
+
+        // edge of the board case, see Ray.isReflectedOnEdge
+        long reflected = atoms[cell] | atoms[neighbourOrEmpty(cell, (entryPoint + 5) % 6)]
+                | atoms[neighbourOrEmpty(cell, (entryPoint + 1) % 6)];
+        setOutputPoints(outputPoints, reflected, inputPoint);
+
+        int numActive = 0;
+        int start = cell * 6 + entryPoint;
+        if(~reflected != 0) {
+            lanes[start] = ~reflected;
+            active[numActive++] = start;
+        }
+
+        while(numActive > 0) {
+            int numNext = 0;
+
+            for(int i = 0; i < numActive; i++) {
+                int state = active[i];
+                long here = lanes[state];
+                lanes[state] = 0;
+
+                int cells = state * 4;
+                long atom = atoms[readCells[cells]];
+                long neighbour1 = atoms[readCells[cells + 1]];
+                long neighbour3 = atoms[readCells[cells + 3]];
+
+                int exits = state * 6;
+                int entry = state % 6;
+                if((here & (atom | neighbour1 | neighbour3)) == 0) {
+                    // the common case, where the rays of all lanes in this state keep moving straight
+                    numNext = move(here, nextStates[exits + (entry + 3) % 6], outputPoints, numNext);
+                    continue;
+                }
+                long neighbour2 = atoms[readCells[cells + 2]];
+
+                // the same cases as in RayTable.computeExitPoint, for all lanes at once
+                setOutputPoints(outputPoints, here & atom, -1);             // absorbed
+                long moving = here & ~atom;
+                long straight = moving & ~(neighbour1 | neighbour3);
+                long reflectedBack = moving & neighbour1 & neighbour3;
+                long left = moving & neighbour3 & ~neighbour1;
+                long right = moving & neighbour1 & ~neighbour3;
+
+                numNext = move(straight, nextStates[exits + (entry + 3) % 6], outputPoints, numNext);
+                numNext = move(reflectedBack, nextStates[exits + entry], outputPoints, numNext);
+                numNext = move(left & neighbour2, nextStates[exits + (entry + 1) % 6], outputPoints, numNext);
+                numNext = move(left & ~neighbour2, nextStates[exits + (entry + 2) % 6], outputPoints, numNext);
+                numNext = move(right & neighbour2, nextStates[exits + (entry + 5) % 6], outputPoints, numNext);
+                numNext = move(right & ~neighbour2, nextStates[exits + (entry + 4) % 6], outputPoints, numNext);
+            }
+
+            // the lanes of the current step have all been cleared, so the buffers can be swapped
+            long[] swapLanes = lanes;
+            lanes = nextLanes;
+            nextLanes = swapLanes;
+            int[] swapActive = active;
+            active = nextActive;
+            nextActive = swapActive;
+            numActive = numNext;
+        }
+    }
+
+    /**
+     * Traces the rays entering all 64 boards at every input point
+     *
+     * @param occupancy the atoms of the boards, one long per cell (see slice)
+     * @return the signatures of the boards (see Ray.processAll): element [lane][i-1] is the output point of the
+     * ray entering the board of the given lane at input point i
+     */
+    public int[][] traceAll(long[] occupancy) {
+        int numInputPoints = topology.getNumInputPoints();
+        int[][] signatures = new int[LANES][numInputPoints];
+        int[] outputPoints = new int[LANES];
+        for(int inputPoint = 1; inputPoint <= numInputPoints; inputPoint++) {
+            trace(occupancy, inputPoint, outputPoints);
+            for(int lane = 0; lane < LANES; lane++) {
+                signatures[lane][inputPoint - 1] = outputPoints[lane];
+            }
+        }
+        return signatures;
+    }
+
+    // moves the given lanes to the next state, or sets their output point if they exit the board
+    private int move(long moving, int next, int[] outputPoints, int numNext) {
+        if(moving == 0) {
+            return numNext;
+        }
+        if(next < 0) {
+            setOutputPoints(outputPoints, moving, -next);
+            return numNext;
+        }
+        if(nextLanes[next] == 0) {
+            nextActive[numNext++] = next;
+        }
+        nextLanes[next] |= moving;
+        return numNext;
+    }
+
+    private static void setOutputPoints(int[] outputPoints, long lanes, int outputPoint) {
+        for(long bits = lanes; bits != 0; bits &= bits - 1) {
+            outputPoints[Long.numberOfTrailingZeros(bits)] = outputPoint;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitSlicedRaysTest {
+
+    @Test
+    void testRandomBitBoards() {
+        BitSlicedRays engine = new BitSlicedRays(Board.BOARD_SIZE);
+        Random random = new Random(26);
+        long[] atomMasks = new long[BitSlicedRays.LANES];
+        for(int lane = 0; lane < atomMasks.length; lane++) {
+            Board board = new Board();
+            board.generateAtoms(random.nextInt(12));
+            atomMasks[lane] = BitBoard.fromBoard(board).atoms();
+        }
+
+        int[][] signatures = engine.traceAll(BitSlicedRays.slice(atomMasks, 0, atomMasks.length));
+        for(int lane = 0; lane < atomMasks.length; lane++) {
+            Board board = new BitBoard(atomMasks[lane]).toBoard();
+            for(int inputPoint = 1; inputPoint <= 54; inputPoint++) {
+                assertEquals(Ray.process(board, inputPoint), signatures[lane][inputPoint - 1]);
+            }
+        }
+    }
+
+    @Test
+    void testFixtures() {
+        Board board = new Board();
+        Cell[][] cells = board.getCells();
+        cells[2][0].setAtom();
+        cells[4][4].setAtom();
+
+        // the unused lanes hold empty boards
+        int[] outputPoints = new int[BitSlicedRays.LANES];
+        new BitSlicedRays(Board.BOARD_SIZE).trace(BitSlicedRays.slice(new Board[] {board}), 15, outputPoints);
+        assertEquals(50, outputPoints[0]);
+        assertEquals(Ray.process(new Board(), 15), outputPoints[1]);
+
+        new BitSlicedRays(Board.BOARD_SIZE).trace(BitSlicedRays.slice(new Board[] {board}), 11, outputPoints);
+        assertEquals(-1, outputPoints[0]);
+    }
+
+    @Test
+    void testLargeBoards() {
+        Board[] boards = new Board[20];
+        for(int lane = 0; lane < boards.length; lane++) {
+            boards[lane] = new Board(15);
+            boards[lane].generateAtoms(lane * 3);
+        }
+
+        int[][] signatures = new BitSlicedRays(15).traceAll(BitSlicedRays.slice(boards));
+        for(int lane = 0; lane < boards.length; lane++) {
+            assertArrayEquals(Ray.processAll(boards[lane]), signatures[lane]);
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        BitSlicedRays engine = new BitSlicedRays(Board.BOARD_SIZE);
+        assertThrows(IllegalArgumentException.class, () -> engine.trace(new long[61], 55, new int[64]));
+        assertThrows(IllegalArgumentException.class, () -> engine.trace(new long[60], 1, new int[64]));
+        assertThrows(IllegalArgumentException.class, () -> BitSlicedRays.slice(new long[65], 0, 65));
+    }
+}
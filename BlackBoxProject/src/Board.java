@@ -1,6 +1,6 @@
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 import javafx.scene.paint.Color;
 
 /**
@@ -11,22 +11,44 @@ public class Board {
 
     private final Cell[][] cells;
 
+    // the same cells as in the 2D array, ordered by their index (see cellIndex)
+    private final Cell[] cellsByIndex;
+
     private final ArrayList<RayMarker> rayMarkers;
 
+    private final RayPaths rayPaths;    // paths of the rays sent with Ray.process, for the final display
+
+    private final BoardTopology topology;
+
+    private volatile JumpTable jumpTable;   // only created once it is first needed (see getJumpTable)
+
     final static int BOARD_SIZE = 9;
 
 
     /**
-     * Constructor that creates the board structure as a 2D array of cells. Creates each of the cells
-     * in the 2D array and also sets up the neighbours of each cell
+     * Constructor that creates a board of standard size (9 rows, with 54 input points)
      */
     public Board() {
-        cells = new Cell[BOARD_SIZE][];
+        this(BOARD_SIZE);
+    }
+
+    /**
+     * Constructor that creates the board structure as a 2D array of cells. Creates each of the cells in the 2D
+     * array; the neighbours of each cell are shared by all boards of the same size (see BoardTopology)
+     *
+     * @param boardSize the number of rows of the board (an odd number, at least 3). The board has
+     *                  (boardSize + 1) / 2 cells on each side and 6 * boardSize input points
+     */
+    public Board(int boardSize) {
+        topology = BoardTopology.of(boardSize);
+        cells = new Cell[boardSize][];
+        cellsByIndex = new Cell[topology.getNumCells()];
         rayMarkers = new ArrayList<>();
+        rayPaths = new RayPaths();
 
-        for(int i=0; i<BOARD_SIZE; i++) {
+        for(int i=0; i<boardSize; i++) {
 
-            int rowLength = computeRowLength(i);
+            int rowLength = topology.getRowLength(i);
 
             cells[i] = new Cell[rowLength];
 
@@ -34,92 +56,141 @@ public class Board {
                 cells[i][j] = new Cell();
                 cells[i][j].setRow(i);
                 cells[i][j].setCol(j);
-
-                setUpNeighbours(i, j);
+                cells[i][j].setBoard(this);
+                cellsByIndex[topology.cellIndex(i, j)] = cells[i][j];
             }
         }
     }
 
-    private int computeRowLength(int i) {
-        if(i <= 4) {
-            return 5+i;
-        } else {
-            return 13-i;
-        }
+    /**
+     * Method which randomly generates board positions for the number of atoms specified in its parameter.
+     * This method modifies the internal state of the board, by setting a boolean flag in the chosen cells.
+     *
+     * @param maxAtoms the number of atom positions to generate
+     */
+    public void generateAtoms(int maxAtoms) {
+        generateAtoms(maxAtoms, new SplittableRandom());
     }
 
     /**
-     * Sets up the neighbours of the cell at a certain row and column in the 2D array of cells
+     * Method which randomly generates board positions for the number of atoms specified, choosing among the cells
+     * that don't contain an atom yet. Every set of cells is equally likely to be chosen, and the same random
+     * generator state always gives the same positions, so games can be reproduced from a seed.
+     *
+     * @param maxAtoms the number of atom positions to generate
+     * @param random the random generator used to choose the positions, for example new SplittableRandom(seed)
      */
-    private void setUpNeighbours(int row, int col) {
-        //UPPER-LEFT & LOWER-RIGHT neighbours
-        if(row>0 && row<=4 && col>0) {    //upper-half of the board
-            cells[row][col].setNeighbour(0, cells[row-1][col-1]);
-            cells[row-1][col-1].setNeighbour(3, cells[row][col]);
-        } else if(row>4) {    //lower-half of the board
-            cells[row][col].setNeighbour(0, cells[row-1][col]);
-            cells[row-1][col].setNeighbour(3, cells[row][col]);
+    public void generateAtoms(int maxAtoms, SplittableRandom random) {
+        int[] freeCells = new int[cellsByIndex.length];
+        int numFree = 0;
+        for(int index = 0; index < cellsByIndex.length; index++) {
+            if(!cellsByIndex[index].hasAtom()) {
+                freeCells[numFree++] = index;
+            }
         }
-        // In the rest of the cases (left and upper edges of the upper half), the cells don't have upper-left
-        // neighbours (they remain set to null). Also, the right and lower edges of the lower half will not
-        // have lower-right neighbours (they remain set to null)
-
-        //UPPER-RIGHT & LOWER-LEFT neighbours
-        if(row>0 && row<=4 && col<computeRowLength(row)-1) {  //upper-half of the board
-            cells[row][col].setNeighbour(1, cells[row-1][col]);
-            cells[row-1][col].setNeighbour(4, cells[row][col]);
-        } else if(row>4) {    //lower-half of the board
-            cells[row][col].setNeighbour(1, cells[row-1][col+1]);
-            cells[row-1][col+1].setNeighbour(4, cells[row][col]);
+
+        if(random == null || maxAtoms > numFree) {
+            throw new IllegalArgumentException("Invalid argument to Board.generateAtoms");
         }
-        // In the rest of the cases (right and upper edges of the upper half), the cells don't have upper-right
-        // neighbours (they remain set to null). Also, the left and lower edges of the lower half will not have
-        // lower-left neighbours (they remain set to null)
-
-        //LEFT & RIGHT neighbours
-        if(col>0) {
-            cells[row][col].setNeighbour(5, cells[row][col-1]);
-            cells[row][col-1].setNeighbour(2, cells[row][col]);
+
+        /*
+        Floyd's algorithm: each step chooses one of the first j+1 free cells, and if that one was already chosen
+        in an earlier step, it takes cell j instead (which can't have been chosen yet). Unlike choosing cells until
+        an empty one comes up, this takes exactly maxAtoms steps, even when almost all cells get an atom.
+         */
+        boolean[] chosen = new boolean[numFree];
+        for(int j = numFree - maxAtoms; j < numFree; j++) {
+            int choice = random.nextInt(j + 1);
+            if(chosen[choice]) {
+                choice = j;
+            }
+            chosen[choice] = true;
+            cellsByIndex[freeCells[choice]].setAtom();
         }
-        // In the rest of the cases(left edge of the board), the cells don't have left neighbours (they remain set
-        // to null). Also, the right edge of the board will not have right neighbours (they remain set to null)
     }
 
     /**
-     * Method which randomly generates board positions for the number of atoms specified in its parameter.
-     * This method modifies the internal state of the board, by setting a boolean flag in the chosen cells.
-     *
-     * @param maxAtoms the number of atom positions to generate
+     * Clears this board so that it can be reused instead of constructing a new one: removes all atoms, ray
+     * segments and ray markers, keeping the cells and their neighbours
      */
+    public synchronized void reset() {
+        for(Cell cell : cellsByIndex) {
+            cell.reset();
+        }
+        rayMarkers.clear();
+        rayPaths.clear();
+        jumpTable = null;   // recomputed for the new atoms when it is next needed
+    }
 
-    public void generateAtoms(int maxAtoms) {
+    public Cell[][] getCells() {
+        return cells;
+    }
 
-        Random random = new Random();
+    /**
+     * Computes the index of the cell at a certain row and column. Cells are numbered row by row, starting from
+     * 0 for the first cell of the upper row (for a standard board, this is the same numbering as in BitBoard)
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the index of the cell
+     */
+    public int cellIndex(int row, int col) {
+        return topology.cellIndex(row, col);
+    }
 
-        int atomsPlaced = 0;
-        while (atomsPlaced < maxAtoms) {
+    /**
+     * Returns the cell with the given index (see cellIndex)
+     */
+    public Cell getCell(int index) {
+        return cellsByIndex[index];
+    }
 
-            int y = random.nextInt(BOARD_SIZE);
-            int rowLength;
-            if(y <= 4) {
-                rowLength = 5+y;
-            } else {
-                rowLength = 13-y;
-            }
-            int x = random.nextInt(rowLength);
+    public int getNumCells() {
+        return cellsByIndex.length;
+    }
+
+    public int getBoardSize() {
+        return cells.length;
+    }
 
-            // Check if there is no atom already at the generated position
-            if (!this.getCells()[y][x].hasAtom()) {
-                this.getCells()[y][x].setAtom();
-                atomsPlaced++;
+    public int getNumInputPoints() {
+        return topology.getNumInputPoints();
+    }
+
+    public BoardTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns the jump table of this board, used to speed up ray processing on large boards. The table is
+     * computed the first time this method is called, and then updated whenever an atom is placed on the board
+     * or removed from it.
+     * @return the jump table of this board
+     */
+    public JumpTable getJumpTable() {
+        JumpTable table = jumpTable;
+        if(table == null) {
+            synchronized(this) {
+                if(jumpTable == null) {
+                    jumpTable = new JumpTable(this);
+                }
+                table = jumpTable;
             }
         }
+        return table;
     }
 
+    /**
+     * Called by a cell of this board when an atom is placed in it or removed from it, to keep the jump table up
+     * to date
+     */
+    synchronized void atomChanged(Cell cell) {
+        if(jumpTable != null) {
+            jumpTable.update(cellIndex(cell.getRow(), cell.getCol()));
+        }
+    }
 
-
-    public Cell[][] getCells() {
-        return cells;
+    public RayPaths getRayPaths() {
+        return rayPaths;
     }
 
     public ArrayList<RayMarker> getRayMarkers() {
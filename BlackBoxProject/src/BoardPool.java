@@ -0,0 +1,102 @@
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that models a pool of reusable boards of the same size, for simulations that play through a large number
+ * of boards. Boards are taken from the pool with acquire and given back with release, which resets them, so
+ * that their cells do not have to be constructed and wired up again. All methods are thread-safe.
+ * <p>
+ * The pool keeps track of the boards on loan, so that a board released twice (which would let two callers acquire
+ * the same board) or a board that was not acquired from the pool is rejected.
+ */
+public class BoardPool {
+
+    private final int boardSize;
+
+    // the boards that are ready to be acquired, all of them reset
+    private final ArrayBlockingQueue<Board> freeBoards;
+
+    // the boards acquired and not released yet, by identity
+    private final Set<Board> boardsOnLoan = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final AtomicLong boardsCreated = new AtomicLong();
+
+    /**
+     * Constructs an empty pool of boards of standard size
+     * @param capacity the maximum number of free boards kept in the pool
+     */
+    public BoardPool(int capacity) {
+        this(Board.BOARD_SIZE, capacity);
+    }
+
+    /**
+     * Constructs an empty pool of boards
+     * @param boardSize the number of rows of the boards (see the Board constructor)
+     * @param capacity the maximum number of free boards kept in the pool; boards released while the pool is full
+     *                 are left to the garbage collector
+     */
+    public BoardPool(int boardSize, int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity for BoardPool");
+        }
+
+        BoardTopology.of(boardSize);    // validates the size
+        this.boardSize = boardSize;
+        this.freeBoards = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Takes an empty board (with no atoms, ray segments or ray markers) from the pool, or constructs a new one if
+     * the pool has no free boards
+     * @return a board that is not used by anyone else until it is released
+     */
+    public Board acquire() {
+        Board board = freeBoards.poll();
+        if(board == null) {
+            boardsCreated.incrementAndGet();
+            board = new Board(boardSize);
+        }
+        synchronized(boardsOnLoan) {
+            boardsOnLoan.add(board);
+        }
+        return board;
+    }
+
+    /**
+     * Gives a board back to the pool. The board is reset, and must not be used by the caller any more.
+     * @param board a board acquired from this pool
+     * @throws IllegalStateException if the board is not on loan from this pool: it has already been released, or
+     * it was not acquired from this pool
+     */
+    public void release(Board board) {
+        if(board == null || board.getBoardSize() != boardSize) {
+            throw new IllegalArgumentException("Invalid argument to BoardPool.release");
+        }
+        synchronized(boardsOnLoan) {
+            if(!boardsOnLoan.remove(board)) {
+                throw new IllegalStateException("Board released to BoardPool is not on loan from it");
+            }
+        }
+
+        board.reset();
+        freeBoards.offer(board);
+    }
+
+    /**
+     * @return the number of boards constructed by this pool since it was created
+     */
+    public long getBoardsCreated() {
+        return boardsCreated.get();
+    }
+
+    public int getFreeBoards() {
+        return freeBoards.size();
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardPoolTest {
+
+    @Test
+    void testReuse() {
+        BoardPool pool = new BoardPool(2);
+        Board first = pool.acquire();
+        first.generateAtoms(6);
+        pool.release(first);
+
+        Board second = pool.acquire();
+        assertSame(first, second);
+        assertEquals(0, second.countAtoms());
+        assertEquals(1, pool.getBoardsCreated());
+    }
+
+    @Test
+    void testCapacity() {
+        BoardPool pool = new BoardPool(2);
+        Board[] boards = {pool.acquire(), pool.acquire(), pool.acquire()};
+        for(Board board : boards) {
+            pool.release(board);
+        }
+        assertEquals(2, pool.getFreeBoards());
+        assertEquals(3, pool.getBoardsCreated());
+    }
+
+    @Test
+    void testInvalidRelease() {
+        BoardPool pool = new BoardPool(2);
+        assertThrows(IllegalArgumentException.class, () -> pool.release(null));
+        assertThrows(IllegalArgumentException.class, () -> pool.release(new Board(11)));
+        assertThrows(IllegalArgumentException.class, () -> new BoardPool(0));
+    }
+
+    @Test
+    void testReleaseNotOnLoan() {
+        BoardPool pool = new BoardPool(2);
+        Board board = pool.acquire();
+        pool.release(board);
+        assertThrows(IllegalStateException.class, () -> pool.release(board));
+        assertEquals(1, pool.getFreeBoards());
+
+        // a board of the right size that was not acquired from the pool
+        assertThrows(IllegalStateException.class, () -> pool.release(new Board()));
+        assertThrows(IllegalStateException.class, () -> new BoardPool(2).release(pool.acquire()));
+
+        // each release gives one board, so two callers never get the same one
+        assertNotSame(pool.acquire(), pool.acquire());
+    }
+
+    @Test
+    void testConcurrentTrials() throws InterruptedException {
+        BoardPool pool = new BoardPool(4);
+        ArrayList<Thread> threads = new ArrayList<>();
+        ArrayList<Throwable> errors = new ArrayList<>();
+
+        for(int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for(int trial = 0; trial < 500; trial++) {
+                    Board board = pool.acquire();
+                    if(board.countAtoms() != 0) {
+                        synchronized(errors) {
+                            errors.add(new AssertionError("board acquired with atoms"));
+                        }
+                    }
+                    board.generateAtoms(6);
+                    Ray.process(board, 1 + trial % 54);
+                    pool.release(board);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.isEmpty());
+        assertTrue(pool.getBoardsCreated() <= 4);
+    }
+}
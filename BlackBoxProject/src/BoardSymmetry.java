@@ -0,0 +1,184 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that models the 12 symmetries of a hexagonal board (6 rotations and 6 reflections), as permutations of
+ * its cells and of its input points. Since the ray rules look the same from every direction, transforming the
+ * atoms of a board also transforms the output point of every ray in the same way, so the results for a whole
+ * family of symmetric layouts can be computed from a single canonical layout (see canonicalize).
+ * <p>
+ * Transform t (in the range 0-11) rotates the board clockwise by t*60 degrees for t < 6, and reflects it
+ * across its vertical axis before rotating it by (t-6)*60 degrees for t >= 6. Transform 0 is the identity.
+ */
+public final class BoardSymmetry {
+
+    public static final int NUM_TRANSFORMS = 12;
+
+    private static final ConcurrentHashMap<Integer, BoardSymmetry> SYMMETRIES = new ConcurrentHashMap<>();
+
+    // cellMaps[t][index] stores the index of the cell that the cell with the given index is moved to by transform t
+    private final int[][] cellMaps;
+
+    // pointMaps[t][i] stores the input point that input point i is moved to by transform t (index 0 is unused)
+    private final int[][] pointMaps;
+
+    private final int[] inverses;
+
+    /**
+     * A layout in canonical form, together with the transform that maps the original layout to it
+     *
+     * @param atoms the atom mask of the canonical layout (see BitBoard)
+     * @param transform the transform that maps the original layout to the canonical one
+     */
+    public record Canonical(long atoms, int transform) {
+    }
+
+    private BoardSymmetry(int boardSize) {
+        BoardTopology topology = BoardTopology.of(boardSize);
+        int half = boardSize / 2;
+        int numCells = topology.getNumCells();
+
+        cellMaps = new int[NUM_TRANSFORMS][numCells];
+        pointMaps = new int[NUM_TRANSFORMS][topology.getNumInputPoints() + 1];
+        inverses = new int[NUM_TRANSFORMS];
+
+        for(int t = 0; t < NUM_TRANSFORMS; t++) {
+            for(int index = 0; index < numCells; index++) {
+                int row = topology.rowOf(index);
+
+                // cube coordinates of the cell, relative to the cell in the middle of the board
+                int x = topology.colOf(index) - Math.min(row, half);
+                int z = row - half;
+                int y = -x - z;
+
+                if(t >= 6) {            // reflection across the vertical axis swaps y and z
+                    int swap = y;
+                    y = z;
+                    z = swap;
+                }
+                for(int i = 0; i < t % 6; i++) {        // clockwise rotation by 60 degrees
+                    int oldX = x;
+                    x = -z;
+                    z = -y;
+                    y = -oldX;
+                }
+
+                int newRow = z + half;
+                cellMaps[t][index] = topology.cellIndex(newRow, x + Math.min(newRow, half));
+            }
+
+            // the sides of a cell are permuted in the same way as the neighbours of the cell in the middle
+            int middle = topology.cellIndex(half, half);
+            int[] sideMap = new int[6];
+            for(int side = 0; side < 6; side++) {
+                int neighbour = topology.getNeighbour(middle, side);
+                for(int newSide = 0; newSide < 6; newSide++) {
+                    if(topology.getNeighbour(middle, newSide) == cellMaps[t][neighbour]) {
+                        sideMap[side] = newSide;
+                    }
+                }
+            }
+
+            // an input point is a side of an edge cell, so it is moved together with that cell and side
+            for(int inputPoint = 1; inputPoint <= topology.getNumInputPoints(); inputPoint++) {
+                int cell = cellMaps[t][topology.getInputCell(inputPoint)];
+                pointMaps[t][inputPoint] = topology.getOutputPoint(cell, sideMap[topology.getEntryPoint(inputPoint)]);
+            }
+        }
+
+        for(int t = 0; t < NUM_TRANSFORMS; t++) {
+            for(int inverse = 0; inverse < NUM_TRANSFORMS; inverse++) {
+                if(isIdentity(t, inverse)) {
+                    inverses[t] = inverse;
+                }
+            }
+        }
+    }
+
+    // checks whether applying transform first and then transform second leaves every cell in place
+    private boolean isIdentity(int first, int second) {
+        for(int index = 0; index < cellMaps[first].length; index++) {
+            if(cellMaps[second][cellMaps[first][index]] != index) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the symmetries of boards with the given number of rows, creating them the first time they are needed
+     * @param boardSize the number of rows of the board (an odd number, at least 3)
+     */
+    public static BoardSymmetry of(int boardSize) {
+        BoardTopology.of(boardSize);    // validates the size
+        return SYMMETRIES.computeIfAbsent(boardSize, BoardSymmetry::new);
+    }
+
+    /**
+     * @return the transform that undoes the given transform
+     */
+    public int inverse(int transform) {
+        return inverses[transform];
+    }
+
+    public int transformCell(int transform, int cellIndex) {
+        return cellMaps[transform][cellIndex];
+    }
+
+    /**
+     * @param transform a transform in the range 0-11
+     * @param point an input/output point, or -1 (for absorbed rays), which is left unchanged
+     * @return the point that the given point is moved to by the transform
+     */
+    public int transformPoint(int transform, int point) {
+        return point == -1 ? -1 : pointMaps[transform][point];
+    }
+
+    /**
+     * Transforms the atoms of a board given as an atom mask, with bit i set if the cell with index i contains an atom
+     * (see BitBoard)
+     * @throws IllegalArgumentException if the cells of the board do not fit in an atom mask (more than 64 cells)
+     */
+    public long transformAtoms(int transform, long atoms) {
+        if(cellMaps[transform].length > Long.SIZE) {
+            throw new IllegalArgumentException("Board too large for BoardSymmetry.transformAtoms");
+        }
+        long transformed = 0;
+        for(long bits = atoms; bits != 0; bits &= bits - 1) {
+            transformed |= 1L << cellMaps[transform][Long.numberOfTrailingZeros(bits)];
+        }
+        return transformed;
+    }
+
+    /**
+     * Transforms the signature of a board (see Ray.processAll) into the signature of the transformed board
+     */
+    public int[] transformSignature(int transform, int[] signature) {
+        int[] transformed = new int[signature.length];
+        for(int inputPoint = 1; inputPoint <= signature.length; inputPoint++) {
+            transformed[transformPoint(transform, inputPoint) - 1] = transformPoint(transform, signature[inputPoint - 1]);
+        }
+        return transformed;
+    }
+
+    /**
+     * Finds the canonical form of a layout of atoms on a standard board: of the 12 symmetric layouts, the one with
+     * the smallest atom mask. Symmetric layouts have the same canonical form.
+     *
+     * @param atoms the atom mask of a bit board
+     * @return the canonical layout and the transform mapping the given layout to it. Results computed on the
+     * canonical layout are mapped back with the inverse of that transform
+     * @throws IllegalArgumentException if the cells of the board do not fit in an atom mask (see transformAtoms)
+     */
+    public Canonical canonicalize(long atoms) {
+        long best = atoms;
+        int bestTransform = 0;
+        for(int t = 1; t < NUM_TRANSFORMS; t++) {
+            long transformed = transformAtoms(t, atoms);
+            if(transformed < best) {
+                best = transformed;
+                bestTransform = t;
+            }
+        }
+        return new Canonical(best, bestTransform);
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardSymmetryTest {
+    BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+
+    @Test
+    void testIdentity() {
+        for(int index = 0; index < BitBoard.NUM_CELLS; index++) {
+            assertEquals(index, symmetry.transformCell(0, index));
+        }
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            assertEquals(inputPoint, symmetry.transformPoint(0, inputPoint));
+        }
+        assertEquals(-1, symmetry.transformPoint(5, -1));
+    }
+
+    @Test
+    void testRotation() {
+        // a clockwise rotation moves the upper-left corner to the upper-right corner, and input point 1
+        // (upper-left side of that corner) to input point 46 (upper-right side of the upper-right corner)
+        assertEquals(4, symmetry.transformCell(1, 0));
+        assertEquals(46, symmetry.transformPoint(1, 1));
+        // the cell in the middle never moves
+        for(int t = 0; t < BoardSymmetry.NUM_TRANSFORMS; t++) {
+            assertEquals(30, symmetry.transformCell(t, 30));
+        }
+    }
+
+    @Test
+    void testInverse() {
+        for(int t = 0; t < BoardSymmetry.NUM_TRANSFORMS; t++) {
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                int moved = symmetry.transformPoint(t, inputPoint);
+                assertEquals(inputPoint, symmetry.transformPoint(symmetry.inverse(t), moved));
+            }
+        }
+    }
+
+    @Test
+    void testTransformedSignatures() {
+        Random random = new Random(26);
+        for(int i = 0; i < 50; i++) {
+            Board board = new Board();
+            board.generateAtoms(1 + random.nextInt(8));
+            long atoms = BitBoard.fromBoard(board).atoms();
+            int[] signature = Ray.processAll(board);
+
+            for(int t = 0; t < BoardSymmetry.NUM_TRANSFORMS; t++) {
+                Board transformed = new BitBoard(symmetry.transformAtoms(t, atoms)).toBoard();
+                assertArrayEquals(symmetry.transformSignature(t, signature), Ray.processAll(transformed));
+            }
+        }
+    }
+
+    @Test
+    void testLargeBoard() {
+        BoardSymmetry largeSymmetry = BoardSymmetry.of(13);
+        Board board = new Board(13);
+        board.generateAtoms(12);
+        int[] signature = Ray.processAll(board);
+
+        for(int t = 0; t < BoardSymmetry.NUM_TRANSFORMS; t++) {
+            Board transformed = new Board(13);
+            for(int index = 0; index < board.getNumCells(); index++) {
+                if(board.getCell(index).hasAtom()) {
+                    transformed.getCell(largeSymmetry.transformCell(t, index)).setAtom();
+                }
+            }
+            assertArrayEquals(largeSymmetry.transformSignature(t, signature), Ray.processAll(transformed));
+        }
+
+        // the cells do not fit in an atom mask
+        assertThrows(IllegalArgumentException.class, () -> largeSymmetry.transformAtoms(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> largeSymmetry.canonicalize(1));
+    }
+
+    @Test
+    void testCanonicalize() {
+        long atoms = new BitBoard(0).withAtom(0, 1).withAtom(3, 5).withAtom(7, 2).atoms();
+        BoardSymmetry.Canonical canonical = symmetry.canonicalize(atoms);
+        assertEquals(canonical.atoms(), symmetry.transformAtoms(canonical.transform(), atoms));
+
+        // all 12 images of a layout without symmetries of its own are different, and share the canonical form
+        HashSet<Long> images = new HashSet<>();
+        for(int t = 0; t < BoardSymmetry.NUM_TRANSFORMS; t++) {
+            long image = symmetry.transformAtoms(t, atoms);
+            images.add(image);
+            assertEquals(canonical.atoms(), symmetry.canonicalize(image).atoms());
+            assertTrue(canonical.atoms() <= image);
+        }
+        assertEquals(BoardSymmetry.NUM_TRANSFORMS, images.size());
+    }
+}
@@ -1,5 +1,7 @@
 import org.junit.jupiter.api.Test;
 
+import java.util.SplittableRandom;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class NeighbourTest {
@@ -43,6 +45,24 @@ class NeighbourTest {
         assertEquals(board.getCells()[0][3], board.getCells()[0][2].getNeighbours()[2]);
     }
 
+    @Test
+    void testCellWithoutBoard() {
+        assertArrayEquals(new Cell[6], new Cell().getNeighbours());
+        assertNull(new Cell().getNeighbour(0));
+    }
+
+    @Test
+    void testGetNeighbour() {
+        for(Cell[] row : board.getCells()) {
+            for(Cell cell : row) {
+                Cell[] neighbours = cell.getNeighbours();
+                for(int position = 0; position < 6; position++) {
+                    assertSame(neighbours[position], cell.getNeighbour(position));
+                }
+            }
+        }
+    }
+
 }
 
 class AtomGenerationTest {
@@ -63,4 +83,117 @@ class AtomGenerationTest {
         assertEquals(6, count);
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSeededGeneration() {
+        Board first = new Board();
+        Board second = new Board();
+        first.generateAtoms(6, new SplittableRandom(26));
+        second.generateAtoms(6, new SplittableRandom(26));
+        assertEquals(BitBoard.fromBoard(first), BitBoard.fromBoard(second));
+    }
+
+    @Test
+    void testFillBoard() {
+        Board board = new Board();
+        board.getCells()[4][4].setAtom();
+        board.generateAtoms(60, new SplittableRandom(1));
+        assertEquals(61, board.countAtoms());
+        assertThrows(IllegalArgumentException.class, () -> board.generateAtoms(1));
+    }
+
+}
+class BoardSizeTest {
+
+    @Test
+    void testStandardSize() {
+        Board board = new Board();
+        assertEquals(9, board.getBoardSize());
+        assertEquals(61, board.getNumCells());
+        assertEquals(54, board.getNumInputPoints());
+    }
+
+    @Test
+    void testLargeBoardStructure() {
+        Board board = new Board(41);     // 21 cells on each side
+        BoardTopology topology = board.getTopology();
+        assertEquals(1261, board.getNumCells());
+        assertEquals(246, board.getNumInputPoints());
+
+        // output points are only defined on the sides of cells without neighbours, and every input point
+        // leads into exactly one such side
+        int numEdgeSides = 0;
+        for(Cell[] row: board.getCells()) {
+            for(Cell cell: row) {
+                int index = board.cellIndex(cell.getRow(), cell.getCol());
+                assertEquals(cell, board.getCell(index));
+                for(int position = 0; position < 6; position++) {
+                    int outputPoint = topology.getOutputPoint(index, position);
+                    assertEquals(cell.getNeighbours()[position] == null, outputPoint != 0);
+                    if(outputPoint != 0) {
+                        numEdgeSides++;
+                        assertEquals(index, topology.getInputCell(outputPoint));
+                        assertEquals(position, topology.getEntryPoint(outputPoint));
+                    }
+                }
+            }
+        }
+        assertEquals(246, numEdgeSides);
+    }
+
+    @Test
+    void testLargeBoardRays() {
+        Board board = new Board(41);
+        // on an empty board, rays travel straight to the opposite side: input point 1 enters the upper-left
+        // corner from the upper-left, so it leaves the lower-right side of the lower corner
+        // (input point 28 on the standard board)
+        assertEquals(3 * 41 + 1, Ray.process(board, 1));
+
+        board.generateAtoms(200);
+        int[] signature = Ray.processAll(board);
+        for(int inputPoint = 1; inputPoint <= 246; inputPoint++) {
+            int outputPoint = Ray.process(board, inputPoint);
+            assertEquals(outputPoint, signature[inputPoint - 1]);
+            if(outputPoint != -1) {
+                assertEquals(inputPoint, Ray.process(board, outputPoint));
+            }
+        }
+    }
+}
+
+class BoardResetTest {
+
+    @Test
+    void testReset() {
+        Board board = new Board();
+        board.generateAtoms(6);
+        for(int inputPoint = 1; inputPoint <= 54; inputPoint++) {
+            board.addRayMarker(inputPoint, Ray.process(board, inputPoint));
+        }
+        board.reset();
+
+        assertEquals(0, board.countAtoms());
+        assertTrue(board.getRayMarkers().isEmpty());
+        assertEquals(0, board.getRayPaths().getNumSegments());
+        // the neighbours are kept
+        assertSame(board.getCells()[4][5], board.getCells()[4][4].getNeighbours()[2]);
+
+        // a reset board behaves like a new one
+        board.getCells()[2][0].setAtom();
+        board.getCells()[4][4].setAtom();
+        assertEquals(50, Ray.process(board, 15));
+        assertEquals(-1, Ray.process(board, 11));
+    }
+
+    @Test
+    void testResetLargeBoard() {
+        Board board = new Board(21);
+        board.generateAtoms(30);
+        Ray.processAll(board);     // creates the jump table
+        board.reset();
+
+        board.getCells()[10][10].setAtom();
+        Board expected = new Board(21);
+        expected.getCells()[10][10].setAtom();
+        assertArrayEquals(Ray.processAll(expected), Ray.processAll(board));
+    }
+}
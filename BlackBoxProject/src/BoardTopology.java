@@ -0,0 +1,227 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that models the layout of a hexagonal BlackBox board of a given size: the length of each row, the
+ * numbering of the cells, the neighbours of each cell and the numbering of the input/output points around the
+ * edge of the board. Every board of the same size shares a single BoardTopology instance (see of), so boards
+ * only hold the state of their own cells, and cells refer to each other by index.
+ * <p>
+ * The input points are numbered in the same way for every size, going anticlockwise from the upper-left side
+ * of the upper-left cell (input point 1) and ending with the upper side of the same cell. A board with n rows
+ * has 6*n input points (54 for the standard board).
+ */
+public final class BoardTopology {
+
+    private static final ConcurrentHashMap<Integer, BoardTopology> TOPOLOGIES = new ConcurrentHashMap<>();
+
+    private final int boardSize;
+    private final int numInputPoints;
+
+    // index of the first cell of each row, when the cells are numbered row by row (rowStart[boardSize] is the
+    // total number of cells)
+    private final int[] rowStart;
+
+    // row and column of the cell with each index
+    private final int[] rows;
+    private final int[] cols;
+
+    // neighbours[cellIndex*6 + position] stores the index of the neighbour of a cell at a certain position (see
+    // Cell.getNeighbours for the encoding of positions), or -1 if the cell has no neighbour at that position
+    private final int[] neighbours;
+
+    /*
+    Input/output point tables:
+    - outputPoints[cellIndex*6 + exitPoint] stores the output point of a ray exiting a cell through a side with no
+      neighbour, or 0 if the cell has a neighbour on that side
+    - inputCells and entryPoints store the index of the first cell on a ray's path and the entry point to it
+      for each input point (index 0 is unused)
+     */
+    private final int[] outputPoints;
+    private final int[] inputCells;
+    private final int[] entryPoints;
+
+    private BoardTopology(int boardSize) {
+        this.boardSize = boardSize;
+        this.numInputPoints = 6 * boardSize;
+
+        rowStart = new int[boardSize + 1];
+        for(int row = 0; row < boardSize; row++) {
+            rowStart[row + 1] = rowStart[row] + computeRowLength(row);
+        }
+
+        int numCells = rowStart[boardSize];
+        rows = new int[numCells];
+        cols = new int[numCells];
+        neighbours = new int[numCells * 6];
+        outputPoints = new int[numCells * 6];
+        inputCells = new int[numInputPoints + 1];
+        entryPoints = new int[numInputPoints + 1];
+
+        for(int row = 0; row < boardSize; row++) {
+            for(int col = 0; col < getRowLength(row); col++) {
+                rows[cellIndex(row, col)] = row;
+                cols[cellIndex(row, col)] = col;
+
+                for(int side = 0; side < 6; side++) {
+                    if(hasNeighbour(row, col, side)) {
+                        neighbours[cellIndex(row, col) * 6 + side] = computeNeighbour(row, col, side);
+                    } else {
+                        neighbours[cellIndex(row, col) * 6 + side] = -1;
+                        int point = computeOutputPoint(row, col, side);
+                        outputPoints[cellIndex(row, col) * 6 + side] = point;
+
+                        // a ray entering through the side it would exit through travels the same path backwards
+                        inputCells[point] = cellIndex(row, col);
+                        entryPoints[point] = side;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the topology of boards with the given number of rows, creating it the first time it is needed
+     * @param boardSize the number of rows of the board (an odd number, at least 3)
+     * @return the topology shared by all boards with the given size
+     */
+    public static BoardTopology of(int boardSize) {
+        if(boardSize < 3 || boardSize % 2 == 0) {
+            throw new IllegalArgumentException("Invalid board size");
+        }
+        return TOPOLOGIES.computeIfAbsent(boardSize, BoardTopology::new);
+    }
+
+    private int computeRowLength(int row) {
+        int half = boardSize / 2;
+        if(row <= half) {
+            return half + 1 + row;
+        } else {
+            return boardSize + half - row;
+        }
+    }
+
+    // checks whether the cell at the given row and column has a neighbour at the given position
+    // (see Cell.getNeighbours for the encoding of positions)
+    private boolean hasNeighbour(int row, int col, int position) {
+        int half = boardSize / 2;
+        int rowLength = getRowLength(row);
+        return switch (position) {
+            case 0 -> row > 0 && (row > half || col > 0);                                 // upper-left
+            case 1 -> row > 0 && (row > half || col < rowLength - 1);                     // upper-right
+            case 2 -> col < rowLength - 1;                                                // right
+            case 3 -> row < boardSize - 1 && (row < half || col < rowLength - 1);         // lower-right
+            case 4 -> row < boardSize - 1 && (row < half || col > 0);                     // lower-left
+            default -> col > 0;                                                           // left
+        };
+    }
+
+    /**
+     * Figures out the index of the neighbour of the cell at the given row and column at the given position,
+     * assuming the cell has a neighbour there. In the upper half of the board, the row above is one cell shorter
+     * than the current one, so its cells are shifted half a cell to the right; in the lower half it is one cell
+     * longer, so its cells are shifted half a cell to the left (and the other way around for the row below).
+     */
+    private int computeNeighbour(int row, int col, int position) {
+        int half = boardSize / 2;
+        return switch (position) {
+            case 0 -> row <= half ? cellIndex(row - 1, col - 1) : cellIndex(row - 1, col);        // upper-left
+            case 1 -> row <= half ? cellIndex(row - 1, col) : cellIndex(row - 1, col + 1);        // upper-right
+            case 2 -> cellIndex(row, col + 1);                                                    // right
+            case 3 -> row < half ? cellIndex(row + 1, col + 1) : cellIndex(row + 1, col);         // lower-right
+            case 4 -> row < half ? cellIndex(row + 1, col) : cellIndex(row + 1, col - 1);         // lower-left
+            default -> cellIndex(row, col - 1);                                                   // left
+        };
+    }
+
+    /**
+     * Figures out the output point number associated with the exit point (in the range 0 for upper-left to 5 for
+     * left) from the cell at the given row and column, assuming the cell has no neighbour on that side
+     */
+    private int computeOutputPoint(int row, int col, int exitPoint) {
+        int half = boardSize / 2;
+
+        return switch (exitPoint) {
+            case 5 -> row * 2 + 2;                                  // exits through the left
+            case 4 -> (row + col) * 2 + 3;                          // exits through the lower-left
+            case 3 -> col * 2 + boardSize * 2 + 2;                  // exits through the lower-right
+            case 2 -> boardSize * 5 - row * 2;                      // exits through the right
+            case 1 -> numInputPoints - col * 2;                     // exits through the upper-right
+            default -> (col == 0 && row <= half) ? row * 2 + 1      // exits through the upper-left, left side (+ corner)
+                    : numInputPoints + 1 - col * 2;                 // exits through the upper-left, upper side
+        };
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getNumCells() {
+        return rowStart[boardSize];
+    }
+
+    public int getNumInputPoints() {
+        return numInputPoints;
+    }
+
+    public int getRowLength(int row) {
+        return rowStart[row + 1] - rowStart[row];
+    }
+
+    /**
+     * Computes the index of the cell at a certain row and column. Cells are numbered row by row, starting from
+     * 0 for the first cell of the upper row
+     */
+    public int cellIndex(int row, int col) {
+        return rowStart[row] + col;
+    }
+
+    /**
+     * @return the row of the cell with the given index
+     */
+    public int rowOf(int cellIndex) {
+        return rows[cellIndex];
+    }
+
+    /**
+     * @return the column of the cell with the given index
+     */
+    public int colOf(int cellIndex) {
+        return cols[cellIndex];
+    }
+
+    /**
+     * @param cellIndex the index of a cell
+     * @param position the position of the neighbour, in the range 0 (upper-left) to 5 (left)
+     * @return the index of the neighbour of the cell at the given position, or -1 if the cell has no neighbour
+     * at that position
+     */
+    public int getNeighbour(int cellIndex, int position) {
+        return neighbours[cellIndex * 6 + position];
+    }
+
+    /**
+     * @param inputPoint an input point of the board
+     * @return the index of the cell that the input point points into
+     */
+    public int getInputCell(int inputPoint) {
+        return inputCells[inputPoint];
+    }
+
+    /**
+     * @param inputPoint an input point of the board
+     * @return the entry point (in the range 0 for upper-left to 5 for left) to the cell at the given input point
+     */
+    public int getEntryPoint(int inputPoint) {
+        return entryPoints[inputPoint];
+    }
+
+    /**
+     * @param cellIndex the index of a cell on the edge of the board
+     * @param exitPoint the exit point from the cell, in the range 0 for upper-left to 5 for left
+     * @return the output point of a ray exiting the cell through the given exit point, or 0 if the cell has a
+     * neighbour on that side (so the ray does not exit the board)
+     */
+    public int getOutputPoint(int cellIndex, int exitPoint) {
+        return outputPoints[cellIndex * 6 + exitPoint];
+    }
+}
@@ -40,7 +40,7 @@ public class BoardUI extends AnchorPane {
         }
         this.board = board;
         initializeCellCoordinates(board.getCells());
-        initializeNumberLabels(board.getCells());
+        addNumberLabels();
         initializeAtomCoordinates(board.getCells());
         drawBoard();
     }
@@ -72,15 +72,6 @@ public class BoardUI extends AnchorPane {
 
     }
 
-    private void initializeNumberLabels(Cell[][] cells) {
-        for(Cell[] cellRow: cells) {
-            for(Cell cell: cellRow) {
-                //add input number labels on the edge of the board (if the cell is an edge cell)
-                addNumberLabels(cell.getCoordinates(), cell);
-            }
-        }
-    }
-
     private void initializeAtomCoordinates(Cell[][] cells) {
 
         for(Cell[] cellRow: cells) {
@@ -118,14 +109,13 @@ public class BoardUI extends AnchorPane {
             for (Cell cell: cellRow) {
 
                 drawHexagon(cell.getCoordinates());
-
-                ArrayList<RaySegment> raySegments = cell.getRaySegments();
-                if (!raySegments.isEmpty() && atomsVisible) {
-                    // Draw the ray segments passing through this cell, if any
-                    drawRaySegments(cell.getCoordinates(), raySegments);
-                }
             }
         }
+
+        if (atomsVisible) {
+            // Draw the ray segments of all rays sent into the board, if any
+            drawRaySegments(board.getRayPaths());
+        }
     }
 
     private void drawHexagon(Coordinates cellCoordinates) {
@@ -150,16 +140,19 @@ public class BoardUI extends AnchorPane {
         hexagonButtons.add(hexagonButton);
     }
 
-    private void drawRaySegments(Coordinates cellCoordinates, ArrayList<RaySegment> raySegments) {
-        for(RaySegment raySegment: raySegments) {
+    private void drawRaySegments(RayPaths rayPaths) {
+        for(int i = 0; i < rayPaths.getNumSegments(); i++) {
+            int packedSegment = rayPaths.getSegment(i);
+            Coordinates cellCoordinates = board.getCell(RaySegment.cellIndexOf(packedSegment)).getCoordinates();
+            int exitPoint = RaySegment.exitPointOf(packedSegment);
             Polyline polyline = new Polyline();
 
             //set polyline coordinates
-            polyline.getPoints().addAll(getLineCoordinates((raySegment.entryPoint() + 4) % 6, cellCoordinates));
+            polyline.getPoints().addAll(getLineCoordinates((RaySegment.entryPointOf(packedSegment) + 4) % 6, cellCoordinates));
             polyline.getPoints().addAll(cellCoordinates.centerX(), cellCoordinates.centerY());
             //if the ray has not been absorbed
-            if(raySegment.exitPoint() != -1) {
-                polyline.getPoints().addAll(getLineCoordinates((raySegment.exitPoint() + 4) % 6, cellCoordinates));
+            if(exitPoint != -1) {
+                polyline.getPoints().addAll(getLineCoordinates((exitPoint + 4) % 6, cellCoordinates));
             }
 
             //style polyline
@@ -278,50 +271,8 @@ public class BoardUI extends AnchorPane {
 
     // places a ray marker of the specified color at the label with the specified number
     private void placeRayMarker(int number, Color color) {
-        Cell cell;
-        if(number <= 18 && number % 2 == 0) {   // ray marker to the left
-
-            cell = board.getCells()[number/2-1][0];
-            drawMarker(getLeftX(cell.getCoordinates().centerX(), cell),
-                    getLeftY(cell.getCoordinates().centerY()), color);
-
-        } else if(number >= 11 && number <= 27 && number % 2 == 1) {    // ray marker to the lower left
-
-            cell = board.getCells()[Math.min((number-3)/2, 8)][number/19*(number-19)/2];
-            drawMarker(getLowerLeftX(cell.getCoordinates().centerX()),
-                    getLowerLeftY(cell.getCoordinates().centerY()), color);
-
-        } else if(number >= 20 && number <= 36 && number % 2 == 0) {    // ray marker to the lower right
-
-            cell = board.getCells()[Math.min((44-number)/2, 8)][(number-20)/2];
-            drawMarker(getLowerRightX(cell.getCoordinates().centerX()),
-                    getLowerRightY(cell.getCoordinates().centerY()), color);
-
-        } else if(number >= 29 && number <= 45 && number % 2 == 1) {    // ray marker to the right
-
-            cell = board.getCells()[(45-number)/2][number<=37 ? (number-21)/2 : (53-number)/2];
-            drawMarker(getRightX(cell.getCoordinates().centerX()),
-                    getRightY(cell.getCoordinates().centerY()), color);
-
-        } else if(number >= 38 && number % 2 == 0) {    // ray marker to the upper right
-
-            cell = board.getCells()[Math.max((46-number)/2, 0)][(54-number)/2];
-            drawMarker(getUpperRightX(cell.getCoordinates().centerX()),
-                    getUpperRightY(cell.getCoordinates().centerY()), color);
-
-        } else if(number >= 47) {   // ray marker to the upper left (top edge)
-
-            cell = board.getCells()[0][(55-number)/2];
-            drawMarker(getUpperLeftX(cell.getCoordinates().centerX(), cell),
-                    getUpperLeftY(cell.getCoordinates().centerY()), color);
-
-        } else {    // ray marker to the upper left (left edge)
-
-            cell = board.getCells()[number/2][0];
-            drawMarker(getUpperLeftX(cell.getCoordinates().centerX(), cell),
-                    getUpperLeftY(cell.getCoordinates().centerY()), color);
-
-        }
+        double[] position = getLabelPosition(number);
+        drawMarker(position[0], position[1], color);
 
         // remove the label for this number, as it has been replaced with a ray marker
         numberLabels.remove(number);
@@ -337,38 +288,33 @@ public class BoardUI extends AnchorPane {
         getChildren().addAll(numberLabels.values());
     }
 
-    private void addNumberLabels(Coordinates coordinates, Cell cell) {
-        double centerX = coordinates.centerX(), centerY = coordinates.centerY();
-
-        if(cell.getCol() == 0) {
-            //left label
-            addNewLabel(getLeftX(centerX, cell), getLeftY(centerY), cell.getRow() * 2 + 2);
-            if(cell.getRow() <= 4) {
-                //upper left label
-                addNewLabel(getUpperLeftX(centerX, cell), getUpperLeftY(centerY), cell.getRow()*2+1);
-            }
-        }
-        if(cell.getRow() == 0 && cell.getCol() > 0) {
-            //upper left label
-            addNewLabel(getUpperLeftX(centerX, cell), getUpperLeftY(centerY), 55 - cell.getCol()*2);
-        }
-        if((cell.getCol() == 0 && cell.getRow() >= 4) || cell.getRow() == Board.BOARD_SIZE-1) {
-            //lower left label
-            addNewLabel(getLowerLeftX(centerX), getLowerLeftY(centerY), (cell.getRow()+ cell.getCol())*2+3);
-        }
-        if(cell.getRow() == Board.BOARD_SIZE-1 || cell.getCol() == 12 - cell.getRow()) {
-            //lower right label
-            addNewLabel(getLowerRightX(centerX), getLowerRightY(centerY), cell.getCol()*2 + 20);
-        }
-        if(cell.getCol() == 12 - cell.getRow() || cell.getCol() == 4 + cell.getRow()) {
-            //right label
-            addNewLabel(getRightX(centerX), getRightY(centerY), 45 - cell.getRow()*2);
-        }
-        if(cell.getRow() == 0 || cell.getCol() == 4 + cell.getRow()) {
-            //upper right label
-            addNewLabel(getUpperRightX(centerX), getUpperRightY(centerY), 54 - cell.getCol()*2);
+    private void addNumberLabels() {
+        // add input number labels on the edge of the board
+        for(int number = 1; number <= board.getNumInputPoints(); number++) {
+            double[] position = getLabelPosition(number);
+            addNewLabel(position[0], position[1], number);
         }
+    }
+
+    /**
+     * Computes the layout coordinates of the label (or ray marker) of an input point, next to the side of the
+     * edge cell that the input point points into
+     * @param number the number of the input point
+     * @return the x and y coordinates of the label
+     */
+    private double[] getLabelPosition(int number) {
+        BoardTopology topology = board.getTopology();
+        Cell cell = board.getCell(topology.getInputCell(number));
+        double centerX = cell.getCoordinates().centerX(), centerY = cell.getCoordinates().centerY();
 
+        return switch (topology.getEntryPoint(number)) {
+            case 0 -> new double[] {getUpperLeftX(centerX, number), getUpperLeftY(centerY)};
+            case 1 -> new double[] {getUpperRightX(centerX), getUpperRightY(centerY)};
+            case 2 -> new double[] {getRightX(centerX), getRightY(centerY)};
+            case 3 -> new double[] {getLowerRightX(centerX), getLowerRightY(centerY)};
+            case 4 -> new double[] {getLowerLeftX(centerX), getLowerLeftY(centerY)};
+            default -> new double[] {getLeftX(centerX, number), getLeftY(centerY)};
+        };
     }
 
     private void addNewLabel(double x, double y, int number) {
@@ -379,14 +325,15 @@ public class BoardUI extends AnchorPane {
 
 
     // utility methods for computing layout coordinates of labels/ray markers and making the code more readable
-    private double getLeftX(double centerX, Cell cell) {
-        return cell.getRow() < 4 ? centerX - 1.25 * HEX_SIZE : centerX - 1.4 * HEX_SIZE;
+    // labels to the left of a cell are moved further to the left for every extra digit in their number
+    private double getLeftX(double centerX, int number) {
+        return centerX - (1.1 + 0.15 * String.valueOf(number).length()) * HEX_SIZE;
     }
     private double getLeftY(double centerY) {
         return centerY + HEX_SIZE / 8;
     }
-    private double getUpperLeftX(double centerX, Cell cell) {
-        return cell.getRow() == 0 && cell.getCol() > 0 ? centerX - 0.75 * HEX_SIZE : centerX - 0.65 * HEX_SIZE;
+    private double getUpperLeftX(double centerX, int number) {
+        return centerX - (0.55 + 0.1 * String.valueOf(number).length()) * HEX_SIZE;
     }
     private double getUpperLeftY(double centerY) {
         return centerY - 0.85 * HEX_SIZE;
@@ -419,12 +366,12 @@ public class BoardUI extends AnchorPane {
 
     @Override
     protected double computeMinWidth(double height) {
-        return HEX_WIDTH * 9 + 8 * horizontalGap;
+        return HEX_WIDTH * board.getBoardSize() + (board.getBoardSize() - 1) * horizontalGap;
     }
 
     @Override
     protected double computePrefWidth(double height) {
-        return HEX_WIDTH * 9 + 8 * horizontalGap;
+        return HEX_WIDTH * board.getBoardSize() + (board.getBoardSize() - 1) * horizontalGap;
     }
 
     public ArrayList<double[]> getAtomCoordinates() {
@@ -1,73 +1,91 @@
-import java.util.ArrayList;
-
 /**
  * Class that models a single cell in a BlackBox board and its associated information (its position
- * on the board, both absolute and relative to other cells, whether it contains an atom, the rays passing
- * through it)
+ * on the board, both absolute and relative to other cells, whether it contains an atom). The rays passing
+ * through it are stored by its board (see Board.getRayPaths)
  */
 public class Cell {
 
     private boolean atom; // does this cell contain an atom?
 
-    /**
-        An array that stores references to the cells which are neighbours of this cell (according to the
-        visual representation of the board):
-
-        - index 0 contains the upper-left neighbour
-        - index 1 contains the upper-right neighbour
-        ...and so on going clockwise
-        - index 5 contains the left neighbour
-
-        If the cell does not have a neighbour at a certain position (for example cells at the edge of the board),
-        null is stored at that index
-     */
-    private final Cell[] neighbours;
-
     private int row;
     private int col;
 
+    private Board board;    // the board this cell belongs to, notified when an atom is placed in or removed from this cell
+
     // UI coordinates of the center of this cell for easy access
     private Coordinates coordinates;    // only initialised once a BoardUI is constructed from a board with this cell
 
-    /**
-     *   An ArrayList that stores information about the rays passing through this cell - each ray passing through this cell
-     *   corresponds to a ray segment in this ArrayList - each ray segment gives the entry point of the ray to this cell
-     *   and the exit point from this cell - used for the final display of rays on the board
-     */
-    private final ArrayList<RaySegment> raySegments;
-
-
     public Cell() {
         this.atom = false;
-        this.neighbours = new Cell[6];
-        this.raySegments = new ArrayList<>();
-
     }
 
 
-    public void setNeighbour(int position, Cell newNeighbour) {
+    public boolean hasAtom() {
+        return atom;
+    }
 
-        if(position < 0 || position > 5) {
-            throw new IllegalArgumentException("Invalid neighbour position");
+    public void setAtom() {
+        if(!atom) {
+            atom = true;
+            if(board != null) {
+                board.atomChanged(this);
+            }
         }
+    }
 
-        if(neighbours[position] == null) {
-            neighbours[position] = newNeighbour;
+    public void removeAtom() {
+        if(atom) {
+            atom = false;
+            if(board != null) {
+                board.atomChanged(this);
+            }
         }
     }
 
-    public boolean hasAtom() {
-        return atom;
+    /**
+     * Clears the state of this cell (its atom and UI coordinates), keeping its position and neighbours.
+     * Unlike removeAtom, the board is not notified (see Board.reset)
+     */
+    void reset() {
+        atom = false;
+        coordinates = null;
     }
 
-    public void setAtom() {
-        atom = true;
-    }
+    /**
+        Returns the cells which are neighbours of this cell (according to the visual representation of the board),
+        looked up in the topology of its board:
+
+        - index 0 contains the upper-left neighbour
+        - index 1 contains the upper-right neighbour
+        ...and so on going clockwise
+        - index 5 contains the left neighbour
 
+        If the cell does not have a neighbour at a certain position (for example cells at the edge of the board),
+        null is stored at that index. A cell that does not belong to a board has no neighbours
+
+        A new array is returned by every call; getNeighbour looks up a single neighbour without allocating
+     */
     public Cell[] getNeighbours() {
+        Cell[] neighbours = new Cell[6];
+        for(int position = 0; position < 6; position++) {
+            neighbours[position] = getNeighbour(position);
+        }
         return neighbours;
     }
 
+    /**
+     * @param position the position of the neighbour, in the range 0-5 (see getNeighbours)
+     * @return the neighbour of this cell at the given position, or null if it has none there (or this cell does
+     * not belong to a board)
+     */
+    public Cell getNeighbour(int position) {
+        if(board == null) {
+            return null;
+        }
+        int neighbour = board.getTopology().getNeighbour(board.cellIndex(row, col), position);
+        return neighbour == -1 ? null : board.getCell(neighbour);
+    }
+
     public int getRow() {
         return row;
     }
@@ -84,6 +102,10 @@ public class Cell {
         this.col = col;
     }
 
+    void setBoard(Board board) {
+        this.board = board;
+    }
+
     public Coordinates getCoordinates() {
         return coordinates;
     }
@@ -91,12 +113,4 @@ public class Cell {
     public void setCoordinates(Coordinates coordinates) {
         this.coordinates = coordinates;
     }
-
-    public ArrayList<RaySegment> getRaySegments() {
-        return raySegments;
-    }
-
-    public void addRaySegment(int entryPoint, int exitPoint) {
-        raySegments.add(new RaySegment(entryPoint, exitPoint));
-    }
 }
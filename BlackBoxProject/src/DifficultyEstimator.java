@@ -0,0 +1,476 @@
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Class that estimates how hard a puzzle is by the number of rays needed to identify its layout, both in the worst
+ * case and on average, including the rays that are absorbed or reflected.
+ * <p>
+ * While many layouts agree with the rays sent, the rays are chosen by a RayAdvisor (with the puzzle giving the
+ * results), since no exact search can handle millions of layouts. Once at most MAX_EXACT_LAYOUTS layouts agree,
+ * they are searched exactly: a decision tree sends a ray, and continues with the layouts that agree with its
+ * result, until the layouts left all give the same results for every ray (usually a single layout). The search
+ * finds the smallest worst case depth of such a tree by iterative deepening, and the smallest average depth over
+ * the layouts by branch and bound (layouts that give the same results for every ray count as one). The two numbers
+ * of the estimate are the rays chosen by the advisor plus these depths.
+ * <p>
+ * A state of the search is the set of layouts that agree with the rays sent; rays that do not split it are never
+ * sent, so the rays themselves do not matter. Different orders of the same rays give the same set, so the results
+ * for each set are kept in tables shared by all searches and threads. The rays of the first level of each search
+ * are tried in parallel, and each search stops after a budget of nodes; if it runs out, the estimate uses the
+ * depths of the tree that always sends the most balanced ray instead, and is marked as not exact.
+ * <p>
+ * Rotating or reflecting a layout does not change how hard it is, so the estimates are cached per canonical
+ * layout (see BoardSymmetry), and symmetric puzzles get the same estimate. The cache and the tables are bounded,
+ * and cleared when they grow too large, so an estimator can rate any number of puzzles.
+ * <p>
+ * An exact estimate only depends on the layout. An estimate that is not exact depends on how far the search got
+ * within its budget, which depends on the bounds already in the shared tables, so on the puzzles rated before and
+ * on the other threads: it is not reproducible, and is not cached.
+ */
+public class DifficultyEstimator {
+
+    // number of layouts that agree with the rays sent, at most, for the exact search to start
+    static final int MAX_EXACT_LAYOUTS = 128;
+
+    // number of nodes after which a search stops by default
+    static final long DEFAULT_NODE_BUDGET = 1_000_000;
+
+    // number of sets kept in each table, at most; the tables are cleared when they grow larger
+    static final int MAX_TABLE_SIZE = 1 << 18;
+
+    // number of estimates kept in the cache, at most; the cache is cleared when it grows larger
+    static final int MAX_CACHE_SIZE = 1 << 16;
+
+    /**
+     * An estimate of the number of rays needed to identify the layout of a puzzle
+     *
+     * @param advisedRays the number of rays chosen by the advisor before the exact search
+     * @param worstCase the number of rays needed in the worst case, including the advised rays
+     * @param expected the average number of rays needed over the layouts that agreed with the advised rays,
+     *                 including the advised rays
+     * @param exact true if the search finished within the budget, so that the rays after the advised ones are
+     *              the fewest possible
+     */
+    public record Difficulty(int advisedRays, int worstCase, double expected, boolean exact) {
+    }
+
+    private final int numAtoms;
+    private final RayAdvisor advisor;
+    private final BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+    private long nodeBudget = DEFAULT_NODE_BUDGET;
+
+    // bounds on the smallest worst case depth and the smallest total depth over the layouts of each set, both as
+    // lowerBound << 32 | upperBound (see mergeBounds)
+    private final ConcurrentHashMap<LayoutSet, Long> worstCases = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LayoutSet, Long> totals = new ConcurrentHashMap<>();
+    private static final long UNKNOWN_BOUNDS = Integer.MAX_VALUE;
+    // the estimates of canonical layouts
+    private final ConcurrentHashMap<Long, Difficulty> estimates = new ConcurrentHashMap<>();
+
+    // a set of layouts in ascending order, as a key of the tables
+    private static final class LayoutSet {
+        private final long[] layouts;
+        private final int hash;
+
+        LayoutSet(long[] layouts) {
+            this.layouts = layouts;
+            hash = Arrays.hashCode(layouts);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof LayoutSet set && hash == set.hash && Arrays.equals(layouts, set.layouts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // combines the bounds found by two searches of the same set
+    private static long mergeBounds(long bounds, long other) {
+        long lower = Math.max(bounds >>> 32, other >>> 32);
+        long upper = Math.min((int) bounds, (int) other);
+        return lower << 32 | upper;
+    }
+
+    /**
+     * Constructs an estimator for puzzles with the given number of atoms
+     * @param numAtoms the number of atoms, in the range 0-61
+     */
+    public DifficultyEstimator(int numAtoms) {
+        if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid number of atoms for DifficultyEstimator");
+        }
+        this.numAtoms = numAtoms;
+        advisor = new RayAdvisor(numAtoms);
+    }
+
+    /**
+     * Sets the number of nodes after which a search stops, giving an estimate that is not exact
+     * @param nodeBudget the number of nodes, at least 1
+     */
+    public void setNodeBudget(long nodeBudget) {
+        if(nodeBudget < 1) {
+            throw new IllegalArgumentException("Invalid node budget for DifficultyEstimator");
+        }
+        this.nodeBudget = nodeBudget;
+    }
+
+    /**
+     * Estimates how many rays are needed to identify a layout
+     * @param atoms the atom mask of a bit board with the number of atoms of the estimator
+     * @return the estimate, the same for every rotation and reflection of the layout if it is exact
+     */
+    public Difficulty estimate(long atoms) {
+        if(Long.bitCount(atoms) != numAtoms) {
+            throw new IllegalArgumentException("Invalid number of atoms for DifficultyEstimator.estimate");
+        }
+
+        long canonical = symmetry.canonicalize(atoms).atoms();
+        if(estimates.size() > MAX_CACHE_SIZE) {
+            estimates.clear();
+        }
+        Difficulty difficulty = estimates.get(canonical);
+        if(difficulty == null) {
+            difficulty = compute(canonical);
+            if(difficulty.exact()) {
+                estimates.putIfAbsent(canonical, difficulty);
+            }
+        }
+        return difficulty;
+    }
+
+    /**
+     * Estimates how many rays are needed to identify the atoms of a board
+     * @param board a board of the standard size
+     */
+    public Difficulty estimate(Board board) {
+        return estimate(BitBoard.fromBoard(board).atoms());
+    }
+
+    private Difficulty compute(long atoms) {
+        ArrayList<RayMarker> markers = new ArrayList<>();
+        AtomDeducer deducer = new AtomDeducer(numAtoms);
+        LayoutEnumerator enumerator = new LayoutEnumerator(numAtoms);
+        while(true) {
+            enumerator.setKnownCells(deducer);
+            long[] layouts = collect(enumerator.iterator());
+            List<RayAdvisor.Advice> advice = layouts == null ? advisor.advise(markers) : List.of();
+            if(layouts == null && advice.isEmpty()) {
+                // every input point has been tested, so the layouts left all give the same results as the puzzle
+                // for every ray, and count as one
+                layouts = new long[]{atoms};
+            }
+            if(layouts != null) {
+                Difficulty search = search(layouts);
+                return new Difficulty(markers.size(), markers.size() + search.worstCase(),
+                        markers.size() + search.expected(), search.exact());
+            }
+
+            int inputPoint = advice.get(0).inputPoint();
+            int outputPoint = RayTable.process(atoms, inputPoint);
+            markers.add(new RayMarker(inputPoint, outputPoint, Color.GRAY));
+            deducer.addObservation(inputPoint, outputPoint);
+            enumerator.addObservation(inputPoint, outputPoint);
+        }
+    }
+
+    // the layouts of the iterator in ascending order, or null if there are more than MAX_EXACT_LAYOUTS
+    private static long[] collect(Iterator<Long> iterator) {
+        long[] layouts = new long[MAX_EXACT_LAYOUTS];
+        int count = 0;
+        while(iterator.hasNext()) {
+            if(count == MAX_EXACT_LAYOUTS) {
+                return null;
+            }
+            layouts[count++] = iterator.next();
+        }
+        layouts = Arrays.copyOf(layouts, count);
+        Arrays.sort(layouts);
+        return layouts;
+    }
+
+    /**
+     * Finds the smallest worst case and average depths of the decision trees that tell the given layouts apart
+     * @param layouts the atom masks of the layouts, in ascending order
+     * @return the depths, with no advised rays
+     */
+    Difficulty search(long[] layouts) {
+        if(worstCases.size() > MAX_TABLE_SIZE) {
+            worstCases.clear();
+        }
+        if(totals.size() > MAX_TABLE_SIZE) {
+            totals.clear();
+        }
+        return new Search(layouts).run();
+    }
+
+    // a search over the subsets of a set of layouts, which are given as indices into the set in ascending order;
+    // every subset of more than one layout is split by some ray
+    private class Search {
+
+        private final long[] layouts;
+        // outputPoints[inputPoint][i] stores the output point of the ray entering layout i at the input point
+        private final int[][] outputPoints = new int[BitBoard.NUM_PORTS + 1][];
+        private final AtomicLong nodes = new AtomicLong();
+        private volatile boolean outOfBudget;
+
+        // layouts that give the same results for every ray cannot be told apart, so only the first is kept
+        Search(long[] allLayouts) {
+            ArrayList<Long> distinct = new ArrayList<>();
+            ArrayList<int[]> signatures = new ArrayList<>();
+            HashSet<List<Integer>> seen = new HashSet<>();
+            for(long atoms : allLayouts) {
+                int[] signature = RayTable.processAll(atoms);
+                if(seen.add(Arrays.stream(signature).boxed().toList())) {
+                    distinct.add(atoms);
+                    signatures.add(signature);
+                }
+            }
+
+            layouts = distinct.stream().mapToLong(Long::longValue).toArray();
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                outputPoints[inputPoint] = new int[layouts.length];
+                for(int i = 0; i < layouts.length; i++) {
+                    outputPoints[inputPoint][i] = signatures.get(i)[inputPoint - 1];
+                }
+            }
+        }
+
+        Difficulty run() {
+            int[] all = new int[layouts.length];
+            Arrays.setAll(all, i -> i);
+
+            // the tree that always sends the most balanced ray gives upper bounds, used if the budget runs out
+            int[] balanced = balancedTree(all);
+
+            int worstCase = balanced[0];
+            for(int depth = 0; depth < balanced[0] && !outOfBudget; depth++) {
+                if(solvable(all, depth, true)) {
+                    worstCase = depth;
+                    break;
+                }
+            }
+            int total = outOfBudget ? balanced[1] : Math.min(balanced[1], rootTotal(all, balanced[1] + 1));
+            return new Difficulty(0, worstCase, (double) total / layouts.length, !outOfBudget);
+        }
+
+        private LayoutSet key(int[] set) {
+            long[] key = new long[set.length];
+            for(int i = 0; i < set.length; i++) {
+                key[i] = layouts[set[i]];
+            }
+            return new LayoutSet(key);
+        }
+
+        // counts a node, returning false once the budget has run out
+        private boolean visit() {
+            if(nodes.incrementAndGet() > nodeBudget) {
+                outOfBudget = true;
+            }
+            return !outOfBudget;
+        }
+
+        /**
+         * Finds the rays that split a set, as the parts they split it into, with the most balanced rays (the
+         * smallest largest part) first and the largest part of each ray first. Rays that split the set in the
+         * same way are only kept once.
+         */
+        private ArrayList<int[][]> splits(int[] set) {
+            ArrayList<int[][]> splits = new ArrayList<>();
+            HashMap<Integer, int[]> labellings = new HashMap<>();
+            int[] partOf = new int[BitBoard.NUM_PORTS + 2];
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                int[] outputs = outputPoints[inputPoint];
+
+                // number the parts in order of their first layout, so that equal splits get equal labellings
+                Arrays.fill(partOf, -1);
+                int[] labelling = new int[set.length];
+                int numParts = 0;
+                for(int i = 0; i < set.length; i++) {
+                    int output = outputs[set[i]] + 1;
+                    if(partOf[output] == -1) {
+                        partOf[output] = numParts++;
+                    }
+                    labelling[i] = partOf[output];
+                }
+                if(numParts == 1) {
+                    continue;
+                }
+                int[] other = labellings.putIfAbsent(Arrays.hashCode(labelling), labelling);
+                if(other != null && Arrays.equals(other, labelling)) {
+                    continue;
+                }
+
+                int[] sizes = new int[numParts];
+                for(int label : labelling) {
+                    sizes[label]++;
+                }
+                int[][] parts = new int[numParts][];
+                for(int part = 0; part < numParts; part++) {
+                    parts[part] = new int[sizes[part]];
+                    sizes[part] = 0;
+                }
+                for(int i = 0; i < set.length; i++) {
+                    parts[labelling[i]][sizes[labelling[i]]++] = set[i];
+                }
+                Arrays.sort(parts, Comparator.comparingInt((int[] part) -> part.length).reversed());
+                splits.add(parts);
+            }
+            splits.sort(Comparator.comparingInt((int[][] parts) -> parts[0].length));
+            return splits;
+        }
+
+        // the worst case and total depths of the tree that always sends the most balanced ray
+        private int[] balancedTree(int[] set) {
+            if(set.length <= 1) {
+                return new int[]{0, 0};
+            }
+            int worstCase = 0;
+            int total = set.length;
+            for(int[] part : splits(set).get(0)) {
+                int[] depths = balancedTree(part);
+                worstCase = Math.max(worstCase, depths[0]);
+                total += depths[1];
+            }
+            return new int[]{worstCase + 1, total};
+        }
+
+        /**
+         * Checks whether the layouts of a set can be told apart with at most the given number of rays. Proofs
+         * that they cannot are only recorded while the budget lasts, since a search stopped by the budget
+         * returns false without a proof.
+         */
+        private boolean solvable(int[] set, int depth, boolean parallel) {
+            if(set.length <= 1) {
+                return true;
+            }
+            LayoutSet key = key(set);
+            long bounds = worstCases.getOrDefault(key, UNKNOWN_BOUNDS);
+            int lower = (int) (bounds >>> 32);
+            int upper = (int) bounds;
+            if(depth >= upper) {
+                return true;
+            }
+            if(depth < lower || !visit()) {
+                return false;
+            }
+
+            boolean found = false;
+            if(depth > 0) {
+                ArrayList<int[][]> splits = splits(set);
+                Predicate<int[][]> tellsApart = parts -> Arrays.stream(parts)
+                        .allMatch(part -> solvable(part, depth - 1, false));
+                found = parallel ? splits.parallelStream().anyMatch(tellsApart) : splits.stream().anyMatch(tellsApart);
+            }
+
+            if(found || !outOfBudget) {
+                long newBounds = found ? (long) lower << 32 | depth : (long) (depth + 1) << 32 | upper;
+                worstCases.merge(key, newBounds, DifficultyEstimator::mergeBounds);
+            }
+            return found;
+        }
+
+        /**
+         * Finds the smallest total depth over the layouts of a set, if it is below the given bound
+         * @return the smallest total depth, or a value of at least bound if it is not below the bound
+         */
+        private int total(int[] set, int bound) {
+            if(set.length <= 1) {
+                return 0;
+            }
+            LayoutSet key = key(set);
+            long bounds = totals.getOrDefault(key, UNKNOWN_BOUNDS);
+            int lower = (int) (bounds >>> 32);
+            if(lower == (int) bounds || lower >= bound) {
+                return lower;   // exact, or known not to be below the bound
+            }
+            if(!visit()) {
+                return bound;
+            }
+
+            int best = bound;
+            for(int[][] parts : splits(set)) {
+                best = Math.min(best, splitTotal(parts, set.length, best));
+            }
+            if(!outOfBudget) {
+                // below the bound, every other ray was ruled out by the best one, so the total is exact
+                totals.merge(key, best < bound ? (long) best << 32 | best : (long) bound << 32 | Integer.MAX_VALUE,
+                        DifficultyEstimator::mergeBounds);
+            }
+            return best;
+        }
+
+        // the total depth of a set when sending the ray splitting it into the given parts first, or a value of
+        // at least bound if it is not below the bound
+        private int splitTotal(int[][] parts, int size, int bound) {
+            // every layout in a part of more than one layout needs at least one more ray to be told apart, and the
+            // table may know better lower bounds
+            int[] lowerBounds = new int[parts.length];
+            int total = size;
+            for(int i = 0; i < parts.length; i++) {
+                if(parts[i].length > 1) {
+                    lowerBounds[i] = Math.max(parts[i].length,
+                            (int) (totals.getOrDefault(key(parts[i]), UNKNOWN_BOUNDS) >>> 32));
+                    total += lowerBounds[i];
+                }
+            }
+            for(int i = 0; i < parts.length && total < bound; i++) {
+                if(parts[i].length > 1) {
+                    total += total(parts[i], bound - total + lowerBounds[i]) - lowerBounds[i];
+                }
+            }
+            return Math.min(total, bound);
+        }
+
+        // total for the whole set, trying the rays in parallel with a shared bound
+        private int rootTotal(int[] set, int bound) {
+            if(set.length <= 1) {
+                return 0;
+            }
+            AtomicInteger best = new AtomicInteger(bound);
+            splits(set).parallelStream().forEach(parts ->
+                    best.accumulateAndGet(splitTotal(parts, set.length, best.get()), Math::min));
+            return best.get();
+        }
+    }
+
+    /**
+     * Estimates the difficulty of the puzzles of a corpus from the command line
+     * Usage: DifficultyEstimator corpusFile [numPuzzles]
+     */
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.out.println("Usage: DifficultyEstimator corpusFile [numPuzzles]");
+            return;
+        }
+
+        try (PuzzleCorpus corpus = new PuzzleCorpus()) {
+            if(corpus.open(args[0]) != 0) {
+                System.out.println("Could not read the corpus " + args[0]);
+                return;
+            }
+            DifficultyEstimator estimator = new DifficultyEstimator(corpus.getNumAtoms());
+            long numPuzzles = args.length > 1 ? Math.min(Long.parseLong(args[1]), corpus.size()) : corpus.size();
+            for(long number = 0; number < numPuzzles; number++) {
+                Difficulty difficulty = estimator.estimate(corpus.getAtoms(number));
+                System.out.printf("%d: worst case %d, expected %.2f rays (%d advised%s)%n", corpus.getId(number),
+                        difficulty.worstCase(), difficulty.expected(), difficulty.advisedRays(),
+                        difficulty.exact() ? "" : ", budget exceeded");
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DifficultyEstimatorTest {
+
+    private static final long LAYOUT = 1L << 5 | 1L << 30 | 1L << 44;
+
+    // some of the layouts that agree with a few rays of a 3-atom layout
+    private static long[] agreeingLayouts(int max, int... inputPoints) {
+        LayoutEnumerator enumerator = new LayoutEnumerator(3);
+        for(int inputPoint : inputPoints) {
+            enumerator.addObservation(inputPoint, RayTable.process(LAYOUT, inputPoint));
+        }
+        ArrayList<Long> layouts = new ArrayList<>();
+        Iterator<Long> iterator = enumerator.iterator();
+        while(iterator.hasNext() && layouts.size() < max) {
+            layouts.add(iterator.next());
+        }
+        return layouts.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    // the smallest worst case and total depths of the trees telling the layouts apart, trying every ray on every
+    // set; layouts with the same signature are kept once, as they cannot be told apart
+    private static int[] bruteForce(List<Long> layouts, HashMap<List<Long>, int[]> memo) {
+        if(layouts.size() <= 1) {
+            return new int[]{0, 0};
+        }
+        int[] known = memo.get(layouts);
+        if(known != null) {
+            return known;
+        }
+        int[] best = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            TreeMap<Integer, List<Long>> parts = new TreeMap<>();
+            for(long atoms : layouts) {
+                parts.computeIfAbsent(RayTable.process(atoms, inputPoint), o -> new ArrayList<>()).add(atoms);
+            }
+            if(parts.size() == 1) {
+                continue;
+            }
+            int worstCase = 0;
+            int total = layouts.size();
+            for(List<Long> part : parts.values()) {
+                int[] depths = bruteForce(part, memo);
+                worstCase = Math.max(worstCase, depths[0] + 1);
+                total += depths[1];
+            }
+            best[0] = Math.min(best[0], worstCase);
+            best[1] = Math.min(best[1], total);
+        }
+        memo.put(layouts, best);
+        return best;
+    }
+
+    @Test
+    void testAgainstBruteForce() {
+        for(int[] inputPoints : new int[][]{{3, 17}, {3, 17, 29}, {40, 51, 8}}) {
+            long[] layouts = agreeingLayouts(14, inputPoints);
+            assertTrue(layouts.length > 3);
+
+            // keep one layout of each signature
+            HashSet<List<Integer>> signatures = new HashSet<>();
+            ArrayList<Long> distinct = new ArrayList<>();
+            for(long atoms : layouts) {
+                if(signatures.add(Arrays.stream(RayTable.processAll(atoms)).boxed().toList())) {
+                    distinct.add(atoms);
+                }
+            }
+            int[] expected = bruteForce(distinct, new HashMap<>());
+
+            DifficultyEstimator.Difficulty difficulty = new DifficultyEstimator(3).search(layouts);
+            assertTrue(difficulty.exact());
+            assertEquals(0, difficulty.advisedRays());
+            assertEquals(expected[0], difficulty.worstCase());
+            assertEquals((double) expected[1] / distinct.size(), difficulty.expected(), 1e-9);
+        }
+    }
+
+    @Test
+    void testLayoutsNotToldApart() {
+        DifficultyEstimator estimator = new DifficultyEstimator(4);
+        assertEquals(new DifficultyEstimator.Difficulty(0, 0, 0, true), estimator.search(new long[]{LAYOUT}));
+
+        // two layouts with the same signature count as one
+        long first = 1L << 1 | 1L << 2 | 1L << 4 | 1L << 8;
+        long second = 1L << 1 | 1L << 3 | 1L << 4 | 1L << 8;
+        assertEquals(new DifficultyEstimator.Difficulty(0, 0, 0, true), estimator.search(new long[]{first, second}));
+        assertEquals(new DifficultyEstimator.Difficulty(0, 1, 1, true),
+                estimator.search(new long[]{first, second, first | 1L << 50}));
+    }
+
+    @Test
+    void testBudget() {
+        long[] layouts = agreeingLayouts(DifficultyEstimator.MAX_EXACT_LAYOUTS, 3);
+        DifficultyEstimator.Difficulty exact = new DifficultyEstimator(3).search(layouts);
+        assertTrue(exact.exact());
+
+        // running out of budget gives the depths of a tree that is not the best one
+        DifficultyEstimator estimator = new DifficultyEstimator(3);
+        estimator.setNodeBudget(1);
+        DifficultyEstimator.Difficulty estimate = estimator.search(layouts);
+        assertFalse(estimate.exact());
+        assertTrue(estimate.worstCase() >= exact.worstCase());
+        assertTrue(estimate.expected() >= exact.expected());
+    }
+
+    @Test
+    void testInexactNotCached() {
+        DifficultyEstimator estimator = new DifficultyEstimator(6);
+        estimator.setNodeBudget(1);
+        long atoms = new LayoutGenerator(30).generate(1, 6)[0];
+        DifficultyEstimator.Difficulty estimate = estimator.estimate(atoms);
+        assertFalse(estimate.exact());
+        assertNotSame(estimate, estimator.estimate(atoms));
+
+        // with enough budget, the exact estimate is cached
+        estimator.setNodeBudget(DifficultyEstimator.DEFAULT_NODE_BUDGET);
+        DifficultyEstimator.Difficulty difficulty = estimator.estimate(atoms);
+        assertTrue(difficulty.exact());
+        assertSame(difficulty, estimator.estimate(atoms));
+    }
+
+    @Test
+    void testEstimate() {
+        DifficultyEstimator estimator = new DifficultyEstimator(6);
+        BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+        for(long atoms : new LayoutGenerator(30).generate(2, 6)) {
+            DifficultyEstimator.Difficulty difficulty = estimator.estimate(atoms);
+            assertTrue(difficulty.exact());
+            assertTrue(difficulty.advisedRays() <= difficulty.expected());
+            assertTrue(difficulty.expected() <= difficulty.worstCase());
+            assertTrue(difficulty.worstCase() <= BitBoard.NUM_PORTS);
+
+            // symmetric layouts share the cached estimate
+            for(int transform = 1; transform < BoardSymmetry.NUM_TRANSFORMS; transform += 5) {
+                assertSame(difficulty, estimator.estimate(symmetry.transformAtoms(transform, atoms)));
+            }
+            assertSame(difficulty, estimator.estimate(new BitBoard(atoms).toBoard()));
+        }
+    }
+
+    // on a dense board every input point gets tested before few layouts are left, and the layouts left cannot
+    // be told apart
+    @Test
+    void testDenseLayout() {
+        long atoms = LayoutGenerator.generate(55, new SplittableRandom(7));
+        DifficultyEstimator.Difficulty difficulty = new DifficultyEstimator(55).estimate(atoms);
+        assertTrue(difficulty.exact());
+        assertEquals(difficulty.advisedRays(), difficulty.worstCase());
+        assertEquals(difficulty.advisedRays(), difficulty.expected());
+        assertTrue(difficulty.advisedRays() <= BitBoard.NUM_PORTS);
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new DifficultyEstimator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new DifficultyEstimator(BitBoard.NUM_CELLS + 1));
+        assertThrows(IllegalArgumentException.class, () -> new DifficultyEstimator(3).setNodeBudget(0));
+        assertThrows(IllegalArgumentException.class, () -> new DifficultyEstimator(3).estimate(LAYOUT | 1L << 7));
+    }
+}
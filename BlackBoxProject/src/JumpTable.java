@@ -0,0 +1,118 @@
+/**
+ * Class that models a jump table for the rays on a board: for each cell and each of the 6 directions, it stores
+ * how far a ray moving in that direction can travel in a straight line before it enters the circle of influence
+ * of an atom. Ray processing uses it to skip over empty stretches of large boards in one step, instead of
+ * checking the neighbours of every cell on the way. The table is kept up to date incrementally as atoms are
+ * placed on the board (see Board.getJumpTable).
+ */
+public class JumpTable {
+
+    private final Board board;
+
+    private final BoardTopology topology;     // neighbours of the cells
+
+    /*
+    runEnds[index*6 + direction] stores the index of the last cell of the straight run of a ray entering the cell
+    with the given index while moving in the given direction (so through entry point (direction + 3) % 6).
+    The ray moves straight through all cells of the run, and then either exits the board or enters the next cell
+    in the same direction, where it will be deflected, reflected or absorbed.
+    If the ray does not move straight through the cell itself, -1 is stored.
+     */
+    private final int[] runEnds;
+
+    /**
+     * Constructs the jump table of the given board, based on the atoms currently placed on it
+     * @param board the board to compute the jump table of
+     */
+    public JumpTable(Board board) {
+        if(board == null) {
+            throw new IllegalArgumentException("Invalid argument to JumpTable constructor");
+        }
+
+        this.board = board;
+        this.topology = board.getTopology();
+        int numCells = board.getNumCells();
+        runEnds = new int[numCells * 6];
+
+        // fill in each line of cells starting from its end, so that every run end is computed from the next one
+        for(int direction = 0; direction < 6; direction++) {
+            for(int index = 0; index < numCells; index++) {
+                if(topology.getNeighbour(index, direction) == -1) {
+                    for(int cell = index; cell != -1; cell = topology.getNeighbour(cell, (direction + 3) % 6)) {
+                        runEnds[cell * 6 + direction] = computeRunEnd(cell, direction);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the last cell of the straight run of a ray entering a cell while moving in a certain direction
+     *
+     * @param cellIndex the index of the cell the ray enters
+     * @param direction the direction the ray moves in, in the range 0 (upper-left) to 5 (left)
+     * @return the index of the last cell the ray moves straight through, or -1 if the ray does not move
+     * straight through the given cell
+     */
+    public int getRunEnd(int cellIndex, int direction) {
+        return runEnds[cellIndex * 6 + direction];
+    }
+
+    /**
+     * Updates the jump table after an atom has been placed in (or removed from) the cell with the given index.
+     * Only the runs passing through the circle of influence of that cell are recomputed.
+     */
+    void update(int cellIndex) {
+        updateCell(cellIndex);
+        for(int position = 0; position < 6; position++) {
+            int neighbour = topology.getNeighbour(cellIndex, position);
+            if(neighbour != -1) {
+                updateCell(neighbour);
+            }
+        }
+    }
+
+    // recomputes the runs through a cell in every direction, together with the runs of the cells before it
+    private void updateCell(int cellIndex) {
+        for(int direction = 0; direction < 6; direction++) {
+            int cell = cellIndex;
+            // walk backwards along the direction for as long as the run ends keep changing
+            while(cell != -1) {
+                int runEnd = computeRunEnd(cell, direction);
+                if(runEnd == runEnds[cell * 6 + direction] && cell != cellIndex) {
+                    break;
+                }
+                runEnds[cell * 6 + direction] = runEnd;
+                cell = topology.getNeighbour(cell, (direction + 3) % 6);
+            }
+        }
+    }
+
+    // computes the run end of a cell from the run end of the next cell in the same direction
+    private int computeRunEnd(int cellIndex, int direction) {
+        if(!isStraight(cellIndex, direction)) {
+            return -1;
+        }
+
+        int next = topology.getNeighbour(cellIndex, direction);
+        if(next != -1 && isStraight(next, direction)) {
+            return runEnds[next * 6 + direction];
+        }
+        return cellIndex;
+    }
+
+    /*
+    A ray entering a cell while moving in a certain direction keeps moving straight if there is no atom in the cell
+    and no atoms in the 2 neighbours on either side of the direction (see RayTable.computeExitPoint; an atom
+    straight ahead only absorbs the ray once it enters the next cell)
+     */
+    private boolean isStraight(int cellIndex, int direction) {
+        return !hasAtom(cellIndex)
+                && !hasAtom(topology.getNeighbour(cellIndex, (direction + 5) % 6))
+                && !hasAtom(topology.getNeighbour(cellIndex, (direction + 1) % 6));
+    }
+
+    private boolean hasAtom(int cellIndex) {
+        return cellIndex != -1 && board.getCell(cellIndex).hasAtom();
+    }
+}
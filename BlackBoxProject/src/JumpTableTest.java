@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JumpTableTest {
+    Board board;
+
+    // test fixture
+    @BeforeEach
+    void constructBoard() {
+        board = new Board(31);
+        board.getCells()[15][15].setAtom();
+    }
+
+    @Test
+    void testRunEnds() {
+        JumpTable jumpTable = board.getJumpTable();
+
+        // a ray moving right along the middle row goes straight until it is absorbed by the atom
+        assertEquals(board.cellIndex(15, 14), jumpTable.getRunEnd(board.cellIndex(15, 0), 2));
+        // a ray moving left from the right edge of the row below the atom is deflected right away at (16, 15)
+        assertEquals(board.cellIndex(16, 16), jumpTable.getRunEnd(board.cellIndex(16, 29), 5));
+        assertEquals(-1, jumpTable.getRunEnd(board.cellIndex(16, 15), 5));
+        // a ray moving right along the upper row reaches the edge of the board
+        assertEquals(board.cellIndex(0, 15), jumpTable.getRunEnd(board.cellIndex(0, 0), 2));
+    }
+
+    @Test
+    void testIncrementalUpdate() {
+        JumpTable jumpTable = board.getJumpTable();
+        board.generateAtoms(150);
+
+        JumpTable rebuilt = new JumpTable(board);
+        for(int index = 0; index < board.getNumCells(); index++) {
+            for(int direction = 0; direction < 6; direction++) {
+                assertEquals(rebuilt.getRunEnd(index, direction), jumpTable.getRunEnd(index, direction));
+            }
+        }
+    }
+
+    @Test
+    void testSameOutputs() {
+        board.generateAtoms(100);
+        board.getJumpTable();
+        board.generateAtoms(20);     // placed after the jump table was created
+
+        // rays traced with a path buffer don't use the jump table
+        int[] path = new int[board.getNumCells() * 6 + 1];
+        for(int inputPoint = 1; inputPoint <= board.getNumInputPoints(); inputPoint++) {
+            assertEquals(Ray.trace(board, inputPoint, path), Ray.trace(board, inputPoint, null));
+        }
+    }
+}
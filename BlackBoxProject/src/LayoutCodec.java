@@ -0,0 +1,121 @@
+/**
+ * Class that numbers the layouts of atoms on the standard board with the combinatorial number system: the layouts
+ * with k atoms are numbered densely from 0 to C(61,k)-1, so a 6-atom layout fits in 26 bits. With the atoms in
+ * cells c1 < c2 < ... < ck, the rank of a layout is
+ * <p>
+ * C(c1,1) + C(c2,2) + ... + C(ck,k)
+ * <p>
+ * which orders the layouts in colexicographic order: by the highest cell with an atom, then the next highest, and
+ * so on. Ranking takes one table lookup per atom and unranking one binary search over the cells per atom, using a
+ * precomputed table of binomial coefficients instead of the cells of a Board.
+ */
+public class LayoutCodec {
+
+    // BINOMIAL[n][k] stores C(n,k) for 0 <= n,k <= 61; the largest, C(61,30), still fits in a long
+    private static final long[][] BINOMIAL = new long[BitBoard.NUM_CELLS + 1][BitBoard.NUM_CELLS + 1];
+
+    private static final long ALL_CELLS = (1L << BitBoard.NUM_CELLS) - 1;
+
+    static {
+        for(int n = 0; n <= BitBoard.NUM_CELLS; n++) {
+            BINOMIAL[n][0] = 1;
+            for(int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    /**
+     * @param numAtoms the number of atoms, in the range 0-61
+     * @return the number of layouts with that number of atoms, C(61,numAtoms)
+     */
+    public static long count(int numAtoms) {
+        checkNumAtoms(numAtoms);
+        return BINOMIAL[BitBoard.NUM_CELLS][numAtoms];
+    }
+
+    /**
+     * @return C(n,k), for 0 <= n,k <= 61 (0 if k > n)
+     */
+    static long binomial(int n, int k) {
+        return BINOMIAL[n][k];
+    }
+
+    /**
+     * Ranks a layout among the layouts with the same number of atoms
+     *
+     * @param atoms the atom mask of a bit board (see BitBoard)
+     * @return the rank of the layout, in the range 0 to count(Long.bitCount(atoms))-1
+     */
+    public static long rank(long atoms) {
+        if((atoms & ~ALL_CELLS) != 0) {
+            throw new IllegalArgumentException("Invalid atom mask for LayoutCodec.rank");
+        }
+
+        long rank = 0;
+        for(int k = 1; atoms != 0; k++) {
+            rank += BINOMIAL[Long.numberOfTrailingZeros(atoms)][k];
+            atoms &= atoms - 1;     // remove the lowest atom
+        }
+        return rank;
+    }
+
+    /**
+     * Ranks the layout of the atoms on a standard board
+     * @param board a board of the standard size
+     * @return the rank of the layout among the layouts with the same number of atoms
+     */
+    public static long rank(Board board) {
+        return rank(BitBoard.fromBoard(board).atoms());
+    }
+
+    /**
+     * Finds the layout with the given rank
+     *
+     * @param rank the rank of the layout, in the range 0 to count(numAtoms)-1
+     * @param numAtoms the number of atoms of the layout
+     * @return the atom mask of the layout
+     */
+    public static long unrank(long rank, int numAtoms) {
+        checkNumAtoms(numAtoms);
+        if(rank < 0 || rank >= BINOMIAL[BitBoard.NUM_CELLS][numAtoms]) {
+            throw new IllegalArgumentException("Invalid rank for LayoutCodec.unrank");
+        }
+
+        // the cell of the k-th atom is the highest cell c with C(c,k) <= rank, found by a binary search among the
+        // cells below the atom found before
+        long atoms = 0;
+        int high = BitBoard.NUM_CELLS;
+        for(int k = numAtoms; k >= 1; k--) {
+            int low = k - 1;    // C(k-1,k) = 0 <= rank
+            while(high - low > 1) {
+                int middle = (low + high) >>> 1;
+                if(BINOMIAL[middle][k] <= rank) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            atoms |= 1L << low;
+            rank -= BINOMIAL[low][k];
+            high = low;
+        }
+        return atoms;
+    }
+
+    /**
+     * Creates a new standard board containing the layout with the given rank
+     *
+     * @param rank the rank of the layout, in the range 0 to count(numAtoms)-1
+     * @param numAtoms the number of atoms of the layout
+     */
+    public static Board toBoard(long rank, int numAtoms) {
+        return new BitBoard(unrank(rank, numAtoms)).toBoard();
+    }
+
+    private static void checkNumAtoms(int numAtoms) {
+        if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid number of atoms for LayoutCodec");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutCodecTest {
+
+    @Test
+    void testCount() {
+        assertEquals(1, LayoutCodec.count(0));
+        assertEquals(61, LayoutCodec.count(1));
+        assertEquals(55525372, LayoutCodec.count(6));
+        assertEquals(1, LayoutCodec.count(61));
+        assertEquals(LayoutCodec.count(25), LayoutCodec.count(36));
+    }
+
+    @Test
+    void testRoundTrip() {
+        for(int numAtoms : new int[]{0, 1, 6, 30, 61}) {
+            for(long atoms : new LayoutGenerator(numAtoms).generate(2000, numAtoms)) {
+                long rank = LayoutCodec.rank(atoms);
+                assertTrue(rank >= 0 && rank < LayoutCodec.count(numAtoms));
+                assertEquals(atoms, LayoutCodec.unrank(rank, numAtoms));
+            }
+        }
+    }
+
+    @Test
+    void testDenseRanks() {
+        // every rank belongs to exactly one layout, in colexicographic order
+        HashSet<Long> layouts = new HashSet<>();
+        long previous = 0;
+        for(long rank = 0; rank < LayoutCodec.count(3); rank++) {
+            long atoms = LayoutCodec.unrank(rank, 3);
+            assertEquals(3, Long.bitCount(atoms));
+            assertEquals(rank, LayoutCodec.rank(atoms));
+            assertTrue(layouts.add(atoms));
+            if(rank > 0) {
+                assertTrue(Long.highestOneBit(atoms) >= Long.highestOneBit(previous));
+            }
+            previous = atoms;
+        }
+
+        assertEquals(0b111, LayoutCodec.unrank(0, 3));
+        assertEquals(0b1011, LayoutCodec.unrank(1, 3));
+        assertEquals(0b111L << 58, LayoutCodec.unrank(LayoutCodec.count(3) - 1, 3));
+    }
+
+    @Test
+    void testBoards() {
+        Board board = new Board();
+        Cell[][] cells = board.getCells();
+        cells[0][0].setAtom();
+        cells[4][8].setAtom();
+        cells[8][4].setAtom();
+
+        long rank = LayoutCodec.rank(board);
+        assertEquals(LayoutCodec.rank(BitBoard.fromBoard(board).atoms()), rank);
+        Board decoded = LayoutCodec.toBoard(rank, 3);
+        assertTrue(decoded.getCells()[0][0].hasAtom());
+        assertTrue(decoded.getCells()[4][8].hasAtom());
+        assertTrue(decoded.getCells()[8][4].hasAtom());
+        assertEquals(BitBoard.fromBoard(board), BitBoard.fromBoard(decoded));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> LayoutCodec.rank(1L << 61));
+        assertThrows(IllegalArgumentException.class, () -> LayoutCodec.unrank(-1, 6));
+        assertThrows(IllegalArgumentException.class, () -> LayoutCodec.unrank(LayoutCodec.count(6), 6));
+        assertThrows(IllegalArgumentException.class, () -> LayoutCodec.unrank(0, 62));
+        assertThrows(IllegalArgumentException.class, () -> LayoutCodec.count(-1));
+    }
+}
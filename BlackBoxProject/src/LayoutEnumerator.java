@@ -0,0 +1,601 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class that enumerates all layouts of atoms on the standard board that agree with a set of observed ray results,
+ * for example the ray markers of a game in progress. The layouts can be counted, iterated over or sampled.
+ * <p>
+ * The search decides the cells one by one as either empty or containing an atom, choosing next a cell that an
+ * unfinished observed ray needs to be traced further. After each decision, the observed rays are traced as far as
+ * the decided cells allow (see RayTable.advanceKnown), and the branch is cut as soon as
+ * one of them gives a different result than observed. Once every observed ray has been traced to its end, the cells
+ * left no longer matter to the observations, so all ways to place the remaining atoms in them agree, and they are
+ * counted with a binomial coefficient instead of one by one.
+ * <p>
+ * Counting and sampling split the first levels of the search into fork-join tasks, so they use all processors.
+ * Cells already known to contain an atom or to be empty (see AtomDeducer) are skipped by the search.
+ */
+public class LayoutEnumerator {
+
+    // ray status for rays that are finished or not observed; the other rays have a state (see
+    // RayTable.advanceKnown)
+    private static final int DONE = Integer.MIN_VALUE;
+
+    private static final long ALL_CELLS = (1L << BitBoard.NUM_CELLS) - 1;
+
+    // number of levels of the search (cells decided) in which both branches become separate fork-join tasks
+    static final int FORK_LEVELS = 16;
+
+    // kinds of nodes of the search tree (see classify)
+    private static final int DEAD = 0;
+    private static final int LEAF = 1;
+    private static final int BULK = 2;
+    private static final int BRANCH = 3;
+
+    private final int numAtoms;
+
+    // observed output point of the ray entering at each input point (at index inputPoint), or 0 if not observed
+    private final int[] outputPoints = new int[BitBoard.NUM_PORTS + 1];
+    private boolean consistent = true;
+
+    private long knownAtoms;
+    private long knownEmpty;
+
+    /**
+     * Constructs an enumerator of the layouts with a number of atoms, before any ray results are observed
+     * @param numAtoms the number of atoms, in the range 0-61
+     */
+    public LayoutEnumerator(int numAtoms) {
+        if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid number of atoms for LayoutEnumerator");
+        }
+        this.numAtoms = numAtoms;
+    }
+
+    /**
+     * Constructs an enumerator of the layouts that agree with the ray markers of a board
+     *
+     * @param markers the ray markers (see Board.getRayMarkers)
+     * @param numAtoms the number of atoms, in the range 0-61
+     */
+    public static LayoutEnumerator fromMarkers(Collection<RayMarker> markers, int numAtoms) {
+        LayoutEnumerator enumerator = new LayoutEnumerator(numAtoms);
+        for(RayMarker marker : markers) {
+            enumerator.addObservation(marker.inputPoint(), marker.outputPoint());
+        }
+        return enumerator;
+    }
+
+    /**
+     * Adds an observed ray result, which all enumerated layouts must agree with
+     *
+     * @param inputPoint the input point of the ray, in the range 1-54
+     * @param outputPoint the output point of the ray, or -1 if it was absorbed
+     */
+    public void addObservation(int inputPoint, int outputPoint) {
+        if(inputPoint < 1 || inputPoint > BitBoard.NUM_PORTS || outputPoint < -1 || outputPoint == 0
+                || outputPoint > BitBoard.NUM_PORTS) {
+            throw new IllegalArgumentException("Invalid argument to LayoutEnumerator.addObservation");
+        }
+        observe(inputPoint, outputPoint);
+        if(outputPoint != -1) {
+            observe(outputPoint, inputPoint);     // the ray back from the output point takes the same path
+        }
+    }
+
+    private void observe(int inputPoint, int outputPoint) {
+        if(outputPoints[inputPoint] != 0 && outputPoints[inputPoint] != outputPoint) {
+            consistent = false;     // no layout gives both results
+        }
+        outputPoints[inputPoint] = outputPoint;
+    }
+
+    /**
+     * Restricts the enumerated layouts to the ones with atoms in some cells and no atoms in others, so that the
+     * search does not have to decide these cells
+     *
+     * @param atoms the atom mask of the cells that must contain an atom
+     * @param empty the mask of the cells that must be empty
+     */
+    public void setKnownCells(long atoms, long empty) {
+        if((atoms & empty) != 0 || ((atoms | empty) & ~ALL_CELLS) != 0) {
+            throw new IllegalArgumentException("Invalid argument to LayoutEnumerator.setKnownCells");
+        }
+        knownAtoms = atoms;
+        knownEmpty = empty;
+    }
+
+    /**
+     * Restricts the enumerated layouts to the cells deduced by a deducer from the same observations, which only
+     * speeds up the search, since every layout that agrees with the observations also agrees with the deductions
+     * @param deducer a deducer with the same number of atoms
+     */
+    public void setKnownCells(AtomDeducer deducer) {
+        setKnownCells(deducer.getAtoms(), deducer.getEmpty());
+    }
+
+    /**
+     * Counts the layouts that agree with the observations
+     * @return the number of layouts
+     */
+    public long count() {
+        Search search = new Search();
+        if(search.rootKind == DEAD) {
+            return 0;
+        }
+        SearchTask task = new SearchTask(search, 0, search.rootDecided, search.rootAtoms, search.rootStates,
+                search.rootPending, null);
+        ForkJoinPool.commonPool().invoke(task);
+        return task.count;
+    }
+
+    /**
+     * Chooses a random sample of the layouts that agree with the observations, every subset of layouts of the
+     * sample size being equally likely
+     *
+     * @param size the number of layouts to choose
+     * @param seed the seed of the random choices; the same seed and observations give the same sample
+     * @return the atom masks of the chosen layouts, or of all layouts if there are fewer than size of them, in no
+     * particular order
+     */
+    public long[] sample(int size, long seed) {
+        return countAndSample(size, seed).layouts();
+    }
+
+    /**
+     * A random sample of the layouts that agree with the observations
+     *
+     * @param count the number of layouts that agree with the observations
+     * @param layouts the atom masks of the chosen layouts (all layouts if there are no more than the sample size)
+     */
+    public record Sample(long count, long[] layouts) {
+    }
+
+    /**
+     * Counts the layouts that agree with the observations and chooses a random sample of them in the same search
+     * (see count and sample)
+     *
+     * @param size the number of layouts to choose
+     * @param seed the seed of the random choices; the same seed and observations give the same sample
+     */
+    public Sample countAndSample(int size, long seed) {
+        if(size < 0) {
+            throw new IllegalArgumentException("Invalid sample size for LayoutEnumerator.sample");
+        }
+        Search search = new Search();
+        Reservoir reservoir = new Reservoir(size, new SplittableRandom(seed));
+        long count = 0;
+        if(search.rootKind != DEAD) {
+            SearchTask task = new SearchTask(search, 0, search.rootDecided, search.rootAtoms, search.rootStates,
+                    search.rootPending, reservoir);
+            ForkJoinPool.commonPool().invoke(task);
+            count = task.count;
+        }
+        return new Sample(count, Arrays.copyOf(reservoir.items, reservoir.numItems));
+    }
+
+    /**
+     * Iterates over the layouts that agree with the observations, finding each layout only when it is requested.
+     * Changing the observations while iterating has no effect on the iterator.
+     *
+     * @return an iterator over the atom masks of the layouts, in the same order on every call
+     */
+    public Iterator<Long> iterator() {
+        return new LayoutIterator(new Search());
+    }
+
+    /**
+     * The fixed parameters of one enumeration: a snapshot of the observations and known cells, and the ray states
+     * after tracing the observed rays over the known cells. A node of the search tree is given by the mask of the
+     * decided cells (including NO_CELL_BIT), the atom mask of the decided cells, the ray states and the number of
+     * unfinished rays.
+     */
+    private final class Search {
+        final int[] outputs = outputPoints.clone();
+        final long rootAtoms = knownAtoms;
+        final long rootDecided = knownAtoms | knownEmpty | RayTable.NO_CELL_BIT;
+        final int[] rootStates = new int[BitBoard.NUM_PORTS + 1];
+        final int rootPending;
+        final int rootKind;
+
+        Search() {
+            int[] initial = new int[BitBoard.NUM_PORTS + 1];
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                initial[inputPoint] = outputs[inputPoint] == 0 ? DONE : RayTable.EDGE_STATE;
+            }
+            rootPending = consistent ? advance(initial, rootStates, rootAtoms, rootDecided) : -1;
+            rootKind = rootPending < 0 ? DEAD : classify(rootDecided, rootAtoms, rootPending);
+        }
+
+        /**
+         * Advances every unfinished ray as far as the decided cells allow
+         *
+         * @param from the ray states before
+         * @param to the ray states after (may be the same array)
+         * @param atoms the atom mask of the decided cells
+         * @param decided the mask of the decided cells, including NO_CELL_BIT
+         * @return the number of rays that are not finished, or -1 if a ray does not agree with the observations
+         */
+        int advance(int[] from, int[] to, long atoms, long decided) {
+            int pending = 0;
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                int state = from[inputPoint];
+                if(state != DONE) {
+                    state = RayTable.advanceKnown(atoms, decided, inputPoint, state);
+                    if(state >= 0) {
+                        pending++;
+                    } else if(-2 - state == outputs[inputPoint]) {
+                        state = DONE;
+                    } else {
+                        return -1;
+                    }
+                }
+                to[inputPoint] = state;
+            }
+            return pending;
+        }
+
+        /**
+         * Chooses the cell to decide next: the cell needed by the most unfinished rays to be traced further (the
+         * lowest one if there are several). With few observed rays, this keeps the search on their paths; with
+         * many, deciding the cells shared by several rays finishes the rays sooner.
+         * @param rays scratch space for the number of unfinished rays needing each cell
+         * @return the bit of the cell
+         */
+        long nextCell(int[] states, long decided, int[] rays) {
+            Arrays.fill(rays, 0);
+            int best = -1;
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                int state = states[inputPoint];
+                if(state == DONE) {
+                    continue;
+                }
+                long needed = state == RayTable.EDGE_STATE ? RayTable.edgeMask(inputPoint) : RayTable.readMask(state);
+                for(needed &= ~decided; needed != 0; needed &= needed - 1) {
+                    int cell = Long.numberOfTrailingZeros(needed);
+                    rays[cell]++;
+                    if(best < 0 || rays[cell] > rays[best] || rays[cell] == rays[best] && cell < best) {
+                        best = cell;
+                    }
+                }
+            }
+            return 1L << best;
+        }
+
+        /**
+         * Classifies a node of the search tree:
+         * - DEAD if the atoms left do not fit in the cells left
+         * - BULK if all observed rays are finished, so every placement of the atoms left is a layout
+         * - LEAF if the atoms left can only be placed in one way, which still has to be checked
+         * - BRANCH otherwise
+         */
+        int classify(long decided, long atoms, int pending) {
+            int atomsLeft = numAtoms - Long.bitCount(atoms);
+            int cellsLeft = Long.bitCount(ALL_CELLS & ~decided);
+            if(atomsLeft < 0 || atomsLeft > cellsLeft) {
+                return DEAD;
+            } else if(pending == 0) {
+                return BULK;
+            } else if(atomsLeft == 0 || atomsLeft == cellsLeft) {
+                return LEAF;
+            }
+            return BRANCH;
+        }
+
+        /**
+         * @return the only layout of a LEAF node if it agrees with the observations, or -1 if it does not
+         */
+        long checkLeaf(long decided, long atoms, int[] states, int[] scratch) {
+            if(numAtoms - Long.bitCount(atoms) > 0) {
+                atoms |= ALL_CELLS & ~decided;     // every cell left contains an atom
+            }
+            return advance(states, scratch, atoms, ALL_CELLS | RayTable.NO_CELL_BIT) == 0 ? atoms : -1;
+        }
+
+        /**
+         * @return the number of layouts of a BULK node
+         */
+        long bulkCount(long decided, long atoms) {
+            return LayoutCodec.binomial(Long.bitCount(ALL_CELLS & ~decided), numAtoms - Long.bitCount(atoms));
+        }
+
+        /**
+         * @return the layout with the given rank among the layouts of a BULK node: the atoms left are placed in the
+         * cells left like LayoutCodec places atoms in the cells of the board
+         */
+        long bulkLayout(long decided, long atoms, long rank) {
+            long placed = LayoutCodec.unrank(rank, numAtoms - Long.bitCount(atoms));
+            long cellsLeft = ALL_CELLS & ~decided;
+            for(int i = 0; placed != 0; i++, cellsLeft &= cellsLeft - 1) {
+                if((placed & 1L << i) != 0) {
+                    atoms |= Long.lowestOneBit(cellsLeft);
+                    placed &= ~(1L << i);
+                }
+            }
+            return atoms;
+        }
+    }
+
+    /**
+     * A fork-join task searching a subtree, counting its layouts and adding them to a sample if there is one
+     */
+    private static final class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final int level;
+        private final long decided;
+        private final long atoms;
+        private final int[] states;
+        private final int pending;
+        private final Reservoir reservoir;
+
+        private long count;
+        private int[][] levelStates;    // ray states of the levels searched sequentially
+        private final int[] rays = new int[BitBoard.NUM_CELLS];
+
+        SearchTask(Search search, int level, long decided, long atoms, int[] states, int pending,
+                   Reservoir reservoir) {
+            this.search = search;
+            this.level = level;
+            this.decided = decided;
+            this.atoms = atoms;
+            this.states = states;
+            this.pending = pending;
+            this.reservoir = reservoir;
+        }
+
+        @Override
+        protected void compute() {
+            if(level >= FORK_LEVELS || search.classify(decided, atoms, pending) != BRANCH) {
+                levelStates = new int[BitBoard.NUM_CELLS + 2][];
+                levelStates[level] = states;
+                search(level, decided, atoms, pending);
+                return;
+            }
+
+            // the random generators of the subtasks are split off in a fixed order, so samples are reproducible
+            ArrayList<SearchTask> subtasks = new ArrayList<>(2);
+            long cell = search.nextCell(states, decided, rays);
+            for(int atom = 1; atom >= 0; atom--) {
+                long nextAtoms = atoms | (atom == 1 ? cell : 0);
+                int[] nextStates = new int[BitBoard.NUM_PORTS + 1];
+                int nextPending = search.advance(states, nextStates, nextAtoms, decided | cell);
+                if(nextPending >= 0) {
+                    subtasks.add(new SearchTask(search, level + 1, decided | cell, nextAtoms, nextStates,
+                            nextPending, reservoir == null ? null : reservoir.split()));
+                }
+            }
+            invokeAll(subtasks);
+            for(SearchTask subtask : subtasks) {
+                count += subtask.count;
+                if(reservoir != null) {
+                    reservoir.merge(subtask.reservoir);
+                }
+            }
+        }
+
+        private void search(int level, long decided, long atoms, int pending) {
+            int[] current = levelStates[level];
+            switch(search.classify(decided, atoms, pending)) {
+                case LEAF -> {
+                    long layout = search.checkLeaf(decided, atoms, current, scratchStates(level + 1));
+                    if(layout >= 0) {
+                        count++;
+                        if(reservoir != null) {
+                            reservoir.add(layout);
+                        }
+                    }
+                }
+                case BULK -> {
+                    long layouts = search.bulkCount(decided, atoms);
+                    count += layouts;
+                    if(reservoir != null) {
+                        reservoir.addBulk(search, decided, atoms, layouts);
+                    }
+                }
+                case BRANCH -> {
+                    int[] next = scratchStates(level + 1);
+                    long cell = search.nextCell(current, decided, rays);
+                    for(int atom = 1; atom >= 0; atom--) {
+                        long nextAtoms = atoms | (atom == 1 ? cell : 0);
+                        int nextPending = search.advance(current, next, nextAtoms, decided | cell);
+                        if(nextPending >= 0) {
+                            search(level + 1, decided | cell, nextAtoms, nextPending);
+                        }
+                    }
+                }
+                default -> {
+                    // DEAD: no layouts
+                }
+            }
+        }
+
+        private int[] scratchStates(int level) {
+            if(levelStates[level] == null) {
+                levelStates[level] = new int[BitBoard.NUM_PORTS + 1];
+            }
+            return levelStates[level];
+        }
+    }
+
+    /**
+     * A uniform random sample of fixed size from the layouts seen so far (reservoir sampling). Samples of disjoint
+     * sets of layouts can be merged into a sample of their union.
+     */
+    private static final class Reservoir {
+        private final int size;
+        private final SplittableRandom random;
+        private long[] items;
+        private int numItems;
+        private long seen;
+
+        Reservoir(int size, SplittableRandom random) {
+            this.size = size;
+            this.random = random;
+            this.items = new long[Math.min(size, 1024)];
+        }
+
+        Reservoir split() {
+            return new Reservoir(size, random.split());
+        }
+
+        void add(long layout) {
+            seen++;
+            if(numItems < size) {
+                if(numItems == items.length) {
+                    items = Arrays.copyOf(items, Math.min(size, items.length * 2));
+                }
+                items[numItems++] = layout;
+            } else {
+                long i = random.nextLong(seen);
+                if(i < size) {
+                    items[(int) i] = layout;
+                }
+            }
+        }
+
+        // adds the layouts of a BULK node: one by one if there are few of them, otherwise by sampling them by their
+        // rank and merging that sample
+        void addBulk(Search search, long decided, long atoms, long layouts) {
+            if(layouts <= size) {
+                for(long rank = 0; rank < layouts; rank++) {
+                    add(search.bulkLayout(decided, atoms, rank));
+                }
+                return;
+            }
+
+            Reservoir bulk = new Reservoir(size, random);
+            HashSet<Long> ranks = new HashSet<>();
+            while(ranks.size() < size) {
+                long rank = random.nextLong(layouts);
+                if(ranks.add(rank)) {
+                    bulk.add(search.bulkLayout(decided, atoms, rank));
+                }
+            }
+            bulk.seen = layouts;
+            merge(bulk);
+        }
+
+        /**
+         * Merges the sample of another, disjoint set of layouts into this one: each layout of the merged sample is
+         * taken from either set with a probability proportional to the layouts of the set not taken yet, choosing
+         * among the sampled layouts of the set at random
+         */
+        void merge(Reservoir other) {
+            long[] merged = new long[(int) Math.min(size, seen + other.seen)];
+            long left = seen, otherLeft = other.seen;
+            int taken = 0, otherTaken = 0;
+            for(int i = 0; i < merged.length; i++) {
+                if(random.nextLong(left + otherLeft) < left) {
+                    merged[i] = takeRandom(items, taken++, numItems);
+                    left--;
+                } else {
+                    merged[i] = other.takeRandom(other.items, otherTaken++, other.numItems);
+                    otherLeft--;
+                }
+            }
+            items = merged;
+            numItems = merged.length;
+            seen += other.seen;
+        }
+
+        // moves a random item of items[from..end) to items[from] and returns it
+        private long takeRandom(long[] array, int from, int end) {
+            int i = from + random.nextInt(end - from);
+            long item = array[i];
+            array[i] = array[from];
+            array[from] = item;
+            return item;
+        }
+    }
+
+    /**
+     * An iterator searching the tree depth-first, one layout at a time
+     */
+    private static final class LayoutIterator implements Iterator<Long> {
+
+        private record Node(long decided, long atoms, int[] states, int pending) {
+        }
+
+        private final Search search;
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+        private final int[] scratch = new int[BitBoard.NUM_PORTS + 1];
+        private final int[] rays = new int[BitBoard.NUM_CELLS];
+
+        // the BULK node whose layouts are being returned, and the rank of the next one
+        private Node bulk;
+        private long bulkRank;
+        private long bulkCount;
+
+        private long next = -1;     // the next layout, or -1 if it has not been found yet
+
+        LayoutIterator(Search search) {
+            this.search = search;
+            if(search.rootKind != DEAD) {
+                stack.push(new Node(search.rootDecided, search.rootAtoms, search.rootStates, search.rootPending));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(next < 0) {
+                next = findNext();
+            }
+            return next >= 0;
+        }
+
+        @Override
+        public Long next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long layout = next;
+            next = -1;
+            return layout;
+        }
+
+        private long findNext() {
+            while(true) {
+                if(bulk != null && bulkRank < bulkCount) {
+                    return search.bulkLayout(bulk.decided(), bulk.atoms(), bulkRank++);
+                }
+                bulk = null;
+                if(stack.isEmpty()) {
+                    return -1;
+                }
+
+                Node node = stack.pop();
+                switch(search.classify(node.decided(), node.atoms(), node.pending())) {
+                    case LEAF -> {
+                        long layout = search.checkLeaf(node.decided(), node.atoms(), node.states(), scratch);
+                        if(layout >= 0) {
+                            return layout;
+                        }
+                    }
+                    case BULK -> {
+                        bulk = node;
+                        bulkRank = 0;
+                        bulkCount = search.bulkCount(node.decided(), node.atoms());
+                    }
+                    case BRANCH -> {
+                        // the empty branch is pushed first, so the atom branch is searched first
+                        long cell = search.nextCell(node.states(), node.decided(), rays);
+                        for(int atom = 0; atom <= 1; atom++) {
+                            long atoms = node.atoms() | (atom == 1 ? cell : 0);
+                            int[] states = new int[BitBoard.NUM_PORTS + 1];
+                            int pending = search.advance(node.states(), states, atoms, node.decided() | cell);
+                            if(pending >= 0) {
+                                stack.push(new Node(node.decided() | cell, atoms, states, pending));
+                            }
+                        }
+                    }
+                    default -> {
+                        // DEAD: no layouts
+                    }
+                }
+            }
+        }
+    }
+}
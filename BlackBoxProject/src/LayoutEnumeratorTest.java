@@ -0,0 +1,154 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutEnumeratorTest {
+
+    private static final long LAYOUT = 1L << 5 | 1L << 30 | 1L << 44;
+    private static final int[] INPUT_POINTS = {3, 17, 29, 40, 51, 8};
+
+    private LayoutEnumerator enumerator;
+    private HashSet<Long> expected;
+
+    // test fixture: an enumerator with some rays of a 3-atom layout, and the layouts found by tracing every layout
+    @BeforeEach
+    void constructEnumerator() {
+        enumerator = new LayoutEnumerator(3);
+        for(int inputPoint : INPUT_POINTS) {
+            enumerator.addObservation(inputPoint, RayTable.process(LAYOUT, inputPoint));
+        }
+
+        expected = new HashSet<>();
+        for(long rank = 0; rank < LayoutCodec.count(3); rank++) {
+            long atoms = LayoutCodec.unrank(rank, 3);
+            boolean agrees = true;
+            for(int inputPoint : INPUT_POINTS) {
+                agrees &= RayTable.process(atoms, inputPoint) == RayTable.process(LAYOUT, inputPoint);
+            }
+            if(agrees) {
+                expected.add(atoms);
+            }
+        }
+        assertTrue(expected.size() > 1);
+    }
+
+    @Test
+    void testCount() {
+        assertEquals(expected.size(), enumerator.count());
+    }
+
+    @Test
+    void testIterator() {
+        HashSet<Long> found = new HashSet<>();
+        Iterator<Long> iterator = enumerator.iterator();
+        while(iterator.hasNext()) {
+            assertTrue(found.add(iterator.next()));
+        }
+        assertEquals(expected, found);
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    void testSample() {
+        long[] sample = enumerator.sample(5, 26);
+        assertEquals(5, sample.length);
+        assertEquals(5, Arrays.stream(sample).distinct().count());
+        for(long atoms : sample) {
+            assertTrue(expected.contains(atoms));
+        }
+        assertArrayEquals(sample, enumerator.sample(5, 26));
+
+        // a sample larger than the number of layouts holds all of them
+        long[] all = enumerator.sample(1000, 1);
+        assertEquals(expected, new HashSet<>(Arrays.stream(all).boxed().toList()));
+    }
+
+    @Test
+    void testKnownCells() {
+        AtomDeducer deducer = new AtomDeducer(3);
+        for(int inputPoint : INPUT_POINTS) {
+            deducer.addObservation(inputPoint, RayTable.process(LAYOUT, inputPoint));
+        }
+        enumerator.setKnownCells(deducer);
+        assertEquals(expected.size(), enumerator.count());
+
+        // restricting to cells that do not hold for every layout leaves fewer layouts
+        enumerator.setKnownCells(1L << 5, 0);
+        assertEquals(expected.stream().filter(atoms -> (atoms & 1L << 5) != 0).count(), enumerator.count());
+        assertThrows(IllegalArgumentException.class, () -> enumerator.setKnownCells(1, 1));
+    }
+}
+
+class LayoutEnumeratorCountTest {
+
+    @Test
+    void testNoObservations() {
+        assertEquals(LayoutCodec.count(6), new LayoutEnumerator(6).count());
+        assertEquals(1, new LayoutEnumerator(0).count());
+        assertEquals(1, new LayoutEnumerator(61).count());
+    }
+
+    @Test
+    void testSamplesWithoutObservations() {
+        // the layouts come from a single binomial count, so the sample is chosen by rank
+        long[] sample = new LayoutEnumerator(6).sample(100, 3);
+        assertEquals(100, Arrays.stream(sample).distinct().count());
+        for(long atoms : sample) {
+            assertEquals(6, Long.bitCount(atoms));
+        }
+    }
+
+    @Test
+    void testAllRays() {
+        // with all rays, only the layout itself (or layouts with the same signature) is left
+        for(long atoms : new LayoutGenerator(4).generate(10, 6)) {
+            LayoutEnumerator enumerator = new LayoutEnumerator(6);
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                enumerator.addObservation(inputPoint, RayTable.process(atoms, inputPoint));
+            }
+            assertEquals(SignatureSearch.countLayouts(RayTable.processAll(atoms), 6, Long.MAX_VALUE),
+                    enumerator.count());
+            HashSet<Long> layouts = new HashSet<>();
+            enumerator.iterator().forEachRemaining(layouts::add);
+            assertTrue(layouts.contains(atoms));
+        }
+    }
+
+    @Test
+    void testInconsistent() {
+        LayoutEnumerator enumerator = new LayoutEnumerator(6);
+        enumerator.addObservation(6, 41);
+        enumerator.addObservation(41, 7);
+        assertEquals(0, enumerator.count());
+        assertFalse(enumerator.iterator().hasNext());
+        assertEquals(0, enumerator.sample(10, 1).length);
+
+        LayoutEnumerator empty = new LayoutEnumerator(0);
+        empty.addObservation(1, -1);
+        assertEquals(0, empty.count());
+    }
+
+    @Test
+    void testFromMarkers() {
+        Board board = new Board();
+        board.getCells()[3][3].setAtom();
+        board.getCells()[5][2].setAtom();
+        board.addRayMarker(10, Ray.process(board, 10));
+        board.addRayMarker(30, Ray.process(board, 30));
+
+        LayoutEnumerator enumerator = LayoutEnumerator.fromMarkers(board.getRayMarkers(), 2);
+        long atoms = BitBoard.fromBoard(board).atoms();
+        Iterator<Long> iterator = enumerator.iterator();
+        boolean found = false;
+        long count = 0;
+        while(iterator.hasNext()) {
+            found |= iterator.next() == atoms;
+            count++;
+        }
+        assertTrue(found);
+        assertEquals(count, enumerator.count());
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Class that generates large numbers of random atom layouts for the standard board, as bit board atom masks
+ * (see BitBoard), for simulations. The layouts only depend on the seed: they are generated in fixed-size chunks,
+ * each with its own random generator split off the seed's generator in chunk order, so the chunks can be
+ * generated by any number of threads without changing the result.
+ */
+public class LayoutGenerator {
+
+    // number of layouts generated from the same random generator
+    static final int CHUNK_SIZE = 4096;
+
+    private final long seed;
+
+    /**
+     * Constructs a generator of layouts
+     * @param seed the seed that determines all layouts
+     */
+    public LayoutGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates a random layout with the given number of atoms, every layout being equally likely (see
+     * Board.generateAtoms)
+     *
+     * @param numAtoms the number of atoms, in the range 0-61
+     * @param random the random generator used to choose the cells
+     * @return the atom mask of the layout
+     */
+    public static long generate(int numAtoms, SplittableRandom random) {
+        if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid number of atoms for LayoutGenerator.generate");
+        }
+
+        // Floyd's algorithm, with the chosen cells kept in the atom mask itself
+        long atoms = 0;
+        for(int j = BitBoard.NUM_CELLS - numAtoms; j < BitBoard.NUM_CELLS; j++) {
+            long atom = 1L << random.nextInt(j + 1);
+            if((atoms & atom) != 0) {
+                atom = 1L << j;
+            }
+            atoms |= atom;
+        }
+        return atoms;
+    }
+
+    /**
+     * Generates layouts in parallel, using all available processors
+     *
+     * @param numLayouts the number of layouts to generate
+     * @param numAtoms the number of atoms in every layout, in the range 0-61
+     * @return the atom masks of the layouts, which are the same for every call with the same seed and number of
+     * atoms (the first layouts are also the same for different numbers of layouts)
+     */
+    public long[] generate(int numLayouts, int numAtoms) {
+        if(numLayouts < 0 || numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid argument to LayoutGenerator.generate");
+        }
+
+        // the generators are split off sequentially, so that each chunk gets the same one on every run
+        int numChunks = (numLayouts + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] chunkRandoms = new SplittableRandom[numChunks];
+        for(int chunk = 0; chunk < numChunks; chunk++) {
+            chunkRandoms[chunk] = root.split();
+        }
+
+        long[] layouts = new long[numLayouts];
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            SplittableRandom random = chunkRandoms[chunk];
+            int end = Math.min(numLayouts, (chunk + 1) * CHUNK_SIZE);
+            for(int i = chunk * CHUNK_SIZE; i < end; i++) {
+                layouts[i] = generate(numAtoms, random);
+            }
+        });
+        return layouts;
+    }
+
+    /**
+     * Generates layouts one at a time on the current thread, for consumers that process them as they are
+     * generated. The layouts are the same as the ones returned by generate, in the same order.
+     *
+     * @param numLayouts the number of layouts to generate
+     * @param numAtoms the number of atoms in every layout, in the range 0-61
+     * @param action called with the position of each layout (from 0) and its atom mask; generation stops early
+     *               if it returns false
+     */
+    public void forEach(long numLayouts, int numAtoms, LayoutAction action) {
+        if(numLayouts < 0 || numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid argument to LayoutGenerator.forEach");
+        }
+
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom random = null;
+        for(long i = 0; i < numLayouts; i++) {
+            if(i % CHUNK_SIZE == 0) {
+                random = root.split();
+            }
+            if(!action.accept(i, generate(numAtoms, random))) {
+                return;
+            }
+        }
+    }
+
+    public interface LayoutAction {
+        boolean accept(long position, long atoms);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
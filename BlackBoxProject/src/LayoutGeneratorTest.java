@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutGeneratorTest {
+
+    @Test
+    void testReproducible() {
+        long[] first = new LayoutGenerator(26).generate(10000, 6);
+        long[] second = new LayoutGenerator(26).generate(10000, 6);
+        assertArrayEquals(first, second);
+
+        // a shorter run gives the first layouts of a longer one
+        long[] shorter = new LayoutGenerator(26).generate(5000, 6);
+        for(int i = 0; i < shorter.length; i++) {
+            assertEquals(first[i], shorter[i]);
+        }
+
+        assertNotEquals(first[0], new LayoutGenerator(27).generate(1, 6)[0]);
+    }
+
+    @Test
+    void testAtomCounts() {
+        for(long atoms : new LayoutGenerator(1).generate(1000, 6)) {
+            assertEquals(6, Long.bitCount(atoms));
+            assertEquals(0, atoms >>> BitBoard.NUM_CELLS);
+        }
+        assertEquals(-1L >>> 3, LayoutGenerator.generate(61, new SplittableRandom(1)));
+        assertEquals(0, LayoutGenerator.generate(0, new SplittableRandom(1)));
+        assertThrows(IllegalArgumentException.class, () -> LayoutGenerator.generate(62, new SplittableRandom(1)));
+    }
+
+    @Test
+    void testUniformCells() {
+        // every cell should get an atom in about 6/61 of the layouts
+        int numLayouts = 61000;
+        int[] counts = new int[BitBoard.NUM_CELLS];
+        for(long atoms : new LayoutGenerator(2).generate(numLayouts, 6)) {
+            for(long bits = atoms; bits != 0; bits &= bits - 1) {
+                counts[Long.numberOfTrailingZeros(bits)]++;
+            }
+        }
+        for(int count : counts) {
+            assertTrue(Math.abs(count - 6000) < 400);
+        }
+    }
+}
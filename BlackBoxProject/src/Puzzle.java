@@ -0,0 +1,18 @@
+/**
+ * A puzzle of the puzzle corpus: a layout of atoms on the standard board that can be solved from the results of
+ * the rays, together with its difficulty
+ *
+ * @param id the position of the layout in the sequence of layouts generated from the corpus seed (see
+ *           LayoutGenerator), so that the puzzle can be generated again
+ * @param atoms the atom mask of the layout (see BitBoard)
+ * @param difficulty the difficulty score of the puzzle, higher for harder puzzles
+ */
+public record Puzzle(long id, long atoms, int difficulty) {
+
+    /**
+     * Creates a new Board containing the atoms of this puzzle, ready to be played with new Game(board)
+     */
+    public Board createBoard() {
+        return new BitBoard(atoms).toBoard();
+    }
+}
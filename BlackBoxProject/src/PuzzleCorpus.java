@@ -0,0 +1,325 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Class giving random access to the puzzles of a corpus file (see PuzzlePipeline), without reading the file into
+ * the heap: the file is memory-mapped, and each puzzle is read directly from the mapping when it is requested.
+ * <p>
+ * The file starts with a header (magic number, format version, corpus seed, number of atoms, number of puzzles),
+ * followed by a fixed-width record for each puzzle, so that the record of puzzle n is found at a fixed offset:
+ * <pre>
+ * offset  size  field
+ *      0     8  atom mask (see BitBoard)
+ *      8    54  output point of the ray entering at each input point, -1 for absorbed (see Ray.processAll)
+ *     62     2  difficulty score
+ *     64     8  puzzle id: its position in the sequence of layouts generated from the corpus seed
+ * </pre>
+ * A single mapping is limited to 2 GB, so larger files are mapped in several segments of whole records.
+ * <p>
+ * All methods are thread-safe. The open file and its mappings are published together as one immutable value, so
+ * that the puzzles can be read by several threads without locking; a puzzle read while another file is opened or
+ * the corpus is closed comes wholly from the old file or wholly from the new one (or is out of range).
+ */
+public class PuzzleCorpus implements Closeable {
+
+    static final int MAGIC = 0x42425043;    // "BBPC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 72;
+
+    private static final int ATOMS = 0;
+    private static final int SIGNATURE = 8;
+    private static final int DIFFICULTY = 62;
+    private static final int ID = 64;
+
+    // the most records that fit in one mapping
+    static final long MAX_RECORDS_PER_SEGMENT = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private final long recordsPerSegment;
+
+    // the open file, its mappings and its header, replaced as a whole by open and close
+    private record Contents(FileChannel channel, MappedByteBuffer[] segments, long seed, int numAtoms, long size) {
+    }
+
+    private static final Contents CLOSED = new Contents(null, new MappedByteBuffer[0], 0, 0, 0);
+
+    private volatile Contents contents = CLOSED;
+
+    public PuzzleCorpus() {
+        this(MAX_RECORDS_PER_SEGMENT);
+    }
+
+    // for testing files with several segments, without having to create files of several gigabytes
+    PuzzleCorpus(long recordsPerSegment) {
+        if(recordsPerSegment < 1 || recordsPerSegment > MAX_RECORDS_PER_SEGMENT) {
+            throw new IllegalArgumentException("Invalid number of records per segment");
+        }
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    /**
+     * Attempts to open the corpus file with the given filename, closing the file opened before (if any)
+     *
+     * @param filename the corpus file
+     * @return 0 for success, 1 for corpus file formatting error, 2 for general file error
+     */
+    public synchronized int open(String filename) {
+        close();
+        FileChannel file;
+        try {
+            file = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        } catch (IOException | InvalidPathException e) {
+            return 2;
+        }
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while(header.hasRemaining() && file.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                file.close();
+                return 1;
+            }
+            long corpusSeed = header.getLong();
+            int corpusAtoms = header.getInt();
+            header.getInt();    // reserved
+            long numPuzzles = header.getLong();
+            if(corpusAtoms < 0 || corpusAtoms > BitBoard.NUM_CELLS || numPuzzles < 0
+                    || numPuzzles > (file.size() - HEADER_SIZE) / RECORD_SIZE
+                    || file.size() != HEADER_SIZE + numPuzzles * RECORD_SIZE) {
+                file.close();
+                return 1;
+            }
+
+            int numSegments = (int) ((numPuzzles + recordsPerSegment - 1) / recordsPerSegment);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[numSegments];
+            for(int s = 0; s < numSegments; s++) {
+                long first = s * recordsPerSegment;
+                long records = Math.min(recordsPerSegment, numPuzzles - first);
+                mapped[s] = file.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                        records * RECORD_SIZE);
+            }
+
+            contents = new Contents(file, mapped, corpusSeed, corpusAtoms, numPuzzles);
+        } catch (IOException e) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Closes the corpus file. The mappings are released once they are no longer referenced.
+     */
+    @Override
+    public synchronized void close() {
+        if(contents.channel() != null) {
+            try {
+                contents.channel().close();
+            } catch (IOException ignored) {
+                // nothing was written, so nothing is lost
+            }
+        }
+        contents = CLOSED;
+    }
+
+    // the segment holding the record of the puzzle with the given number
+    private MappedByteBuffer segment(long number) {
+        Contents current = contents;
+        Objects.checkIndex(number, current.size());
+        return current.segments()[(int) (number / recordsPerSegment)];
+    }
+
+    // the offset of the record of the puzzle with the given number in its segment
+    private int offset(long number) {
+        return (int) (number % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    /**
+     * @param number the number of a puzzle, in the range 0 to size()-1
+     * @return the atom mask of the puzzle
+     */
+    public long getAtoms(long number) {
+        return segment(number).getLong(offset(number) + ATOMS);
+    }
+
+    /**
+     * @param number the number of a puzzle, in the range 0 to size()-1
+     * @param inputPoint an input point in the range 1-54
+     * @return the output point of the ray entering the puzzle at the input point, or -1 if it is absorbed
+     */
+    public int getOutputPoint(long number, int inputPoint) {
+        Objects.checkIndex(inputPoint - 1, BitBoard.NUM_PORTS);
+        return segment(number).get(offset(number) + SIGNATURE + inputPoint - 1);
+    }
+
+    /**
+     * @param number the number of a puzzle, in the range 0 to size()-1
+     * @return the output points of the rays entering the puzzle at each input point, at index inputPoint-1
+     */
+    public int[] getSignature(long number) {
+        MappedByteBuffer segment = segment(number);
+        int offset = offset(number) + SIGNATURE;
+        int[] signature = new int[BitBoard.NUM_PORTS];
+        for(int i = 0; i < signature.length; i++) {
+            signature[i] = segment.get(offset + i);
+        }
+        return signature;
+    }
+
+    public int getDifficulty(long number) {
+        return segment(number).getShort(offset(number) + DIFFICULTY);
+    }
+
+    /**
+     * @param number the number of a puzzle, in the range 0 to size()-1
+     * @return the id of the puzzle, with which LayoutGenerator generates its layout again from the corpus seed
+     */
+    public long getId(long number) {
+        return segment(number).getLong(offset(number) + ID);
+    }
+
+    public Puzzle getPuzzle(long number) {
+        MappedByteBuffer segment = segment(number);     // all fields are read from the same file
+        int offset = offset(number);
+        return new Puzzle(segment.getLong(offset + ID), segment.getLong(offset + ATOMS),
+                segment.getShort(offset + DIFFICULTY));
+    }
+
+    /**
+     * Creates a new Board containing the atoms of a puzzle, ready to be played with new Game(board)
+     * @param number the number of a puzzle, in the range 0 to size()-1
+     */
+    public Board createBoard(long number) {
+        return new BitBoard(getAtoms(number)).toBoard();
+    }
+
+    /**
+     * @return the number of puzzles in the corpus, or 0 if no corpus is open
+     */
+    public long size() {
+        return contents.size();
+    }
+
+    /**
+     * @return the seed the layouts of the puzzles were generated from (see LayoutGenerator)
+     */
+    public long getSeed() {
+        return contents.seed();
+    }
+
+    public int getNumAtoms() {
+        return contents.numAtoms();
+    }
+
+    /**
+     * Class that writes a corpus file, one puzzle at a time. The number of puzzles in the header is filled in when
+     * the writer is closed.
+     */
+    public static class Writer implements Closeable {
+
+        private static final int BUFFER_RECORDS = 1024;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_SIZE);
+        private final long seed;
+        private final int numAtoms;
+        private long numPuzzles;
+
+        /**
+         * Creates a corpus file with the given filename, overwriting it
+         *
+         * @param filename the corpus file
+         * @param seed the seed the layouts of the puzzles are generated from
+         * @param numAtoms the number of atoms of every puzzle
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(String filename, long seed, int numAtoms) throws IOException {
+            if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+                throw new IllegalArgumentException("Invalid number of atoms for PuzzleCorpus.Writer");
+            }
+            try {
+                channel = FileChannel.open(Path.of(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (InvalidPathException e) {
+                throw new IOException(e);
+            }
+            this.seed = seed;
+            this.numAtoms = numAtoms;
+            writeHeader();
+            channel.position(HEADER_SIZE);  // writing the header does not move the position of the channel
+        }
+
+        /**
+         * Adds a puzzle to the corpus
+         *
+         * @param puzzle the puzzle
+         * @param signature the output points of the rays entering the puzzle at each input point, at index
+         *                  inputPoint-1 (see Ray.processAll)
+         * @throws IOException if the file cannot be written
+         */
+        public void write(Puzzle puzzle, int[] signature) throws IOException {
+            if(signature.length != BitBoard.NUM_PORTS || puzzle.difficulty() < Short.MIN_VALUE
+                    || puzzle.difficulty() > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid puzzle for PuzzleCorpus.Writer.write");
+            }
+
+            if(!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putLong(puzzle.atoms());
+            for(int outputPoint : signature) {
+                buffer.put((byte) outputPoint);
+            }
+            buffer.putShort((short) puzzle.difficulty());
+            buffer.putLong(puzzle.id());
+            numPuzzles++;
+        }
+
+        public long getNumPuzzles() {
+            return numPuzzles;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(seed).putInt(numAtoms).putInt(0).putLong(numPuzzles);
+            header.flip();
+            while(header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        /**
+         * Writes the remaining puzzles and the number of puzzles, and closes the file
+         * @throws IOException if the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                writeHeader();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PuzzleCorpusTest {
+
+    // writes a corpus of layouts with their signatures, using the layout number as difficulty
+    private static File writeCorpus(long[] layouts) throws IOException {
+        File file = File.createTempFile("corpus", ".bin");
+        file.deleteOnExit();
+        try (PuzzleCorpus.Writer writer = new PuzzleCorpus.Writer(file.getPath(), 26, 6)) {
+            for(int i = 0; i < layouts.length; i++) {
+                writer.write(new Puzzle(i * 3L, layouts[i], i), RayTable.processAll(layouts[i]));
+            }
+            assertEquals(layouts.length, writer.getNumPuzzles());
+        }
+        assertEquals(PuzzleCorpus.HEADER_SIZE + (long) layouts.length * PuzzleCorpus.RECORD_SIZE, file.length());
+        return file;
+    }
+
+    @Test
+    void testRandomAccess() throws IOException {
+        long[] layouts = new LayoutGenerator(26).generate(3000, 6);   // more than the writer buffers at once
+        File file = writeCorpus(layouts);
+
+        PuzzleCorpus corpus = new PuzzleCorpus();
+        assertEquals(0, corpus.open(file.getPath()));
+        assertEquals(layouts.length, corpus.size());
+        assertEquals(26, corpus.getSeed());
+        assertEquals(6, corpus.getNumAtoms());
+
+        for(int i : new int[]{2999, 0, 1234, 1}) {
+            assertEquals(new Puzzle(i * 3L, layouts[i], i), corpus.getPuzzle(i));
+            int[] signature = RayTable.processAll(layouts[i]);
+            assertArrayEquals(signature, corpus.getSignature(i));
+            assertEquals(signature[16], corpus.getOutputPoint(i, 17));
+            assertEquals(layouts[i], BitBoard.fromBoard(corpus.createBoard(i)).atoms());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> corpus.getAtoms(3000));
+        assertThrows(IndexOutOfBoundsException.class, () -> corpus.getOutputPoint(0, 55));
+
+        corpus.close();
+        assertEquals(0, corpus.size());
+    }
+
+    @Test
+    void testSegments() throws IOException {
+        // records are found in the right segment, including the last one, which is not full
+        long[] layouts = new LayoutGenerator(3).generate(100, 6);
+        File file = writeCorpus(layouts);
+
+        PuzzleCorpus corpus = new PuzzleCorpus(7);
+        assertEquals(0, corpus.open(file.getPath()));
+        for(int i = 0; i < layouts.length; i++) {
+            assertEquals(layouts[i], corpus.getAtoms(i));
+            assertEquals(i, corpus.getDifficulty(i));
+            assertArrayEquals(RayTable.processAll(layouts[i]), corpus.getSignature(i));
+        }
+        corpus.close();
+    }
+
+    @Test
+    void testEmptyCorpus() throws IOException {
+        PuzzleCorpus corpus = new PuzzleCorpus();
+        assertEquals(0, corpus.open(writeCorpus(new long[0]).getPath()));
+        assertEquals(0, corpus.size());
+        corpus.close();
+    }
+
+    @Test
+    void testBadFormat() throws IOException {
+        File file = writeCorpus(new LayoutGenerator(3).generate(10, 6));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 1);     // last record is cut off
+        }
+        assertEquals(1, new PuzzleCorpus().open(file.getPath()));
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(12345);    // not a corpus file
+            out.writeLong(0);
+        }
+        assertEquals(1, new PuzzleCorpus().open(file.getPath()));
+    }
+
+    @Test
+    void testMissingFile() {
+        assertEquals(2, new PuzzleCorpus().open("missing_directory/corpus.bin"));
+        assertThrows(IOException.class, () -> new PuzzleCorpus.Writer("missing_directory/corpus.bin", 1, 6));
+    }
+}
@@ -0,0 +1,472 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Class that generates a corpus of vetted puzzles: layouts of atoms on the standard board that the player can
+ * solve, because no other layout with the same number of atoms gives the same results for all 54 rays. The work
+ * is split into stages running on their own threads, connected by bounded queues:
+ * <p>
+ * generate layouts -> compute signatures -> check uniqueness -> score difficulty -> write corpus
+ * <p>
+ * Symmetric layouts make the same puzzle, so only layouts in canonical form (see BoardSymmetry) get a signature;
+ * this needs no memory of the puzzles found, and does not depend on the order of the layouts.
+ * <p>
+ * The difficulty is scored from the signature alone by default (see scoreDifficulty), which keeps up with the
+ * other stages; a DifficultyEstimator gives a better score from the number of rays needed to solve the puzzle, but
+ * takes a fraction of a second per puzzle, so it is only used if enabled by setEstimateDifficulty.
+ * <p>
+ * The stages after the first may run on several threads, so the candidates can overtake each other; the layouts
+ * dropped by a stage are passed on as dropped candidates, so that the write stage can restore the order of the
+ * layouts, and the same seed always gives the same corpus file.
+ * <p>
+ * A full queue makes the stage before it wait (backpressure), so a slow stage never lets the queues grow without
+ * bounds. While the pipeline runs, it reports the throughput of each stage, how full its input queue is and how
+ * much of the time its threads spend waiting for input or for space in the next queue.
+ */
+public class PuzzlePipeline {
+
+    static final int QUEUE_CAPACITY = 1024;
+
+    // a layout on its way through the pipeline; the fields are filled in by the stages
+    private record Candidate(long id, long atoms, int[] signature, int difficulty, boolean dropped) {
+
+        // the same layout, not to be written
+        Candidate drop() {
+            return new Candidate(id, atoms, signature, difficulty, true);
+        }
+    }
+
+    // marks the end of the candidates in a queue, one for each thread of the next stage
+    private static final Candidate END = new Candidate(-1, 0, null, 0, true);
+
+    private final long seed;
+    private final int numAtoms;
+    private final int uniquenessThreads;
+
+    private PrintStream report = System.out;
+    private long reportInterval = 1000;    // milliseconds
+    private LongToIntFunction difficultyScore;     // null to score the signatures
+
+    private final ArrayList<Stage> stages = new ArrayList<>();
+    private final AtomicLong ambiguous = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private long written;
+    private long lastReport;    // System.nanoTime of the last progress report
+
+    /**
+     * Constructs a pipeline generating puzzles from a seed
+     *
+     * @param seed the seed of the layouts (see LayoutGenerator); the same seed gives the same puzzles
+     * @param numAtoms the number of atoms of every puzzle
+     * @param uniquenessThreads the number of threads checking uniqueness, by far the slowest stage
+     */
+    public PuzzlePipeline(long seed, int numAtoms, int uniquenessThreads) {
+        if(numAtoms < 1 || numAtoms > BitBoard.NUM_CELLS || uniquenessThreads < 1) {
+            throw new IllegalArgumentException("Invalid argument to PuzzlePipeline constructor");
+        }
+
+        this.seed = seed;
+        this.numAtoms = numAtoms;
+        this.uniquenessThreads = uniquenessThreads;
+    }
+
+    /**
+     * Sets where the progress reports are printed
+     * @param report the stream to print to, or null for no reports
+     * @param interval the time between reports, in milliseconds
+     */
+    public void setReport(PrintStream report, long interval) {
+        if(interval <= 0) {
+            throw new IllegalArgumentException("Invalid report interval");
+        }
+        this.report = report;
+        this.reportInterval = interval;
+    }
+
+    /**
+     * Sets whether the difficulty of the puzzles is scored by a DifficultyEstimator (see scoreDifficulty), run on
+     * as many threads as the uniqueness stage, instead of from their signatures
+     * @param estimateDifficulty true to estimate the number of rays needed to solve each puzzle
+     */
+    public void setEstimateDifficulty(boolean estimateDifficulty) {
+        if(estimateDifficulty) {
+            DifficultyEstimator estimator = new DifficultyEstimator(numAtoms);
+            setDifficultyScore(atoms -> scoreDifficulty(estimator.estimate(atoms)));
+        } else {
+            setDifficultyScore(null);
+        }
+    }
+
+    /**
+     * Sets the function that scores the difficulty of the puzzles from their layouts, run on as many threads as
+     * the uniqueness stage
+     * @param difficultyScore the function, or null to score the puzzles from their signatures
+     */
+    void setDifficultyScore(LongToIntFunction difficultyScore) {
+        this.difficultyScore = difficultyScore;
+    }
+
+    /**
+     * Scores the difficulty of a puzzle from its signature, as the number of rays that are deflected on their way
+     * through the board: rays that are absorbed, reflected or pass straight through are easy to interpret, while
+     * the atoms deflecting a ray have to be worked out from several rays. This is the score used unless the
+     * difficulty is estimated.
+     *
+     * @param signature the signature of the puzzle (see Ray.processAll)
+     * @return the difficulty score, in the range 0-54
+     */
+    public static int scoreDifficulty(int[] signature) {
+        int[] empty = RayTable.processAll(0);
+        int deflected = 0;
+        for(int inputPoint = 1; inputPoint <= signature.length; inputPoint++) {
+            int outputPoint = signature[inputPoint - 1];
+            if(outputPoint != -1 && outputPoint != inputPoint && outputPoint != empty[inputPoint - 1]) {
+                deflected++;
+            }
+        }
+        return deflected;
+    }
+
+    /**
+     * Scores the difficulty of a puzzle from an estimate of the number of rays needed to solve it
+     * @param difficulty the estimate (see DifficultyEstimator)
+     * @return the expected number of rays in hundredths, in the range 0-5400
+     */
+    public static int scoreDifficulty(DifficultyEstimator.Difficulty difficulty) {
+        return (int) Math.round(difficulty.expected() * 100);
+    }
+
+    /**
+     * Runs the pipeline on a number of generated layouts, writing the puzzles found to a corpus file (see
+     * PuzzleCorpus). Only layouts in canonical form are kept (see BoardSymmetry.canonicalize), so no two puzzles
+     * are symmetric, whatever layouts are generated; the others are skipped as duplicates.
+     *
+     * @param numLayouts the number of layouts to generate and check
+     * @param filename the corpus file, which is overwritten
+     * @return 0 for success, -1 for file error, -2 if a stage failed (see getFailure), leaving the corpus file
+     * incomplete
+     */
+    public int run(long numLayouts, String filename) {
+        PuzzleCorpus.Writer out;
+        try {
+            out = new PuzzleCorpus.Writer(filename, seed, numAtoms);
+        } catch (IOException e) {
+            return -1;
+        }
+
+        BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+        AtomicBoolean writeError = new AtomicBoolean();
+        written = 0;
+        failure.set(null);
+        ambiguous.set(0);
+        duplicates.set(0);
+
+        stages.clear();
+        Stage generate = new Stage("generate", 1, null);
+        Stage signature = new Stage("signature", 1, generate);
+        Stage uniqueness = new Stage("uniqueness", uniquenessThreads, signature);
+        Stage difficulty = new Stage("difficulty", difficultyScore != null ? uniquenessThreads : 1, uniqueness);
+        Stage write = new Stage("write", 1, difficulty);
+
+        LayoutGenerator generator = new LayoutGenerator(seed);
+        generate.start(ignored -> {
+            generator.forEach(numLayouts, numAtoms,
+                    (id, atoms) -> failure.get() == null
+                            && generate.put(new Candidate(id, atoms, null, 0, false)));
+            return null;
+        });
+        signature.start(candidate -> {
+            if(symmetry.canonicalize(candidate.atoms()).atoms() != candidate.atoms()) {
+                duplicates.incrementAndGet();
+                return candidate.drop();
+            }
+            return new Candidate(candidate.id(), candidate.atoms(), RayTable.processAll(candidate.atoms()), 0, false);
+        });
+        uniqueness.start(candidate -> {
+            long collision = UniquenessChecker.findCollision(candidate.atoms(), candidate.signature());
+            if(collision == UniquenessChecker.UNIQUE) {
+                return candidate;
+            }
+            ambiguous.incrementAndGet();
+            return candidate.drop();
+        });
+        LongToIntFunction score = difficultyScore;
+        difficulty.start(candidate -> new Candidate(candidate.id(), candidate.atoms(), candidate.signature(),
+                score != null ? score.applyAsInt(candidate.atoms()) : scoreDifficulty(candidate.signature()), false));
+
+        // candidates wait until every candidate with a smaller id has arrived, so they are written in id order
+        PriorityQueue<Candidate> waiting = new PriorityQueue<>(Comparator.comparingLong(Candidate::id));
+        long[] nextId = new long[1];
+        write.start(candidate -> {
+            waiting.add(candidate);
+            while(!waiting.isEmpty() && waiting.peek().id() == nextId[0]) {
+                Candidate next = waiting.poll();
+                nextId[0]++;
+                if(next.dropped() || writeError.get()) {
+                    continue;   // keep taking candidates after an error, so that the stages before do not block
+                }
+                try {
+                    out.write(new Puzzle(next.id(), next.atoms(), next.difficulty()), next.signature());
+                    written++;
+                } catch (IOException e) {
+                    writeError.set(true);
+                }
+            }
+            return null;
+        });
+
+        lastReport = System.nanoTime();
+        Thread reporter = new Thread(this::reportProgress, "pipeline-report");
+        reporter.setDaemon(true);
+        reporter.start();
+
+        for(Stage stage : stages) {
+            stage.join();
+        }
+        reporter.interrupt();
+        printReport();
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            return -1;
+        }
+        if(failure.get() != null) {
+            return -2;
+        }
+        return writeError.get() ? -1 : 0;
+    }
+
+    /**
+     * @return the first exception thrown by a stage in the last run, or null if no stage failed
+     */
+    public RuntimeException getFailure() {
+        return failure.get();
+    }
+
+    /**
+     * @return the number of puzzles written by the last run
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return the number of layouts dropped by the last run because another layout gives the same signature
+     */
+    public long getAmbiguous() {
+        return ambiguous.get();
+    }
+
+    /**
+     * @return the number of layouts dropped by the last run because they are not in canonical form, so that they
+     * are symmetric to a layout that can be kept instead
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    private void reportProgress() {
+        try {
+            while(true) {
+                Thread.sleep(reportInterval);
+                printReport();
+            }
+        } catch (InterruptedException e) {
+            // the pipeline has finished
+        }
+    }
+
+    private synchronized void printReport() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastReport);
+        lastReport = now;
+        if(report == null) {
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        for(Stage stage : stages) {
+            line.append(stage.report(elapsed)).append(" | ");
+        }
+        report.println(line);
+    }
+
+    /**
+     * A stage of the pipeline: a number of threads taking candidates from the queue of the previous stage, and
+     * putting the candidates they produce into the queue of this stage. If the work of any stage throws an
+     * exception, the pipeline fails: the first stage stops generating layouts, and the other stages keep taking
+     * candidates without working on them until their input ends, so that no stage is left waiting.
+     */
+    private final class Stage {
+        private final String name;
+        private final int numThreads;
+        private final Stage previous;
+        private final ArrayBlockingQueue<Candidate> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final ArrayList<Thread> threads = new ArrayList<>();
+        private final AtomicInteger running;
+
+        private Stage next;
+
+        // metrics: candidates processed, and nanoseconds spent waiting for input and for space in the queue
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong takeWait = new AtomicLong();
+        private final AtomicLong putWait = new AtomicLong();
+        private long lastProcessed, lastTakeWait, lastPutWait;
+
+        Stage(String name, int numThreads, Stage previous) {
+            this.name = name;
+            this.numThreads = numThreads;
+            this.previous = previous;
+            this.running = new AtomicInteger(numThreads);
+            if(previous != null) {
+                previous.next = this;
+            }
+            stages.add(this);
+        }
+
+        /**
+         * Starts the threads of this stage
+         * @param work the work done for each candidate taken from the previous stage (or once, with null, for the
+         *             first stage), returning the candidate to pass on, or null if there is none
+         */
+        void start(Function<Candidate, Candidate> work) {
+            for(int i = 0; i < numThreads; i++) {
+                Thread thread = new Thread(() -> runThread(work), "pipeline-" + name + "-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        private void runThread(Function<Candidate, Candidate> work) {
+            try {
+                if(previous == null) {
+                    apply(work, null);
+                } else {
+                    while(true) {
+                        long start = System.nanoTime();
+                        Candidate candidate = previous.queue.take();
+                        takeWait.addAndGet(System.nanoTime() - start);
+                        if(candidate == END) {
+                            break;
+                        }
+                        if(failure.get() != null) {
+                            continue;   // drain the queue
+                        }
+                        // dropped candidates are only passed on, for the last stage to keep track of the ids
+                        if(candidate.dropped() && next != null) {
+                            put(candidate);
+                            continue;
+                        }
+                        Candidate result = apply(work, candidate);
+                        processed.incrementAndGet();
+                        if(result != null) {
+                            put(result);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // the last thread to finish tells every thread of the next stage that there is no more input
+                if(running.decrementAndGet() == 0 && next != null) {
+                    for(int i = 0; i < next.numThreads; i++) {
+                        put(END);
+                    }
+                }
+            }
+        }
+
+        // does the work for a candidate, recording the failure of the pipeline if it throws an exception
+        private Candidate apply(Function<Candidate, Candidate> work, Candidate candidate) {
+            try {
+                return work.apply(candidate);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                return null;
+            }
+        }
+
+        // puts a candidate into the queue of this stage, waiting for space if it is full; returns true so that it
+        // can be used as a LayoutAction
+        boolean put(Candidate candidate) {
+            if(next == null) {
+                return true;    // the last stage has no queue
+            }
+            if(candidate != END && previous == null) {
+                processed.incrementAndGet();
+            }
+            long start = System.nanoTime();
+            try {
+                queue.put(candidate);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            putWait.addAndGet(System.nanoTime() - start);
+            return true;
+        }
+
+        void join() {
+            for(Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        // describes the progress of this stage since the last report
+        String report(long elapsed) {
+            long total = processed.get(), take = takeWait.get(), put = putWait.get();
+            double seconds = elapsed / 1e9;
+            double threadNanos = (double) elapsed * numThreads;
+            String text = String.format("%s %d (%.0f/s, queue %d/%d, waiting %.0f%% in, %.0f%% out)", name, total,
+                    (total - lastProcessed) / seconds, queue.size(), QUEUE_CAPACITY,
+                    100 * (take - lastTakeWait) / threadNanos, 100 * (put - lastPutWait) / threadNanos);
+            lastProcessed = total;
+            lastTakeWait = take;
+            lastPutWait = put;
+            return text;
+        }
+    }
+
+    /**
+     * Generates a puzzle corpus from the command line
+     * Usage: PuzzlePipeline seed numLayouts filename [numAtoms] [uniquenessThreads] [estimate]
+     */
+    public static void main(String[] args) {
+        if(args.length < 3) {
+            System.out.println("Usage: PuzzlePipeline seed numLayouts filename [numAtoms] [uniquenessThreads] "
+                    + "[estimate]");
+            return;
+        }
+
+        int numAtoms = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        PuzzlePipeline pipeline = new PuzzlePipeline(Long.parseLong(args[0]), numAtoms, threads);
+        pipeline.setEstimateDifficulty(args.length > 5 && args[5].equals("estimate"));
+        int status = pipeline.run(Long.parseLong(args[1]), args[2]);
+        if(status == -2) {
+            System.out.println("The pipeline failed: " + pipeline.getFailure());
+            return;
+        } else if(status != 0) {
+            System.out.println("Could not write the corpus to " + args[2]);
+            return;
+        }
+        System.out.println(pipeline.getWritten() + " puzzles written, " + pipeline.getAmbiguous()
+                + " ambiguous and " + pipeline.getDuplicates() + " symmetric layouts skipped");
+    }
+}
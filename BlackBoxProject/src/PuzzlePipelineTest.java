@@ -0,0 +1,150 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PuzzlePipelineTest {
+
+    private static PuzzleCorpus runPipeline(long seed, int threads, long numLayouts) throws IOException {
+        File file = File.createTempFile("corpus", ".bin");
+        file.deleteOnExit();
+
+        PuzzlePipeline pipeline = new PuzzlePipeline(seed, 4, threads);
+        pipeline.setReport(null, 1000);
+        assertEquals(0, pipeline.run(numLayouts, file.getPath()));
+        assertEquals(numLayouts, pipeline.getWritten() + pipeline.getAmbiguous() + pipeline.getDuplicates());
+
+        PuzzleCorpus corpus = new PuzzleCorpus();
+        assertEquals(0, corpus.open(file.getPath()));
+        assertEquals(pipeline.getWritten(), corpus.size());
+        return corpus;
+    }
+
+    @Test
+    void testCorpus() throws IOException {
+        PuzzleCorpus corpus = runPipeline(26, 2, 300);
+        assertEquals(26, corpus.getSeed());
+        assertEquals(4, corpus.getNumAtoms());
+
+        BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+        long[] layouts = new LayoutGenerator(26).generate(300, 4);
+        HashSet<Long> canonical = new HashSet<>();
+        for(long number = 0; number < corpus.size(); number++) {
+            Puzzle puzzle = corpus.getPuzzle(number);
+
+            // the id gives the layout again, which is unique and not symmetric to another puzzle of the corpus
+            assertEquals(layouts[(int) puzzle.id()], puzzle.atoms());
+            assertTrue(SignatureSearch.isUnique(puzzle.atoms()));
+            assertTrue(canonical.add(symmetry.canonicalize(puzzle.atoms()).atoms()));
+            assertArrayEquals(RayTable.processAll(puzzle.atoms()), corpus.getSignature(number));
+            assertEquals(PuzzlePipeline.scoreDifficulty(corpus.getSignature(number)), puzzle.difficulty());
+        }
+        corpus.close();
+    }
+
+    // the canonical layouts of the puzzles in a corpus
+    private static HashSet<Long> canonicalLayouts(PuzzleCorpus corpus) {
+        BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+        HashSet<Long> canonical = new HashSet<>();
+        for(long number = 0; number < corpus.size(); number++) {
+            canonical.add(symmetry.canonicalize(corpus.getAtoms(number)).atoms());
+        }
+        corpus.close();
+        return canonical;
+    }
+
+    @Test
+    void testReproducible() throws IOException {
+        // the order of the puzzles (and which of two symmetric layouts is kept) depends on the threads, but not the
+        // puzzles themselves
+        assertEquals(canonicalLayouts(runPipeline(7, 1, 200)), canonicalLayouts(runPipeline(7, 3, 200)));
+    }
+
+    // the write stage restores the order of the layouts, so the threads do not change the file
+    @Test
+    void testSameFile() throws IOException {
+        byte[][] files = new byte[2][];
+        for(int run = 0; run < 2; run++) {
+            File file = File.createTempFile("corpus", ".bin");
+            file.deleteOnExit();
+            PuzzlePipeline pipeline = new PuzzlePipeline(26, 4, 3);
+            pipeline.setReport(null, 1000);
+            assertEquals(0, pipeline.run(300, file.getPath()));
+            files[run] = Files.readAllBytes(file.toPath());
+        }
+        assertArrayEquals(files[0], files[1]);
+    }
+
+    @Test
+    void testEstimateDifficulty() throws IOException {
+        File file = File.createTempFile("corpus", ".bin");
+        file.deleteOnExit();
+        PuzzlePipeline pipeline = new PuzzlePipeline(11, 4, 2);
+        pipeline.setReport(null, 1000);
+        pipeline.setEstimateDifficulty(true);
+        assertEquals(0, pipeline.run(100, file.getPath()));
+
+        PuzzleCorpus corpus = new PuzzleCorpus();
+        assertEquals(0, corpus.open(file.getPath()));
+        assertTrue(corpus.size() > 0);
+        DifficultyEstimator estimator = new DifficultyEstimator(4);
+        for(long number = 0; number < corpus.size(); number++) {
+            Puzzle puzzle = corpus.getPuzzle(number);
+            assertEquals(PuzzlePipeline.scoreDifficulty(estimator.estimate(puzzle.atoms())), puzzle.difficulty());
+        }
+        corpus.close();
+    }
+
+    // an exception in a stage with a single thread stops the pipeline instead of blocking the stages before it
+    @Test
+    void testStageFailure() throws IOException {
+        File file = File.createTempFile("corpus", ".bin");
+        file.deleteOnExit();
+        PuzzlePipeline pipeline = new PuzzlePipeline(3, 4, 1);
+        pipeline.setReport(null, 1000);
+        IllegalStateException thrown = new IllegalStateException();
+        pipeline.setDifficultyScore(atoms -> {
+            throw thrown;
+        });
+        assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertEquals(-2, pipeline.run(10 * PuzzlePipeline.QUEUE_CAPACITY, file.getPath())));
+        assertSame(thrown, pipeline.getFailure());
+
+        // the next run starts over
+        pipeline.setDifficultyScore(null);
+        assertEquals(0, pipeline.run(100, file.getPath()));
+        assertNull(pipeline.getFailure());
+    }
+
+    @Test
+    void testScoreDifficulty() {
+        assertEquals(0, PuzzlePipeline.scoreDifficulty(RayTable.processAll(0)));
+        int[] signature = RayTable.processAll(1L << 30);
+        assertTrue(PuzzlePipeline.scoreDifficulty(signature) > 0);
+    }
+
+    // every run counts its own layouts
+    @Test
+    void testRunTwice() throws IOException {
+        File file = File.createTempFile("corpus", ".bin");
+        file.deleteOnExit();
+        PuzzlePipeline pipeline = new PuzzlePipeline(26, 4, 1);
+        pipeline.setReport(null, 1000);
+        for(int run = 0; run < 2; run++) {
+            assertEquals(0, pipeline.run(300, file.getPath()));
+            assertEquals(300, pipeline.getWritten() + pipeline.getAmbiguous() + pipeline.getDuplicates());
+            assertTrue(pipeline.getAmbiguous() + pipeline.getDuplicates() > 0);
+        }
+    }
+
+    @Test
+    void testFileError() {
+        PuzzlePipeline pipeline = new PuzzlePipeline(1, 4, 1);
+        pipeline.setReport(null, 1000);
+        assertEquals(-1, pipeline.run(10, "missing_directory/corpus.bin"));
+    }
+}
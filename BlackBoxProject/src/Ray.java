@@ -5,8 +5,8 @@ public class Ray {
 
     /**
      *  Static method which processes a ray, calculating its output point from the board based on its input point
-     *  and the atoms encountered. This method modifies the internal state of the board, as it saves information about
-     *  the ray trajectory inside the board's cells.
+     *  and the atoms encountered. This method modifies the internal state of the board, as it saves the ray
+     *  trajectory in the board's ray paths (see Board.getRayPaths).
      *
      * @param board the Board containing the 2D array of cells
      * @param inputPoint the input point chosen by the player for this ray
@@ -14,14 +14,85 @@ public class Ray {
      */
     public static int process(Board board, int inputPoint) {
 
-        if(inputPoint < 1 || inputPoint > 54 || board == null) {
+        if(board == null || inputPoint < 1 || inputPoint > board.getNumInputPoints()) {
             throw new IllegalArgumentException("Invalid argument to Ray.process");
         }
 
-        Cell[][] cells = board.getCells();
+        return trace(board, inputPoint, null, true);
+    }
+
+    /**
+     * Static method which processes the rays entering the board at every input point, without modifying the
+     * board. Since rays are reversible (a ray entering at input point i and exiting at output point j means a ray
+     * entering at j exits at i), each pair of input points connected by a ray is only traced once.
+     *
+     * @param board the Board containing the 2D array of cells
+     * @return the signature of the board: an array with an output point for each input point (54 for a standard
+     * board), where the element at index i-1 is the output point of the ray entering at input point i (or -1 if
+     * that ray is absorbed)
+     */
+    public static int[] processAll(Board board) {
 
-        Cell cell = inputPointToCell(cells, inputPoint);
-        int entryPoint = inputPointToEntryPoint(inputPoint); // entry point goes from 0 (upper-left) to 5 (left)
+        if(board == null) {
+            throw new IllegalArgumentException("Invalid argument to Ray.processAll");
+        }
+
+        int[] signature = new int[board.getNumInputPoints()];     // 0 marks the input points not yet known
+        for(int inputPoint = 1; inputPoint <= signature.length; inputPoint++) {
+            if(signature[inputPoint - 1] == 0) {
+                int outputPoint = trace(board, inputPoint, null, false);
+                signature[inputPoint - 1] = outputPoint;
+                if(outputPoint != -1) {
+                    signature[outputPoint - 1] = inputPoint;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Static method which processes a ray like process does, but without modifying the board or allocating any
+     * objects, so that many threads can trace rays on the same board at once (as long as no atoms are placed
+     * on it meanwhile). If a path buffer is given, the ray segments on the ray's path are written into it.
+     * (The only exception is the jump table of boards larger than the standard one, created by the first ray
+     * traced without a path buffer.)
+     *
+     * @param board the Board containing the 2D array of cells
+     * @param inputPoint the input point of the ray, in the range 1-54 for a standard board
+     * @param path a buffer for the ray path, or null if the path is not needed. path[0] is set to the number of
+     *             ray segments on the path, and the following elements to the segments themselves, packed with
+     *             RaySegment.pack, in the order in which the ray passes through them. Segments that don't fit in
+     *             the buffer are left out (but still counted in path[0])
+     * @return the number of the output point for rays that exit the board or -1 for absorbed rays
+     */
+    public static int trace(Board board, int inputPoint, int[] path) {
+
+        if(board == null || inputPoint < 1 || inputPoint > board.getNumInputPoints()
+                || (path != null && path.length == 0)) {
+            throw new IllegalArgumentException("Invalid argument to Ray.trace");
+        }
+
+        return trace(board, inputPoint, path, false);
+    }
+
+    /**
+     * Traces a ray through the board, optionally saving its trajectory in the board's ray paths and/or in a
+     * path buffer
+     *
+     * @param board the Board containing the 2D array of cells
+     * @param inputPoint the input point of the ray
+     * @param path a buffer for the packed ray segments on the ray path (see trace), or null
+     * @param recordSegments whether the ray path should be added to the board's ray paths
+     * @return the number of the output point for rays that exit the board or -1 for absorbed rays
+     */
+    private static int trace(Board board, int inputPoint, int[] path, boolean recordSegments) {
+
+        // the numbering of input points and cells depends on the size of the board, so it is looked up in its
+        // topology (this keeps the cost of tracing a ray proportional to its length on boards of any size)
+        BoardTopology topology = board.getTopology();
+
+        int cell = topology.getInputCell(inputPoint);    // cells are followed by index, through the topology
+        int entryPoint = topology.getEntryPoint(inputPoint); // entry point goes from 0 (upper-left) to 5 (left)
         int exitPoint;
 
         /*
@@ -32,25 +103,51 @@ public class Ray {
         contain atoms, or else the ray wouldn't have entered this cell.
          */
 
+        if(path != null) {
+            path[0] = 0;
+        }
+        if(recordSegments) {
+            board.getRayPaths().startRay(inputPoint);
+        }
+
         // in edge of the board case, the atom is reflected right away and input point = output point
-        if(isReflectedOnEdge(cell, entryPoint)) {
+        if(isReflectedOnEdge(board, cell, entryPoint)) {
             return inputPoint;
         }
 
+        // on large boards, when the ray segments are not needed, straight runs through empty parts of the board are
+        // skipped in one step using the board's jump table
+        JumpTable jumpTable = null;
+        if(board.getBoardSize() > Board.BOARD_SIZE && path == null && !recordSegments) {
+            jumpTable = board.getJumpTable();
+        }
+
         while(true) {
 
-            exitPoint = computeExitPoint(cell, entryPoint);
+            if(jumpTable != null) {
+                int runEnd = jumpTable.getRunEnd(cell, (entryPoint + 3) % 6);
+                if(runEnd != -1) {
+                    cell = runEnd;   // the ray keeps the same entry point along the run
+                }
+            }
+
+            exitPoint = computeExitPoint(board, cell, entryPoint);
 
-            // add info about the ray traversing this cell to this cell's raySegments ArrayList
+            // add info about the ray traversing this cell to the board's ray paths
             // this is a side effect on the board passed as argument that we found necessary for the final board display
-            cell.addRaySegment(entryPoint, exitPoint);
+            if(recordSegments) {
+                board.getRayPaths().addSegment(RaySegment.pack(cell, entryPoint, exitPoint));
+            }
+            if(path != null && ++path[0] < path.length) {
+                path[path[0]] = RaySegment.pack(cell, entryPoint, exitPoint);
+            }
 
             if(exitPoint == -1) {      // exit loop and return if the ray is absorbed
                 return -1;
             }
 
-            Cell next = cell.getNeighbours()[exitPoint];
-            if(next == null) {       // exit loop if we exit the board
+            int next = topology.getNeighbour(cell, exitPoint);
+            if(next == -1) {       // exit loop if we exit the board
                 break;
             } else {
                 cell = next;     // move cell to the next cell on the ray path
@@ -60,168 +157,50 @@ public class Ray {
 
         }
 
-        return cellToOutputPoint(cell, exitPoint);
-    }
-
-    /**
-     * Figures out the starting cell associated with the given input point number
-     * @param cells a board's 2D array of cells
-     * @param inputPoint the input point to the board
-     * @return the cell that the input point points into
-     */
-
-    private static Cell inputPointToCell(Cell[][] cells, int inputPoint) {
-
-        if(inputPoint <= 10) {              // upper-left
-            return cells[(inputPoint-1) / 2][0];
-        } else if(inputPoint <= 19) {       // lower-left
-            return cells[(inputPoint-2) / 2][0];
-        } else if(inputPoint <= 28) {       // lower
-            return cells[Board.BOARD_SIZE-1][(inputPoint-19) / 2];
-        } else if(inputPoint <= 37) {       // lower-right
-            int row = (45 - inputPoint) / 2;
-            return cells[row][12-row];
-        } else if(inputPoint <= 46){        // upper-right
-            int row = (46 - inputPoint) / 2;
-            return cells[row][row+4];
-        } else {                            // upper
-            return cells[0][(55-inputPoint) / 2];
-        }
-
-    }
-
-    /**
-     * Figures out the entry point to the cell corresponding to the given input point number
-     * @param inputPoint the input point to the board (in the range 1-54)
-     * @return the entry point (in the range 0 for upper-left to 5 for left) to the cell at the given input point
-     */
-    private static int inputPointToEntryPoint(int inputPoint) {
-
-        if((inputPoint <= 9 || inputPoint >= 47) && inputPoint % 2 == 1 ) {
-            return 0;   // upper-left entry point
-        }
-        if(inputPoint >= 2 && inputPoint <= 18 && inputPoint % 2 == 0 ) {
-            return 5;   // left entry point
-        }
-        if(inputPoint >= 11 && inputPoint <= 27 && inputPoint % 2 == 1 ) {
-            return 4;   // lower-left entry point
-        }
-        if(inputPoint >= 20 && inputPoint <= 36 && inputPoint % 2 == 0 ) {
-            return 3;   // lower-right entry point
-        }
-        if(inputPoint >= 29 && inputPoint <= 45 && inputPoint % 2 == 1 ) {
-            return 2;   // right entry point
-        }
-        return 1;       // upper-right entry point
+        return topology.getOutputPoint(cell, exitPoint);
     }
 
     /**
      * Contains logic for handling the edge of the board case: checks whether a ray entering a given cell
      * at a given entry point to that cell is reflected straight away
      *
-     * @param cell the cell where the ray enters the board
+     * @param board the Board containing the cell
+     * @param cell the index of the cell where the ray enters the board
      * @param entryPoint the entry point to the given cell, in the range 0 (for upper-left) to 5 (for left)
      * @return true if the atom is reflected right away, before even entering the board,
      * as a result of an atom on the edge of the board, and false otherwise
      */
-    private static boolean isReflectedOnEdge(Cell cell, int entryPoint) {
-        Cell neighbour1 = cell.getNeighbours()[(entryPoint+5) % 6];
-        Cell neighbour2 = cell.getNeighbours()[(entryPoint+1) % 6];
+    private static boolean isReflectedOnEdge(Board board, int cell, int entryPoint) {
+        BoardTopology topology = board.getTopology();
+        int neighbour1 = topology.getNeighbour(cell, (entryPoint+5) % 6);
+        int neighbour2 = topology.getNeighbour(cell, (entryPoint+1) % 6);
 
-        return (neighbour1 != null && neighbour1.hasAtom()) || (neighbour2 != null && neighbour2.hasAtom()) || cell.hasAtom();
+        return atomBit(board, neighbour1) == 1 || atomBit(board, neighbour2) == 1 || atomBit(board, cell) == 1;
     }
 
     /**
      * Computes the exit point of a ray from a cell based on the entry point to that cell and whether the
-     * neighbouring cells have atoms or not
+     * neighbouring cells have atoms or not, by looking it up in the precomputed RayTable
      *
-     * @param cell the cell that the ray is traversing
+     * @param board the Board containing the cell
+     * @param cell the index of the cell that the ray is traversing
      * @param entryPoint the entry point to the cell in the range 0 (for upper-left) to 5 (for left)
      * @return the exit point in the range 0 (for upper-left) to 5 (for left) or -1 for absorbed rays
      */
-    private static int computeExitPoint(Cell cell, int entryPoint) {
+    private static int computeExitPoint(Board board, int cell, int entryPoint) {
         // get the 3 neighbours opposite to the entry point in clockwise direction
-        Cell neighbour1 = cell.getNeighbours()[(entryPoint + 2) % 6];
-        Cell neighbour2 = cell.getNeighbours()[(entryPoint + 3) % 6];
-        Cell neighbour3 = cell.getNeighbours()[(entryPoint + 4) % 6];
-
-        boolean atomAtNeighbour1 =  neighbour1 != null && neighbour1.hasAtom();
-        boolean atomAtNeighbour2 =  neighbour2 != null && neighbour2.hasAtom();
-        boolean atomAtNeighbour3 =  neighbour3 != null && neighbour3.hasAtom();
-
-        // ray is absorbed
-        if(cell.hasAtom()) {
-            return -1;
-        }
-
-        // no atom encountered case or ray is absorbed on the next iteration
-        else if( !atomAtNeighbour1 && !atomAtNeighbour3) {
-            return (entryPoint + 3) % 6;
-        }
-
-        // ray is reflected
-        else if( atomAtNeighbour1 && atomAtNeighbour3) {
-            return entryPoint;
-        }
+        BoardTopology topology = board.getTopology();
+        int mask = atomBit(board, cell)
+                | atomBit(board, topology.getNeighbour(cell, (entryPoint + 2) % 6)) << 1
+                | atomBit(board, topology.getNeighbour(cell, (entryPoint + 3) % 6)) << 2
+                | atomBit(board, topology.getNeighbour(cell, (entryPoint + 4) % 6)) << 3;
 
-        // 60 degrees and 120 degrees deflection cases
-        // deflection to the left
-        else if( atomAtNeighbour3 ) {
-            if(atomAtNeighbour2) {  // 120 degrees
-                return (entryPoint + 1) % 6;
-            } else {                // 60 degrees
-                return (entryPoint + 2) % 6;
-            }
-        }
-
-        // deflection to the right
-        else {  // ( atomAtNeighbour1 )
-            if(atomAtNeighbour2) {  // 120 degrees
-                return (entryPoint + 5) % 6;
-            } else {                // 60 degrees
-                return (entryPoint + 4) % 6;
-            }
-        }
+        return RayTable.exitPoint(entryPoint, mask);
     }
 
-
-    /**
-     * Figures out the output point number (in the range 1-54) associated with the exit point
-     * (in the range 0 for upper-left to 5 for left) from the given cell, assuming the given cell
-     * is on the edge of the board
-     *
-     * @param last a cell on the edge of the board (the last on a ray's path)
-     * @param exitPoint the exit point from the given cell, in the range 0 for upper-left to 5 for left
-     * @return the output point from the board (in the range 1-54)
-     */
-    //
-    private static int cellToOutputPoint(Cell last, int exitPoint) {
-
-        if(exitPoint == 5) {     // exits through the left
-            return last.getRow() * 2 + 2;
-        }
-        if(exitPoint == 4) {     // exits through the lower-left
-            return (last.getRow() + last.getCol()) * 2 + 3;
-        }
-        if(exitPoint == 3) {     // exits through the lower-right
-            return last.getCol() * 2 + 20;
-        }
-        if(exitPoint == 2) {     // exits through the right
-            return 45 - last.getRow() * 2;
-        }
-        if(exitPoint == 1) {     // exits through the upper-right
-            return 54 - last.getCol() * 2;
-        }
-
-        // exits through the upper-left
-        if(last.getNeighbours()[5] == null) {    // left side ( + corner)
-            return last.getRow() * 2 + 1;
-        } else {                                 // upper side
-            return 55 - last.getCol() * 2;
-        }
+    // returns 1 if the cell with the given index (or -1 for no cell) contains an atom, and 0 otherwise
+    private static int atomBit(Board board, int cell) {
+        return cell != -1 && board.getCell(cell).hasAtom() ? 1 : 0;
     }
 
 }
-
-
-
@@ -0,0 +1,270 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Class that advises which ray to send next, given the results of the rays sent so far (the ray markers of a
+ * board). Every input point that has not been tested yet is scored by how many of the layouts that still agree with
+ * the results it is expected to rule out.
+ * <p>
+ * If n layouts agree with the results, and n_o of them send the ray entering at an input point to output point o,
+ * sending that ray leaves n_o layouts with probability n_o/n, so it is expected to leave sum(n_o^2)/n of them. The
+ * proportions n_o/n are estimated from a uniform random sample of the layouts. While few rays have been sent, most
+ * random layouts agree with them, so the sample is drawn by generating random layouts and keeping the ones that
+ * agree; once that keeps too few of them, the sample is drawn from all agreeing layouts found by a
+ * LayoutEnumerator. All rays are traced for every layout of the sample at once (see RayTable.processAll), so the
+ * rays whose paths connect two untested input points are only traced once for both, and the sample is split
+ * between all processors.
+ * <p>
+ * The time taken grows with the sample size; to answer within a frame, a time budget can be set, after which the
+ * sampling and tracing stop and the scores are estimated from the layouts traced so far.
+ */
+public class RayAdvisor {
+
+    // number of layouts used at most to estimate the scores
+    static final int DEFAULT_SAMPLE_SIZE = 2000;
+
+    // number of layouts traced together by one task
+    private static final int CHUNK_SIZE = 64;
+
+    // number of random layouts generated at most for each layout of the sample, before the sample is drawn by
+    // enumerating the layouts instead
+    static final int MAX_TRIES_PER_LAYOUT = 20;
+
+    // number of random layouts generated by one task
+    private static final int TRIES_CHUNK_SIZE = 4096;
+
+    // histograms are stored as counts[inputPoint * OUTPUTS + outputPoint + 1], for output points -1 to 54
+    private static final int OUTPUTS = BitBoard.NUM_PORTS + 2;
+    private static final int TRACED = (BitBoard.NUM_PORTS + 1) * OUTPUTS;
+
+    /**
+     * The score of an input point
+     *
+     * @param inputPoint the input point, in the range 1-54
+     * @param expectedRemaining the number of layouts expected to still agree with the results after sending the
+     *                          ray entering at the input point
+     * @param expectedReduction the number of layouts expected to be ruled out by sending that ray
+     */
+    public record Advice(int inputPoint, double expectedRemaining, double expectedReduction) {
+    }
+
+    private final int numAtoms;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private long seed;
+    private long timeBudget;    // nanoseconds, or 0 for no limit
+
+    /**
+     * Constructs an advisor for boards with the given number of atoms
+     * @param numAtoms the number of atoms, in the range 0-61
+     */
+    public RayAdvisor(int numAtoms) {
+        if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS) {
+            throw new IllegalArgumentException("Invalid number of atoms for RayAdvisor");
+        }
+        this.numAtoms = numAtoms;
+    }
+
+    /**
+     * Sets the number of layouts used at most to estimate the scores: larger samples give more accurate scores,
+     * but take longer to trace
+     * @param sampleSize the number of layouts, at least 1
+     * @param seed the seed used to choose the sample; the same seed and results give the same advice
+     */
+    public void setSample(int sampleSize, long seed) {
+        if(sampleSize < 1) {
+            throw new IllegalArgumentException("Invalid sample size for RayAdvisor");
+        }
+        this.sampleSize = sampleSize;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the time after which advise stops drawing and tracing the sample, scoring the input points from the
+     * layouts traced so far, so that it answers in about that time (for example 16 ms for a frame at 60 Hz). The
+     * scores are less accurate when few layouts could be drawn in time. At least one layout is always drawn, and
+     * the enumeration used once very few layouts agree is not stopped, since it is fast then. With a time budget,
+     * the same seed can give different advice.
+     * @param milliseconds the time budget, or 0 for no limit
+     */
+    public void setTimeBudget(long milliseconds) {
+        if(milliseconds < 0) {
+            throw new IllegalArgumentException("Invalid time budget for RayAdvisor");
+        }
+        this.timeBudget = milliseconds * 1_000_000;
+    }
+
+    /**
+     * Scores every input point not tested yet (neither as input nor output point of a ray marker)
+     *
+     * @param markers the ray markers of the rays sent so far (see Board.getRayMarkers)
+     * @return the scores of the untested input points, from the best (the most layouts ruled out) to the worst;
+     * empty if no layout agrees with the results
+     */
+    public ArrayList<Advice> advise(Collection<RayMarker> markers) {
+        long deadline = System.nanoTime() + timeBudget;
+        boolean[] tested = new boolean[BitBoard.NUM_PORTS + 1];
+        LayoutEnumerator enumerator = new LayoutEnumerator(numAtoms);
+        for(RayMarker marker : markers) {
+            tested[marker.inputPoint()] = true;
+            if(marker.outputPoint() != -1) {
+                tested[marker.outputPoint()] = true;
+            }
+            enumerator.addObservation(marker.inputPoint(), marker.outputPoint());
+        }
+
+        ArrayList<Advice> advice = new ArrayList<>();
+        LayoutEnumerator.Sample sample = sampleByRejection(markers, deadline);
+        if(sample == null) {
+            // the deductions are only needed here, where the cells deduced do not have to be searched
+            AtomDeducer deducer = new AtomDeducer(numAtoms);
+            markers.forEach(deducer::addMarker);
+            if(!deducer.isConsistent()) {
+                return advice;
+            }
+            enumerator.setKnownCells(deducer);
+            sample = enumerator.countAndSample(sampleSize, seed);
+        }
+        long[] layouts = sample.layouts();
+        if(layouts.length == 0) {
+            return advice;
+        }
+
+        long[] counts = histograms(layouts, tested, deadline);
+        long traced = counts[TRACED];
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            if(tested[inputPoint]) {
+                continue;
+            }
+            double sumOfSquares = 0;
+            for(int output = 0; output < OUTPUTS; output++) {
+                double fraction = (double) counts[inputPoint * OUTPUTS + output] / traced;
+                sumOfSquares += fraction * fraction;
+            }
+            double remaining = sample.count() * sumOfSquares;
+            advice.add(new Advice(inputPoint, remaining, sample.count() - remaining));
+        }
+        advice.sort(Comparator.comparingDouble(Advice::expectedRemaining).thenComparingInt(Advice::inputPoint));
+        return advice;
+    }
+
+    /**
+     * Scores every input point not tested yet on a board
+     * @param board a board of the standard size
+     * @return the scores, from the best input point to the worst (see advise)
+     */
+    public ArrayList<Advice> advise(Board board) {
+        return advise(board.getRayMarkers());
+    }
+
+    /**
+     * Draws the sample by generating random layouts and keeping the ones that agree with the markers. With a time
+     * budget, the layouts are generated until the deadline instead of up to MAX_TRIES_PER_LAYOUT per layout of the
+     * sample, since the enumeration cannot be stopped at the deadline, and the sample is cut short at the deadline.
+     * @return the sample, with the number of agreeing layouts estimated from the fraction of layouts kept, or null
+     * if too few layouts agree to fill the sample (or, with a time budget, to keep any of them by the deadline)
+     */
+    private LayoutEnumerator.Sample sampleByRejection(Collection<RayMarker> markers, long deadline) {
+        int[] inputPoints = markers.stream().mapToInt(RayMarker::inputPoint).toArray();
+        int[] outputPoints = markers.stream().mapToInt(RayMarker::outputPoint).toArray();
+        long maxTries = (long) sampleSize * MAX_TRIES_PER_LAYOUT;
+        int numChunks = (int) ((maxTries + TRIES_CHUNK_SIZE - 1) / TRIES_CHUNK_SIZE);
+
+        // the chunks are generated in rounds, which stop once the sample is full; each chunk has its own random
+        // generator, split off in chunk order, so the sample only depends on the seed
+        SplittableRandom root = new SplittableRandom(seed);
+        long[] layouts = new long[sampleSize];
+        int kept = 0;
+        long agreeing = 0;      // including the agreeing layouts left out of a full sample
+        long tries = 0;
+        int roundSize = Math.max(1, Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        for(int first = 0; (first < numChunks || timeBudget != 0) && kept < sampleSize; first += roundSize) {
+            int numRoundChunks = timeBudget != 0 ? roundSize : Math.min(roundSize, numChunks - first);
+            SplittableRandom[] randoms = new SplittableRandom[numRoundChunks];
+            for(int i = 0; i < numRoundChunks; i++) {
+                randoms[i] = root.split();
+            }
+            long[][] chunkLayouts = IntStream.range(0, numRoundChunks).parallel()
+                    .mapToObj(i -> keepAgreeing(randoms[i], inputPoints, outputPoints))
+                    .toArray(long[][]::new);
+            for(long[] chunk : chunkLayouts) {
+                int taken = Math.min(chunk.length, sampleSize - kept);
+                System.arraycopy(chunk, 0, layouts, kept, taken);
+                kept += taken;
+                agreeing += chunk.length;
+            }
+            tries += (long) numRoundChunks * TRIES_CHUNK_SIZE;
+            if(timeBudget != 0) {
+                long now = System.nanoTime();
+                if(kept > 0 && now - deadline >= 0) {
+                    layouts = Arrays.copyOf(layouts, kept);
+                    break;
+                }
+                // the layouts expected to agree by the deadline at the rate seen so far
+                double expected = agreeing + (double) agreeing * (deadline - now) / Math.max(1, now - start);
+                if(expected < 1) {
+                    return null;    // so few layouts agree that enumerating them is faster
+                }
+            } else if(kept < sampleSize && (double) agreeing * maxTries / tries < sampleSize) {
+                return null;    // too few layouts agree to fill the sample at the rate seen so far
+            }
+        }
+
+        if(kept < layouts.length) {
+            return null;
+        }
+        long estimatedCount = Math.round((double) LayoutCodec.count(numAtoms) * agreeing / tries);
+        return new LayoutEnumerator.Sample(Math.max(estimatedCount, 1), layouts);
+    }
+
+    // generates a chunk of random layouts, returning the ones that agree with the given ray results
+    private long[] keepAgreeing(SplittableRandom random, int[] inputPoints, int[] outputPoints) {
+        long[] kept = new long[TRIES_CHUNK_SIZE];
+        int numKept = 0;
+        for(int i = 0; i < TRIES_CHUNK_SIZE; i++) {
+            long atoms = LayoutGenerator.generate(numAtoms, random);
+            int ray = 0;
+            while(ray < inputPoints.length && RayTable.process(atoms, inputPoints[ray]) == outputPoints[ray]) {
+                ray++;
+            }
+            if(ray == inputPoints.length) {
+                kept[numKept++] = atoms;
+            }
+        }
+        return Arrays.copyOf(kept, numKept);
+    }
+
+    // checks whether the deadline (in System.nanoTime) of an advice has passed, if there is a time budget
+    private boolean isPast(long deadline) {
+        return timeBudget != 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    // counts for each untested input point how many of the layouts send its ray to each output point, and at
+    // index TRACED the number of layouts traced; the chunks not started before the deadline are left out, except
+    // for the first one
+    private long[] histograms(long[] layouts, boolean[] tested, long deadline) {
+        int numChunks = (layouts.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return IntStream.range(0, numChunks).parallel().mapToObj(chunk -> {
+            long[] counts = new long[TRACED + 1];
+            if(chunk > 0 && isPast(deadline)) {
+                return counts;
+            }
+            int end = Math.min(layouts.length, (chunk + 1) * CHUNK_SIZE);
+            for(int i = chunk * CHUNK_SIZE; i < end; i++) {
+                int[] signature = RayTable.processAll(layouts[i]);
+                for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                    if(!tested[inputPoint]) {
+                        counts[inputPoint * OUTPUTS + signature[inputPoint - 1] + 1]++;
+                    }
+                }
+            }
+            counts[TRACED] = end - chunk * CHUNK_SIZE;
+            return counts;
+        }).reduce((a, b) -> {
+            for(int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }).orElseThrow();
+    }
+}
@@ -0,0 +1,160 @@
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RayAdvisorTest {
+
+    private static final long LAYOUT = 1L << 5 | 1L << 30 | 1L << 44;
+    private static final int[] INPUT_POINTS = {3, 17, 29, 40, 51, 8};
+
+    private static ArrayList<RayMarker> markers(long atoms, int... inputPoints) {
+        ArrayList<RayMarker> markers = new ArrayList<>();
+        for(int inputPoint : inputPoints) {
+            markers.add(new RayMarker(inputPoint, RayTable.process(atoms, inputPoint), Color.GRAY));
+        }
+        return markers;
+    }
+
+    private static void assertSorted(List<RayAdvisor.Advice> advice) {
+        for(int i = 1; i < advice.size(); i++) {
+            assertTrue(advice.get(i - 1).expectedRemaining() <= advice.get(i).expectedRemaining());
+        }
+    }
+
+    @Test
+    void testNoRaysSent() {
+        RayAdvisor advisor = new RayAdvisor(4);
+        advisor.setSample(500, 3);
+        ArrayList<RayAdvisor.Advice> advice = advisor.advise(new ArrayList<>());
+        assertEquals(BitBoard.NUM_PORTS, advice.size());
+        assertSorted(advice);
+        for(RayAdvisor.Advice score : advice) {
+            assertTrue(score.expectedRemaining() > 0);
+            assertTrue(score.expectedReduction() > 0);
+            assertEquals(LayoutCodec.count(4), score.expectedRemaining() + score.expectedReduction(),
+                    LayoutCodec.count(4) * 0.2);
+        }
+    }
+
+    @Test
+    void testTestedPointsSkipped() {
+        ArrayList<RayMarker> markers = markers(LAYOUT, INPUT_POINTS);
+        ArrayList<Integer> tested = new ArrayList<>();
+        for(RayMarker marker : markers) {
+            tested.add(marker.inputPoint());
+            tested.add(marker.outputPoint());
+        }
+
+        ArrayList<RayAdvisor.Advice> advice = new RayAdvisor(3).advise(markers);
+        assertFalse(advice.isEmpty());
+        for(RayAdvisor.Advice score : advice) {
+            assertFalse(tested.contains(score.inputPoint()));
+        }
+        assertEquals(BitBoard.NUM_PORTS, advice.size() + tested.stream().filter(p -> p != -1).distinct().count());
+    }
+
+    // with few layouts left, the sample holds all of them, so the scores are exact
+    @Test
+    void testExactScores() {
+        ArrayList<RayMarker> markers = markers(LAYOUT, INPUT_POINTS);
+        ArrayList<Long> layouts = new ArrayList<>();
+        for(long rank = 0; rank < LayoutCodec.count(3); rank++) {
+            long atoms = LayoutCodec.unrank(rank, 3);
+            boolean agrees = true;
+            for(RayMarker marker : markers) {
+                agrees &= RayTable.process(atoms, marker.inputPoint()) == marker.outputPoint();
+            }
+            if(agrees) {
+                layouts.add(atoms);
+            }
+        }
+        assertTrue(layouts.size() > 1 && layouts.size() < RayAdvisor.DEFAULT_SAMPLE_SIZE);
+
+        for(RayAdvisor.Advice score : new RayAdvisor(3).advise(markers)) {
+            HashMap<Integer, Integer> histogram = new HashMap<>();
+            for(long atoms : layouts) {
+                histogram.merge(RayTable.process(atoms, score.inputPoint()), 1, Integer::sum);
+            }
+            double remaining = 0;
+            for(int n : histogram.values()) {
+                remaining += (double) n * n / layouts.size();
+            }
+            assertEquals(remaining, score.expectedRemaining(), 1e-9);
+            assertEquals(layouts.size() - remaining, score.expectedReduction(), 1e-9);
+        }
+    }
+
+    @Test
+    void testSolvedLayout() {
+        int[] inputPoints = new int[BitBoard.NUM_PORTS / 2];
+        for(int i = 0; i < inputPoints.length; i++) {
+            inputPoints[i] = 2 * i + 1;
+        }
+        long atoms = 1L << 12 | 1L << 40;
+        for(RayAdvisor.Advice score : new RayAdvisor(2).advise(markers(atoms, inputPoints))) {
+            assertEquals(1, score.expectedRemaining(), 1e-9);
+            assertEquals(0, score.expectedReduction(), 1e-9);
+        }
+    }
+
+    @Test
+    void testSameSeedSameAdvice() {
+        ArrayList<RayMarker> markers = markers(1L << 7 | 1L << 22 | 1L << 35 | 1L << 50, 9, 30);
+        RayAdvisor advisor = new RayAdvisor(4);
+        advisor.setSample(300, 8);
+        assertEquals(advisor.advise(markers), advisor.advise(markers));
+    }
+
+    // a sample that takes seconds to trace is cut short by the time budget of a frame, still scoring every
+    // untested input point
+    @Test
+    void testTimeBudget() {
+        ArrayList<RayMarker> markers = markers(1L << 7 | 1L << 22 | 1L << 35 | 1L << 44 | 1L << 50 | 1L << 58, 9, 30);
+        RayAdvisor advisor = new RayAdvisor(6);
+        advisor.setSample(200_000, 4);
+        advisor.setTimeBudget(16);
+        advisor.advise(markers);    // warm up
+
+        long start = System.nanoTime();
+        ArrayList<RayAdvisor.Advice> advice = advisor.advise(markers);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsed < 250, elapsed + " ms");
+        long tested = markers.stream().flatMapToInt(marker -> IntStream.of(marker.inputPoint(), marker.outputPoint()))
+                .filter(point -> point != -1).distinct().count();
+        assertEquals(BitBoard.NUM_PORTS - tested, advice.size());
+        assertSorted(advice);
+        for(RayAdvisor.Advice score : advice) {
+            assertTrue(score.expectedRemaining() >= 0 && score.expectedReduction() >= 0);
+        }
+    }
+
+    @Test
+    void testInconsistentMarkers() {
+        ArrayList<RayMarker> markers = markers(LAYOUT, INPUT_POINTS);
+        markers.add(new RayMarker(markers.get(0).inputPoint(), markers.get(0).outputPoint() == -1 ? 1 : -1, Color.BLACK));
+        assertTrue(new RayAdvisor(3).advise(markers).isEmpty());
+    }
+
+    @Test
+    void testBoard() {
+        Board board = new BitBoard(LAYOUT).toBoard();
+        for(int inputPoint : INPUT_POINTS) {
+            board.addRayMarker(inputPoint, Ray.process(board, inputPoint));
+        }
+        assertEquals(new RayAdvisor(3).advise(markers(LAYOUT, INPUT_POINTS)), new RayAdvisor(3).advise(board));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new RayAdvisor(-1));
+        assertThrows(IllegalArgumentException.class, () -> new RayAdvisor(BitBoard.NUM_CELLS + 1));
+        assertThrows(IllegalArgumentException.class, () -> new RayAdvisor(3).setSample(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RayAdvisor(3).setTimeBudget(-1));
+    }
+}
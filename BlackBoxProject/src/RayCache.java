@@ -0,0 +1,171 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class that models a bounded cache of board signatures (the output points of the rays entering at all 54 input
+ * points, see Ray.processAll), keyed by the atom configuration of a standard board. Only the signature of the
+ * canonical form of each configuration is stored (see BoardSymmetry.canonicalize), so the 12 rotations and
+ * reflections of a configuration share a single entry. When the cache is full, the least recently used
+ * signature is evicted. The cache keeps count of its hits and misses, and can be
+ * saved to a file and loaded back, so that it survives restarts. All methods are thread-safe.
+ */
+public class RayCache {
+
+    private final int capacity;
+
+    // canonical atom masks of bit boards mapped to their signatures, in least recently used order
+    private final LinkedHashMap<Long, int[]> signatures;
+
+    private final BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs an empty cache
+     * @param capacity the maximum number of signatures kept in the cache
+     */
+    public RayCache(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity for RayCache");
+        }
+
+        this.capacity = capacity;
+        this.signatures = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > RayCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the output point of a ray entering the given board at the given input point. A single ray is
+     * traced by RayTable in less time than it takes to canonicalize the board, let alone trace the whole
+     * signature on a miss, so this method does not use the cache (and is not counted as a hit or a miss). Unlike
+     * Ray.process, this method does not modify the board.
+     *
+     * @param board a Board of standard size
+     * @param inputPoint the input point of the ray, in the range 1-54
+     * @return the number of the output point for rays that exit the board or -1 for absorbed rays
+     */
+    public int process(Board board, int inputPoint) {
+        if(inputPoint < 1 || inputPoint > BitBoard.NUM_PORTS) {
+            throw new IllegalArgumentException("Invalid argument to RayCache.process");
+        }
+        return RayTable.process(BitBoard.fromBoard(board).atoms(), inputPoint);
+    }
+
+    /**
+     * Returns the signature of a bit board, looking it up in the cache if possible
+     * @param bitBoard the bit board to get the signature of
+     * @return a copy of the signature, with the output point of the ray entering at input point i at index i-1
+     */
+    public int[] getSignature(BitBoard bitBoard) {
+        if(bitBoard == null) {
+            throw new IllegalArgumentException("Invalid argument to RayCache.getSignature");
+        }
+        BoardSymmetry.Canonical canonical = symmetry.canonicalize(bitBoard.atoms());
+        int[] signature = lookup(canonical.atoms());
+        return symmetry.transformSignature(symmetry.inverse(canonical.transform()), signature);
+    }
+
+    // returns the cached signature for the given canonical atoms, computing and caching it in case of a miss
+    private synchronized int[] lookup(long atoms) {
+        int[] signature = signatures.get(atoms);
+        if(signature != null) {
+            hits++;
+        } else {
+            misses++;
+            signature = RayTable.processAll(atoms);
+            signatures.put(atoms, signature);
+        }
+        return signature;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return signatures.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Attempts to save the contents of this cache to the file with the given filename, overwriting it. Entries are
+     * saved from the least to the most recently used, so that loading them back keeps the eviction order.
+     *
+     * @param filename the file to save the cache to
+     * @return 0 for success, -1 for error
+     */
+    public synchronized int save(String filename) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(signatures.size());
+            for(Map.Entry<Long, int[]> entry : signatures.entrySet()) {
+                out.writeLong(entry.getKey());
+                for(int outputPoint : entry.getValue()) {
+                    out.writeByte(outputPoint);
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Attempts to load the entries saved in the file with the given filename into this cache (keeping the
+     * entries already in the cache, unless they have to be evicted to make space). Hit and miss counts
+     * are not affected. The entries are only added once the whole file has been read, so the cache is left
+     * unchanged if loading fails.
+     *
+     * @param filename the file to load the cache from
+     * @return 0 for success, 1 for cache file formatting error, 2 for general file error
+     */
+    public synchronized int load(String filename) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            int numEntries = in.readInt();
+            if(numEntries < 0) {
+                return 1;
+            }
+
+            ArrayList<Long> layouts = new ArrayList<>();
+            ArrayList<int[]> loadedSignatures = new ArrayList<>();
+            for(int i = 0; i < numEntries; i++) {
+                long atoms = in.readLong();
+                int[] signature = new int[BitBoard.NUM_PORTS];
+                for(int j = 0; j < signature.length; j++) {
+                    signature[j] = in.readByte();
+                    if(signature[j] < -1 || signature[j] == 0 || signature[j] > BitBoard.NUM_PORTS) {
+                        return 1;
+                    }
+                }
+                BoardSymmetry.Canonical canonical = symmetry.canonicalize(new BitBoard(atoms).atoms());
+                layouts.add(canonical.atoms());
+                loadedSignatures.add(symmetry.transformSignature(canonical.transform(), signature));
+            }
+
+            if(in.read() != -1) {   // trailing data
+                return 1;
+            }
+            for(int i = 0; i < layouts.size(); i++) {
+                signatures.put(layouts.get(i), loadedSignatures.get(i));
+            }
+        } catch (EOFException | IllegalArgumentException e) {   // truncated file or invalid atom mask
+            return 1;
+        } catch (IOException e) {
+            return 2;
+        }
+        return 0;
+    }
+}
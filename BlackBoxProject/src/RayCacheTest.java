@@ -0,0 +1,145 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RayCacheCountTest {
+    RayCache cache;
+    Board board;
+
+    // test fixture
+    @BeforeEach
+    void constructCache() {
+        cache = new RayCache(2);
+        board = new Board();
+        Cell[][] cells = board.getCells();
+        cells[2][0].setAtom();
+        cells[4][4].setAtom();
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        BitBoard bitBoard = BitBoard.fromBoard(board);
+        cache.getSignature(bitBoard);
+        cache.getSignature(bitBoard);
+        cache.getSignature(bitBoard);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void testProcess() {
+        assertEquals(50, cache.process(board, 15));
+        assertEquals(33, cache.process(board, 14));
+        assertEquals(-1, cache.process(board, 11));
+
+        // single rays are traced without the cache
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses() + cache.getHits());
+    }
+
+    @Test
+    void testSignature() {
+        assertArrayEquals(Ray.processAll(board), cache.getSignature(BitBoard.fromBoard(board)));
+    }
+
+    @Test
+    void testSymmetricBoards() {
+        BoardSymmetry symmetry = BoardSymmetry.of(Board.BOARD_SIZE);
+        long atoms = BitBoard.fromBoard(board).atoms();
+        cache.getSignature(new BitBoard(atoms));
+
+        // every rotation and reflection of the board is answered from the same entry
+        for(int t = 0; t < BoardSymmetry.NUM_TRANSFORMS; t++) {
+            BitBoard transformed = new BitBoard(symmetry.transformAtoms(t, atoms));
+            assertArrayEquals(Ray.processAll(transformed.toBoard()), cache.getSignature(transformed));
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testEviction() {
+        BitBoard first = new BitBoard(1);
+        BitBoard second = new BitBoard(2);
+        BitBoard third = new BitBoard(4);
+
+        cache.getSignature(first);
+        cache.getSignature(second);
+        cache.getSignature(first);      // second is now the least recently used
+        cache.getSignature(third);
+        assertEquals(2, cache.size());
+
+        cache.getSignature(first);
+        assertEquals(3, cache.getMisses());     // first was kept
+        cache.getSignature(second);
+        assertEquals(4, cache.getMisses());     // second was evicted
+    }
+}
+
+class RayCacheFileTest {
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        File file = File.createTempFile("raycache", ".bin");
+        file.deleteOnExit();
+
+        RayCache cache = new RayCache(10);
+        BitBoard bitBoard = new BitBoard(0).withAtom(3, 1).withAtom(6, 3);
+        int[] signature = cache.getSignature(bitBoard);
+        assertEquals(0, cache.save(file.getPath()));
+
+        RayCache loaded = new RayCache(10);
+        assertEquals(0, loaded.load(file.getPath()));
+        assertEquals(1, loaded.size());
+        assertArrayEquals(signature, loaded.getSignature(bitBoard));
+        assertEquals(1, loaded.getHits());
+        assertEquals(0, loaded.getMisses());
+    }
+
+    @Test
+    void testLoadBadFormat() throws IOException {
+        File file = File.createTempFile("raycache", ".bin");
+        file.deleteOnExit();
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(1);
+            out.writeLong(5);   // entry is missing its signature
+        }
+
+        assertEquals(1, new RayCache(10).load(file.getPath()));
+    }
+
+    @Test
+    void testLoadTruncatedFile() throws IOException {
+        File file = File.createTempFile("raycache", ".bin");
+        file.deleteOnExit();
+
+        RayCache saved = new RayCache(10);
+        BitBoard first = new BitBoard(0).withAtom(3, 1);
+        BitBoard second = new BitBoard(0).withAtom(6, 3);
+        saved.getSignature(first);
+        saved.getSignature(second);
+        assertEquals(0, saved.save(file.getPath()));
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 1);    // the second entry is cut short
+        }
+
+        // the first entry is read, but not added
+        RayCache cache = new RayCache(10);
+        BitBoard other = new BitBoard(0).withAtom(1, 1);
+        cache.getSignature(other);
+        assertEquals(1, cache.load(file.getPath()));
+        assertEquals(1, cache.size());
+        cache.getSignature(first);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testLoadMissingFile() {
+        assertEquals(2, new RayCache(10).load("missing_directory/raycache.bin"));
+    }
+}
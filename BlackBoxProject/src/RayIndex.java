@@ -0,0 +1,147 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that keeps the output points of the rays entering a board at every input point up to date while atoms
+ * are added to and removed from the board, for checking hypotheses about atom locations against observed rays.
+ * It keeps a reverse index from each cell to the rays passing through its area of influence (the cell itself and
+ * its neighbours), so that toggling an atom only re-traces the rays it can affect.
+ */
+public class RayIndex {
+
+    private final Board board;
+
+    // signature[i-1] stores the current output point of the ray entering at input point i
+    private final int[] signature;
+
+    // influences[i-1] stores the indices of the cells whose atoms were read while tracing the ray entering at input
+    // point i: the cells on its path and their neighbours (a cell may appear more than once)
+    private final int[][] influences;
+
+    // rayBits[index*words + w] is word w of the bit set of input points (bit i-1 for input point i) whose rays pass
+    // through the area of influence of the cell with the given index
+    private final long[] rayBits;
+    private final int words;
+
+    private final int[] path;   // reusable path buffer for Ray.trace
+
+    /**
+     * Constructs the ray index of a board, tracing the rays entering the board at every input point
+     * @param board the board to index; from now on, atoms should only be toggled on it through toggleAtom
+     */
+    public RayIndex(Board board) {
+        if(board == null) {
+            throw new IllegalArgumentException("Invalid argument to RayIndex constructor");
+        }
+
+        this.board = board;
+        int numInputPoints = board.getNumInputPoints();
+        signature = new int[numInputPoints];
+        influences = new int[numInputPoints][];
+        words = (numInputPoints + 63) / 64;
+        rayBits = new long[board.getNumCells() * words];
+        path = new int[board.getNumCells() * 6 + 1];    // a ray can enter each cell at most once through each side
+
+        for(int inputPoint = 1; inputPoint <= numInputPoints; inputPoint++) {
+            retrace(inputPoint);
+        }
+    }
+
+    /**
+     * Places an atom in the cell at the given row and column if it is empty, or removes the atom from it otherwise,
+     * and updates the output points of the rays affected by the change
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the input points whose output points changed, in increasing order
+     */
+    public int[] toggleAtom(int row, int col) {
+        Cell cell = board.getCells()[row][col];
+        if(cell.hasAtom()) {
+            cell.removeAtom();
+        } else {
+            cell.setAtom();
+        }
+
+        // copy the affected rays first, as re-tracing them changes the index
+        int cellIndex = board.cellIndex(row, col);
+        long[] affected = Arrays.copyOfRange(rayBits, cellIndex * words, (cellIndex + 1) * words);
+
+        int[] changed = new int[signature.length];
+        int numChanged = 0;
+        for(int w = 0; w < words; w++) {
+            for(long bits = affected[w]; bits != 0; bits &= bits - 1) {
+                int inputPoint = w * 64 + Long.numberOfTrailingZeros(bits) + 1;
+                int oldOutputPoint = signature[inputPoint - 1];
+                if(retrace(inputPoint) != oldOutputPoint) {
+                    changed[numChanged++] = inputPoint;
+                }
+            }
+        }
+        return Arrays.copyOf(changed, numChanged);
+    }
+
+    /**
+     * Compares the current output points with observed rays
+     * @param rayMarkers the observed rays, for example the ray markers of another board
+     * @return the input points of the ray markers whose output point differs from the current one on this board
+     */
+    public int[] getMismatches(List<RayMarker> rayMarkers) {
+        return rayMarkers.stream()
+                .filter(rayMarker -> signature[rayMarker.inputPoint() - 1] != rayMarker.outputPoint())
+                .mapToInt(RayMarker::inputPoint)
+                .toArray();
+    }
+
+    /**
+     * @return a copy of the current signature of the board (see Ray.processAll)
+     */
+    public int[] getSignature() {
+        return signature.clone();
+    }
+
+    public int getOutputPoint(int inputPoint) {
+        return signature[inputPoint - 1];
+    }
+
+    // traces the ray entering at the given input point again, and updates the index with its new path
+    private int retrace(int inputPoint) {
+        int bit = inputPoint - 1;
+        long bitMask = 1L << (bit % 64);
+
+        if(influences[bit] != null) {
+            for(int cellIndex : influences[bit]) {
+                rayBits[cellIndex * words + bit / 64] &= ~bitMask;
+            }
+        }
+
+        int outputPoint = Ray.trace(board, inputPoint, path);
+        signature[bit] = outputPoint;
+
+        // the cells of the path, plus the cell where the ray enters the board (the only cell on the path of rays
+        // reflected on the edge), each followed by its 6 neighbours
+        int[] influence = new int[(path[0] + 1) * 7];
+        int size = addInfluence(influence, 0, board.getTopology().getInputCell(inputPoint));
+        for(int i = 1; i <= path[0]; i++) {
+            size = addInfluence(influence, size, RaySegment.cellIndexOf(path[i]));
+        }
+        influences[bit] = Arrays.copyOf(influence, size);
+
+        for(int cellIndex : influences[bit]) {
+            rayBits[cellIndex * words + bit / 64] |= bitMask;
+        }
+        return outputPoint;
+    }
+
+    // adds a cell and its neighbours to the given influence array, returning its new size
+    private int addInfluence(int[] influence, int size, int cellIndex) {
+        influence[size++] = cellIndex;
+        for(int position = 0; position < 6; position++) {
+            int neighbour = board.getTopology().getNeighbour(cellIndex, position);
+            if(neighbour != -1) {
+                influence[size++] = neighbour;
+            }
+        }
+        return size;
+    }
+}
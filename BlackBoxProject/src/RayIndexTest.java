@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RayIndexTest {
+    Board board;
+    RayIndex rayIndex;
+
+    // test fixture
+    @BeforeEach
+    void constructIndex() {
+        board = new Board();
+        Cell[][] cells = board.getCells();
+        cells[6][1].setAtom();
+        cells[1][1].setAtom();
+        cells[5][5].setAtom();
+        rayIndex = new RayIndex(board);
+    }
+
+    @Test
+    void testToggleAtom() {
+        int[] before = Ray.processAll(board);
+        int[] changed = rayIndex.toggleAtom(7, 3);
+        int[] after = Ray.processAll(board);
+
+        assertTrue(board.getCells()[7][3].hasAtom());
+        assertArrayEquals(after, rayIndex.getSignature());
+
+        ArrayList<Integer> expected = new ArrayList<>();
+        for(int inputPoint = 1; inputPoint <= 54; inputPoint++) {
+            if(before[inputPoint - 1] != after[inputPoint - 1]) {
+                expected.add(inputPoint);
+            }
+        }
+        assertEquals(expected.size(), changed.length);
+        for(int inputPoint : changed) {
+            assertTrue(expected.contains(inputPoint));
+        }
+
+        // toggling the same cell again restores the original signature
+        rayIndex.toggleAtom(7, 3);
+        assertFalse(board.getCells()[7][3].hasAtom());
+        assertArrayEquals(before, rayIndex.getSignature());
+    }
+
+    @Test
+    void testMismatches() {
+        Board observed = new Board();
+        Cell[][] cells = observed.getCells();
+        cells[6][1].setAtom();
+        cells[1][1].setAtom();
+        cells[5][5].setAtom();
+        cells[7][3].setAtom();
+        observed.addRayMarker(40, Ray.process(observed, 40));
+        observed.addRayMarker(24, Ray.process(observed, 24));
+
+        // ray 24 is deflected by the atom at (7, 3), which is missing from the hypothesis
+        assertArrayEquals(new int[] {24}, rayIndex.getMismatches(observed.getRayMarkers()));
+        rayIndex.toggleAtom(7, 3);
+        assertEquals(0, rayIndex.getMismatches(observed.getRayMarkers()).length);
+    }
+
+    @Test
+    void testRandomToggles() {
+        Board largeBoard = new Board(21);
+        largeBoard.generateAtoms(30);
+        RayIndex largeIndex = new RayIndex(largeBoard);
+        Random random = new Random(26);
+
+        for(int i = 0; i < 100; i++) {
+            int row = random.nextInt(21);
+            largeIndex.toggleAtom(row, random.nextInt(largeBoard.getCells()[row].length));
+            assertArrayEquals(Ray.processAll(largeBoard), largeIndex.getSignature());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Class that stores the paths of the rays sent into a board, for the final display of the rays. The ray segments
+ * are packed into ints (see RaySegment.pack) and stored one ray after another in a single growable array, so
+ * that storing a path allocates nothing in the common case and cells that no ray passes through take no space.
+ */
+public class RayPaths {
+
+    // the packed ray segments of all rays, grouped by ray in the order in which the rays were sent
+    private int[] segments = new int[64];
+    private int numSegments;
+
+    // rayStarts[r] stores the position in segments of the first segment of ray r, and inputPoints[r] the input
+    // point the ray was sent from
+    private int[] rayStarts = new int[8];
+    private int[] inputPoints = new int[8];
+    private int numRays;
+
+    /**
+     * Starts the path of a new ray; the segments added after this call belong to this ray
+     * @param inputPoint the input point the ray is sent from
+     */
+    public void startRay(int inputPoint) {
+        if(numRays == rayStarts.length) {
+            rayStarts = Arrays.copyOf(rayStarts, numRays * 2);
+            inputPoints = Arrays.copyOf(inputPoints, numRays * 2);
+        }
+        rayStarts[numRays] = numSegments;
+        inputPoints[numRays] = inputPoint;
+        numRays++;
+    }
+
+    /**
+     * Adds a segment to the path of the last ray started
+     * @param packedSegment a ray segment packed with RaySegment.pack
+     */
+    public void addSegment(int packedSegment) {
+        if(numRays == 0) {
+            throw new IllegalStateException("No ray started");
+        }
+        if(numSegments == segments.length) {
+            segments = Arrays.copyOf(segments, numSegments * 2);
+        }
+        segments[numSegments++] = packedSegment;
+    }
+
+    /**
+     * Removes all ray paths, keeping the allocated space for reuse
+     */
+    public void clear() {
+        numSegments = 0;
+        numRays = 0;
+    }
+
+    public int getNumRays() {
+        return numRays;
+    }
+
+    /**
+     * @return the total number of segments of all rays
+     */
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    /**
+     * @param position a position in the range 0 to getNumSegments() - 1
+     * @return the packed segment at the given position
+     */
+    public int getSegment(int position) {
+        return segments[position];
+    }
+
+    /**
+     * @param ray the number of a ray, in the order in which the rays were started from 0
+     * @return the position of the first segment of the ray
+     */
+    public int getRayStart(int ray) {
+        return rayStarts[ray];
+    }
+
+    /**
+     * @param ray the number of a ray, in the order in which the rays were started from 0
+     * @return the position after the last segment of the ray
+     */
+    public int getRayEnd(int ray) {
+        return ray + 1 < numRays ? rayStarts[ray + 1] : numSegments;
+    }
+
+    public int getInputPoint(int ray) {
+        return inputPoints[ray];
+    }
+
+    /**
+     * Collects the segments of all rays passing through a cell
+     * @param cellIndex the index of the cell
+     * @return the ray segments through the cell, in the order in which they were added
+     */
+    public ArrayList<RaySegment> getSegments(int cellIndex) {
+        ArrayList<RaySegment> cellSegments = new ArrayList<>();
+        for(int i = 0; i < numSegments; i++) {
+            if(RaySegment.cellIndexOf(segments[i]) == cellIndex) {
+                cellSegments.add(RaySegment.unpack(segments[i]));
+            }
+        }
+        return cellSegments;
+    }
+}
@@ -14,4 +14,29 @@
  */
 public record RaySegment(int entryPoint, int exitPoint) {
 
+    /*
+    Ray segments can also be packed into a single int, together with the index of the cell they pass through
+    (see Board.cellIndex), for code that has to store ray paths without allocating objects:
+    bits 0-2 store exitPoint + 1, bits 3-5 store entryPoint and the remaining bits store the cell index
+     */
+
+    public static int pack(int cellIndex, int entryPoint, int exitPoint) {
+        return cellIndex << 6 | entryPoint << 3 | (exitPoint + 1);
+    }
+
+    public static int cellIndexOf(int packedSegment) {
+        return packedSegment >>> 6;
+    }
+
+    public static int entryPointOf(int packedSegment) {
+        return packedSegment >>> 3 & 7;
+    }
+
+    public static int exitPointOf(int packedSegment) {
+        return (packedSegment & 7) - 1;
+    }
+
+    public static RaySegment unpack(int packedSegment) {
+        return new RaySegment(entryPointOf(packedSegment), exitPointOf(packedSegment));
+    }
 }
@@ -0,0 +1,285 @@
+/**
+ * Class that contains the precomputed lookup tables used for ray processing, together with a ray engine for
+ * bit boards that only consists of table lookups. The deflection rules are evaluated once for every possible
+ * neighbourhood of a cell when the tables are built, instead of once for every cell a ray passes through.
+ */
+public class RayTable {
+
+    /*
+    The local neighbourhood of a cell, as seen by a ray entering it at a certain entry point, is encoded as a 4-bit
+    atom mask:
+    - bit 0 is set if the cell itself contains an atom
+    - bits 1, 2 and 3 are set if the 3 neighbours opposite to the entry point, in clockwise direction (at positions
+      entryPoint+2, entryPoint+3 and entryPoint+4) contain atoms
+     */
+    private static final int CELL = 1;
+    private static final int NEIGHBOUR1 = 2;
+    private static final int NEIGHBOUR2 = 4;
+    private static final int NEIGHBOUR3 = 8;
+
+    // EXIT_POINTS[entryPoint*16 + mask] stores the exit point from any cell (or -1 for absorbed rays)
+    private static final int[] EXIT_POINTS = new int[6 * 16];
+
+    /*
+    Tables for the bit board engine, where the state of a ray is encoded as cellIndex*6 + entryPoint:
+    - MASK_CELLS[state*4 + i] stores the indices of the cells read for bit i of the atom mask of that state.
+      Missing neighbours are stored as 63, a bit which is never set in a bit board, so gathering the mask
+      needs no checks
+    - STEPS[state*16 + mask] stores the next state of the ray, or, if the ray leaves the board or is absorbed,
+      -2 - outputPoint (so -1 for absorbed rays and values below -2 for rays that exit the board)
+    - EDGE_CELLS[inputPoint*3 + i] stores the indices of the 3 cells checked for the edge of the board case
+     */
+    private static final int NO_CELL = 63;
+    private static final int[] MASK_CELLS = new int[BitBoard.NUM_CELLS * 6 * 4];
+    private static final int[] STEPS = new int[BitBoard.NUM_CELLS * 6 * 16];
+    private static final int[] EDGE_CELLS = new int[(BitBoard.NUM_PORTS + 1) * 3];
+
+    /*
+    Tables for tracing rays on partially known layouts (see traceKnown):
+    - READ_MASKS[state] has a bit set for each cell read in that state (including bit 63 for missing neighbours)
+    - EDGE_MASKS[inputPoint] has a bit set for each cell checked for the edge of the board case
+     */
+    static final long NO_CELL_BIT = 1L << NO_CELL;
+    // the state of a ray before the edge of the board case of its input point is known (see advanceKnown)
+    static final int EDGE_STATE = Integer.MAX_VALUE;
+    private static final long[] READ_MASKS = new long[BitBoard.NUM_CELLS * 6];
+    private static final long[] EDGE_MASKS = new long[BitBoard.NUM_PORTS + 1];
+
+    static {
+        for(int entryPoint = 0; entryPoint < 6; entryPoint++) {
+            for(int mask = 0; mask < 16; mask++) {
+                EXIT_POINTS[entryPoint * 16 + mask] = computeExitPoint(entryPoint, mask);
+            }
+        }
+
+        for(int cell = 0; cell < BitBoard.NUM_CELLS; cell++) {
+            for(int entryPoint = 0; entryPoint < 6; entryPoint++) {
+                int state = cell * 6 + entryPoint;
+
+                MASK_CELLS[state * 4] = cell;
+                for(int i = 1; i <= 3; i++) {
+                    MASK_CELLS[state * 4 + i] = neighbourOrNone(cell, (entryPoint + i + 1) % 6);
+                }
+                for(int i = 0; i < 4; i++) {
+                    READ_MASKS[state] |= 1L << MASK_CELLS[state * 4 + i];
+                }
+
+                for(int mask = 0; mask < 16; mask++) {
+                    int exitPoint = EXIT_POINTS[entryPoint * 16 + mask];
+                    int step;
+                    if(exitPoint == -1) {
+                        step = -1;
+                    } else if(BitBoard.NEIGHBOURS[cell * 6 + exitPoint] == -1) {
+                        step = -2 - BitBoard.OUTPUT_POINTS[cell * 6 + exitPoint];
+                    } else {
+                        step = BitBoard.NEIGHBOURS[cell * 6 + exitPoint] * 6 + (exitPoint + 3) % 6;
+                    }
+                    STEPS[state * 16 + mask] = step;
+                }
+            }
+        }
+
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            int cell = BitBoard.INPUT_CELLS[inputPoint];
+            int entryPoint = BitBoard.ENTRY_POINTS[inputPoint];
+            EDGE_CELLS[inputPoint * 3] = cell;
+            EDGE_CELLS[inputPoint * 3 + 1] = neighbourOrNone(cell, (entryPoint + 5) % 6);
+            EDGE_CELLS[inputPoint * 3 + 2] = neighbourOrNone(cell, (entryPoint + 1) % 6);
+            for(int i = 0; i < 3; i++) {
+                EDGE_MASKS[inputPoint] |= 1L << EDGE_CELLS[inputPoint * 3 + i];
+            }
+            EDGE_MASKS[inputPoint] &= ~NO_CELL_BIT;
+        }
+    }
+
+    private static int neighbourOrNone(int cell, int position) {
+        int neighbour = BitBoard.NEIGHBOURS[cell * 6 + position];
+        return neighbour == -1 ? NO_CELL : neighbour;
+    }
+
+    /**
+     * Contains the deflection rules of the game: computes the exit point of a ray from a cell based on the entry
+     * point to that cell and the atoms in its local neighbourhood. Only used to fill in the lookup tables.
+     *
+     * @param entryPoint the entry point to the cell in the range 0 (for upper-left) to 5 (for left)
+     * @param mask the atom mask of the cell's neighbourhood (see the encoding above)
+     * @return the exit point in the range 0 (for upper-left) to 5 (for left) or -1 for absorbed rays
+     */
+    private static int computeExitPoint(int entryPoint, int mask) {
+        boolean atomAtNeighbour1 = (mask & NEIGHBOUR1) != 0;
+        boolean atomAtNeighbour2 = (mask & NEIGHBOUR2) != 0;
+        boolean atomAtNeighbour3 = (mask & NEIGHBOUR3) != 0;
+
+        // ray is absorbed
+        if((mask & CELL) != 0) {
+            return -1;
+        }
+
+        // no atom encountered case or ray is absorbed on the next iteration
+        else if( !atomAtNeighbour1 && !atomAtNeighbour3) {
+            return (entryPoint + 3) % 6;
+        }
+
+        // ray is reflected
+        else if( atomAtNeighbour1 && atomAtNeighbour3) {
+            return entryPoint;
+        }
+
+        // 60 degrees and 120 degrees deflection cases
+        // deflection to the left
+        else if( atomAtNeighbour3 ) {
+            if(atomAtNeighbour2) {  // 120 degrees
+                return (entryPoint + 1) % 6;
+            } else {                // 60 degrees
+                return (entryPoint + 2) % 6;
+            }
+        }
+
+        // deflection to the right
+        else {  // ( atomAtNeighbour1 )
+            if(atomAtNeighbour2) {  // 120 degrees
+                return (entryPoint + 5) % 6;
+            } else {                // 60 degrees
+                return (entryPoint + 4) % 6;
+            }
+        }
+    }
+
+    /**
+     * Looks up the exit point of a ray from a cell
+     *
+     * @param entryPoint the entry point to the cell in the range 0 (for upper-left) to 5 (for left)
+     * @param mask the atom mask of the cell's neighbourhood, as seen from the entry point
+     * @return the exit point in the range 0 (for upper-left) to 5 (for left) or -1 for absorbed rays
+     */
+    static int exitPoint(int entryPoint, int mask) {
+        return EXIT_POINTS[entryPoint * 16 + mask];
+    }
+
+    /**
+     * Processes a ray on the atoms of a bit board, giving the same output point as Ray.process would on a
+     * Board with the same atoms. This method has no side effects.
+     *
+     * @param atoms the atom mask of a bit board
+     * @param inputPoint the input point of the ray, in the range 1-54
+     * @return the number of the output point for rays that exit the board or -1 for absorbed rays
+     */
+    public static int process(long atoms, int inputPoint) {
+
+        if(inputPoint < 1 || inputPoint > BitBoard.NUM_PORTS) {
+            throw new IllegalArgumentException("Invalid argument to RayTable.process");
+        }
+
+        // edge of the board case, see Ray.isReflectedOnEdge
+        int edge = inputPoint * 3;
+        if(((atoms >>> EDGE_CELLS[edge] | atoms >>> EDGE_CELLS[edge + 1] | atoms >>> EDGE_CELLS[edge + 2]) & 1) != 0) {
+            return inputPoint;
+        }
+
+        int state = BitBoard.INPUT_CELLS[inputPoint] * 6 + BitBoard.ENTRY_POINTS[inputPoint];
+        while(state >= 0) {
+            int cells = state * 4;
+            int mask = (int) (atoms >>> MASK_CELLS[cells] & 1)
+                    | (int) (atoms >>> MASK_CELLS[cells + 1] & 1) << 1
+                    | (int) (atoms >>> MASK_CELLS[cells + 2] & 1) << 2
+                    | (int) (atoms >>> MASK_CELLS[cells + 3] & 1) << 3;
+            state = STEPS[state * 16 + mask];
+        }
+
+        return -2 - state;
+    }
+
+    /**
+     * Processes the rays entering a bit board at every input point, tracing each pair of input points connected
+     * by a ray only once (see Ray.processAll)
+     *
+     * @param atoms the atom mask of a bit board
+     * @return the signature of the board: the element at index i-1 is the output point of the ray entering at
+     * input point i (or -1 if that ray is absorbed)
+     */
+    public static int[] processAll(long atoms) {
+        int[] signature = new int[BitBoard.NUM_PORTS];
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            if(signature[inputPoint - 1] == 0) {
+                int outputPoint = process(atoms, inputPoint);
+                signature[inputPoint - 1] = outputPoint;
+                if(outputPoint != -1) {
+                    signature[outputPoint - 1] = inputPoint;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return the state (cellIndex*6 + entryPoint) of a ray entering the board at the given input point, once it
+     * is known not to be reflected on the edge of the board
+     */
+    static int startState(int inputPoint) {
+        return BitBoard.INPUT_CELLS[inputPoint] * 6 + BitBoard.ENTRY_POINTS[inputPoint];
+    }
+
+    /**
+     * @return the atom mask of the cells checked for the edge of the board case of the given input point: the
+     * ray is reflected right away if any of them contains an atom
+     */
+    static long edgeMask(int inputPoint) {
+        return EDGE_MASKS[inputPoint];
+    }
+
+    /**
+     * @return the atom mask of the cells read by a ray in the given state (see startState), including NO_CELL_BIT
+     * if the cell has a missing neighbour
+     */
+    static long readMask(int state) {
+        return READ_MASKS[state];
+    }
+
+    /**
+     * Continues tracing a ray on a layout where only some cells are known to contain an atom or not, for as long
+     * as the path of the ray only depends on the known cells
+     *
+     * @param atoms the atom mask of the atoms in the known cells
+     * @param known the mask of the known cells, which must include NO_CELL_BIT
+     * @param state the state of the ray (see startState)
+     * @return the state where the ray stopped because it depends on a cell that is not known, or, if the ray
+     * left the board or was absorbed, -2 - outputPoint (so -1 for absorbed rays)
+     */
+    static int traceKnown(long atoms, long known, int state) {
+        while(state >= 0 && (READ_MASKS[state] & ~known) == 0) {
+            int cells = state * 4;
+            int mask = (int) (atoms >>> MASK_CELLS[cells] & 1)
+                    | (int) (atoms >>> MASK_CELLS[cells + 1] & 1) << 1
+                    | (int) (atoms >>> MASK_CELLS[cells + 2] & 1) << 2
+                    | (int) (atoms >>> MASK_CELLS[cells + 3] & 1) << 3;
+            state = STEPS[state * 16 + mask];
+        }
+        return state;
+    }
+
+    /**
+     * Continues tracing a ray like traceKnown, starting with the edge of the board case of its input point if it
+     * has not been decided yet
+     *
+     * @param atoms the atom mask of the atoms in the known cells
+     * @param known the mask of the known cells, which must include NO_CELL_BIT
+     * @param inputPoint the input point of the ray
+     * @param state the state of the ray (see startState), or EDGE_STATE before the ray enters the board
+     * @return EDGE_STATE if the edge of the board case depends on a cell that is not known, the state where the
+     * ray stopped because it depends on a cell that is not known, or, if the ray was reflected on the edge of the
+     * board, left the board or was absorbed, -2 - outputPoint (so -1 for absorbed rays)
+     */
+    static int advanceKnown(long atoms, long known, int inputPoint, int state) {
+        if(state == EDGE_STATE) {
+            long edge = EDGE_MASKS[inputPoint];
+            if((atoms & edge) != 0) {
+                return -2 - inputPoint;     // reflected on the edge of the board
+            }
+            if((edge & ~known) != 0) {
+                return EDGE_STATE;
+            }
+            state = startState(inputPoint);
+        }
+        return traceKnown(atoms, known, state);
+    }
+}
@@ -22,6 +22,14 @@ class NoAtomsTest {
         assertEquals(50, Ray.process(board, 15));
         assertEquals(33, Ray.process(board, 14));
     }
+
+    // the lookup-table engine must give the same results on these fixtures
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(50, RayTable.process(atoms, 15));
+        assertEquals(33, RayTable.process(atoms, 14));
+    }
 }
 
 class AbsorbedTest {
@@ -41,6 +49,13 @@ class AbsorbedTest {
         assertEquals(-1, Ray.process(board, 11));
         assertEquals(-1, Ray.process(board, 1));
     }
+
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(-1, RayTable.process(atoms, 11));
+        assertEquals(-1, RayTable.process(atoms, 1));
+    }
 }
 
 class ReflectionTest {
@@ -63,6 +78,13 @@ class ReflectionTest {
         assertEquals(10, Ray.process(board, 10));
         assertEquals(46, Ray.process(board, 46));
     }
+
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(10, RayTable.process(atoms, 10));
+        assertEquals(46, RayTable.process(atoms, 46));
+    }
 }
 
 class Deviation60Test {
@@ -89,6 +111,14 @@ class Deviation60Test {
     void testMultipleDeflections() {
         assertEquals(12, Ray.process(board, 41));
     }
+
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(32, RayTable.process(atoms, 40));
+        assertEquals(18, RayTable.process(atoms, 24));
+        assertEquals(12, RayTable.process(atoms, 41));
+    }
 }
 
 class Deviation120Test {
@@ -116,6 +146,13 @@ class Deviation120Test {
     void testMultipleDeflections() {
         assertEquals(32, Ray.process(board, 33));
     }
+
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(54, RayTable.process(atoms, 5));
+        assertEquals(32, RayTable.process(atoms, 33));
+    }
 }
 
 class EdgeTest {
@@ -136,6 +173,13 @@ class EdgeTest {
         assertEquals(12, Ray.process(board, 12));
         assertEquals(44, Ray.process(board, 44));
     }
+
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(12, RayTable.process(atoms, 12));
+        assertEquals(44, RayTable.process(atoms, 44));
+    }
 }
 
 class ComplexTest {
@@ -157,6 +201,12 @@ class ComplexTest {
     void testComplex() {
         assertEquals(14, Ray.process(board, 14));
     }
+
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(14, RayTable.process(atoms, 14));
+    }
 }
 
 class SymmetryTest {
@@ -178,6 +228,13 @@ class SymmetryTest {
         assertEquals(14, Ray.process(board, 1));
         assertEquals(1, Ray.process(board, 14));
     }
+
+    @Test
+    void testTableEngine() {
+        long atoms = BitBoard.fromBoard(board).atoms();
+        assertEquals(14, RayTable.process(atoms, 1));
+        assertEquals(1, RayTable.process(atoms, 14));
+    }
 }
 
 class RaySegmentTest {
@@ -194,12 +251,108 @@ class RaySegmentTest {
     @Test
     void testRaySegments() {
 
-        Cell testCell = board.getCells()[2][1];
-        ArrayList<RaySegment> raySegments = testCell.getRaySegments();
+        ArrayList<RaySegment> raySegments = board.getRayPaths().getSegments(board.cellIndex(2, 1));
 
         assertTrue(raySegments.contains(new RaySegment(1, 4)));
         assertTrue(raySegments.contains(new RaySegment(5, 2)));
 
     }
 
+    @Test
+    void testRayGroups() {
+        RayPaths rayPaths = board.getRayPaths();
+        assertEquals(2, rayPaths.getNumRays());
+        assertEquals(52, rayPaths.getInputPoint(0));
+        assertEquals(6, rayPaths.getInputPoint(1));
+        assertEquals(0, rayPaths.getRayStart(0));
+        assertEquals(rayPaths.getRayEnd(0), rayPaths.getRayStart(1));
+        assertEquals(rayPaths.getNumSegments(), rayPaths.getRayEnd(1));
+
+        // on an empty board, the ray from input point 6 crosses the 7 cells of row 2 from left to right
+        assertEquals(7, rayPaths.getRayEnd(1) - rayPaths.getRayStart(1));
+        assertEquals(RaySegment.pack(board.cellIndex(2, 0), 5, 2), rayPaths.getSegment(rayPaths.getRayStart(1)));
+    }
+}
+
+class SignatureTest {
+    Board board;
+
+    // test fixture
+    @BeforeEach
+    void constructBoard() {
+        board = new Board();
+        Cell[][] cells = board.getCells();
+        cells[1][2].setAtom();
+        cells[4][0].setAtom();
+        cells[7][1].setAtom();
+        cells[6][2].setAtom();
+    }
+
+    @Test
+    void testProcessAll() {
+        int[] signature = Ray.processAll(board);
+        assertEquals(54, signature.length);
+        for(int inputPoint = 1; inputPoint <= 54; inputPoint++) {
+            assertEquals(Ray.process(board, inputPoint), signature[inputPoint - 1]);
+        }
+    }
+
+    @Test
+    void testNoRaySegments() {
+        Ray.processAll(board);
+        assertEquals(0, board.getRayPaths().getNumRays());
+    }
+
+    @Test
+    void testBitBoardSignature() {
+        assertArrayEquals(Ray.processAll(board), BitBoard.fromBoard(board).processAll());
+    }
+}
+
+class PureTraceTest {
+    Board board;
+
+    // test fixture
+    @BeforeEach
+    void constructBoard() {
+        board = new Board();
+        Cell[][] cells = board.getCells();
+        cells[6][1].setAtom();
+        cells[1][1].setAtom();
+        cells[5][5].setAtom();
+        cells[7][3].setAtom();
+    }
+
+    @Test
+    void testNoSideEffects() {
+        assertEquals(12, Ray.trace(board, 41, null));
+        assertEquals(0, board.getRayPaths().getNumRays());
+    }
+
+    @Test
+    void testPathBuffer() {
+        int[] path = new int[64];
+        assertEquals(12, Ray.trace(board, 41, path));
+
+        // the path buffer must contain the same segments that Ray.process saves in the board's ray paths
+        Ray.process(board, 41);
+        RayPaths rayPaths = board.getRayPaths();
+        assertEquals(rayPaths.getNumSegments(), path[0]);
+        for(int i = 1; i <= path[0]; i++) {
+            assertEquals(rayPaths.getSegment(i - 1), path[i]);
+        }
+    }
+
+    @Test
+    void testSmallPathBuffer() {
+        int[] full = new int[64];
+        int[] small = new int[3];
+        Ray.trace(board, 41, full);
+        Ray.trace(board, 41, small);
+
+        // segments that don't fit are counted but not written
+        assertEquals(full[0], small[0]);
+        assertEquals(full[1], small[1]);
+        assertEquals(full[2], small[2]);
+    }
 }
@@ -0,0 +1,457 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Class that splits a census of layouts (see AmbiguityCensus) into shards that can run in separate processes or
+ * on separate machines sharing a directory, and survive being stopped and restarted. There is no coordinator: each
+ * shard is a fixed range of layout ranks (see LayoutCodec), worked on by one worker at a time, and the merge step
+ * only needs the files the workers leave in the job directory.
+ * <p>
+ * A worker traces its range in steps of checkpointInterval layouts. After each step, it writes the sorted keys of
+ * the layouts of the step (fingerprint bits above the rank, see AmbiguityCensus) to a run file, and then replaces
+ * the checkpoint file of the shard, which records how far the shard got, how many run files it has and the ray
+ * counts so far. The checkpoint is replaced by renaming a complete new file over it, so it always describes
+ * finished run files; a restarted worker continues after the last checkpoint, and overwrites a run file left behind
+ * by a step that did not finish.
+ * <p>
+ * Once every shard is complete, the merge step reads the run files of all shards in one k-way merge, so the
+ * layouts with the same signature are counted together wherever they were traced; the layouts of a group of keys
+ * with equal fingerprint bits are traced again, so they are grouped by their exact signatures. The statistics only
+ * depend on the layouts, not on how the work was split or in what order it was done.
+ * <p>
+ * Files in the job directory:
+ * <pre>
+ * shard-k.checkpoint  magic, version, number of atoms, number of shards, shard, first rank, end rank,
+ *                     next rank, number of run files, rays absorbed and reflected at each input point
+ * shard-k-n.run       magic, version, number of keys, keys in ascending order
+ * </pre>
+ */
+public class ShardedCensus {
+
+    static final int CHECKPOINT_MAGIC = 0x4242434B;    // "BBCK"
+    static final int RUN_MAGIC = 0x42424652;           // "BBFR"
+    static final int VERSION = 2;
+
+    // number of layouts traced between checkpoints by default, 32 MB of keys
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 1 << 22;
+
+    private final Path directory;
+    private final int numAtoms;
+    private final int numShards;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    private AmbiguityStats stats;
+
+    // the progress of a shard, as saved in its checkpoint file
+    private static class Checkpoint {
+        long first;
+        long end;
+        long next;
+        int runs;
+        final long[] absorbed = new long[BitBoard.NUM_PORTS + 1];
+        final long[] reflected = new long[BitBoard.NUM_PORTS + 1];
+    }
+
+    /**
+     * Constructs a job over all layouts with a number of atoms on the standard board
+     *
+     * @param directory the job directory, shared by all workers
+     * @param numAtoms the number of atoms, in the range 0-61
+     * @param numShards the number of shards the layouts are split into, at least 1
+     */
+    public ShardedCensus(String directory, int numAtoms, int numShards) {
+        if(numAtoms < 0 || numAtoms > BitBoard.NUM_CELLS || numShards < 1) {
+            throw new IllegalArgumentException("Invalid argument to ShardedCensus");
+        }
+        this.directory = Path.of(directory);
+        this.numAtoms = numAtoms;
+        this.numShards = numShards;
+    }
+
+    /**
+     * Sets how many layouts a worker traces between checkpoints: the work lost when a worker stops, and the
+     * memory it uses (8 bytes per layout)
+     * @param checkpointInterval the number of layouts, at least 1
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        if(checkpointInterval < 1 || checkpointInterval > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid checkpoint interval for ShardedCensus");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * @param shard a shard, in the range 0 to numShards-1, or numShards for the end of the last shard
+     * @return the rank of the first layout of the shard; the shard ends where the next one starts, and the shards
+     * differ in size by at most one layout
+     */
+    public long firstRank(int shard) {
+        if(shard < 0 || shard > numShards) {
+            throw new IllegalArgumentException("Invalid shard for ShardedCensus.firstRank");
+        }
+        long numLayouts = LayoutCodec.count(numAtoms);
+        return numLayouts / numShards * shard + Math.min(shard, numLayouts % numShards);
+    }
+
+    /**
+     * Works on a shard until it is complete, continuing from its last checkpoint if there is one
+     *
+     * @param shard the shard, in the range 0 to numShards-1
+     * @return 0 for success, 1 for checkpoint file formatting error (including a checkpoint of another job),
+     * 2 for general file error
+     */
+    public int work(int shard) {
+        return work(shard, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Works on a shard, stopping after the given number of checkpoints as if the worker had been stopped
+     * @return 0 for success, 1 for checkpoint file formatting error, 2 for general file error
+     */
+    int work(int shard, int maxCheckpoints) {
+        if(shard < 0 || shard >= numShards) {
+            throw new IllegalArgumentException("Invalid shard for ShardedCensus.work");
+        }
+
+        try {
+            Files.createDirectories(directory);
+            Checkpoint checkpoint;
+            if(Files.exists(checkpointPath(shard))) {
+                checkpoint = readCheckpoint(shard);
+                if(checkpoint == null) {
+                    return 1;
+                }
+            } else {
+                checkpoint = new Checkpoint();
+                checkpoint.first = firstRank(shard);
+                checkpoint.end = firstRank(shard + 1);
+                checkpoint.next = checkpoint.first;
+                writeCheckpoint(shard, checkpoint);     // so that an empty shard is complete too
+            }
+
+            AmbiguityCensus census = new AmbiguityCensus(numAtoms);
+            for(int step = 0; step < maxCheckpoints && checkpoint.next < checkpoint.end; step++) {
+                int count = (int) Math.min(checkpointInterval, checkpoint.end - checkpoint.next);
+                AtomicLongArray absorbed = new AtomicLongArray(BitBoard.NUM_PORTS + 1);
+                AtomicLongArray reflected = new AtomicLongArray(BitBoard.NUM_PORTS + 1);
+                long stepFirst = checkpoint.next;
+                int numChunks = (count + AmbiguityCensus.CHUNK_SIZE - 1) / AmbiguityCensus.CHUNK_SIZE;
+                long[][] chunks = IntStream.range(0, numChunks).parallel().mapToObj(chunk -> {
+                    int offset = chunk * AmbiguityCensus.CHUNK_SIZE;
+                    return census.traceChunk(stepFirst + offset, Math.min(AmbiguityCensus.CHUNK_SIZE, count - offset),
+                            0, absorbed, reflected);
+                }).toArray(long[][]::new);
+                long[] keys = AmbiguityCensus.concatenate(chunks);
+                Arrays.parallelSort(keys);
+
+                writeRun(runPath(shard, checkpoint.runs), keys);
+                checkpoint.runs++;
+                checkpoint.next += count;
+                for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                    checkpoint.absorbed[inputPoint] += absorbed.get(inputPoint);
+                    checkpoint.reflected[inputPoint] += reflected.get(inputPoint);
+                }
+                writeCheckpoint(shard, checkpoint);
+            }
+        } catch (IOException e) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * @param shard a shard, in the range 0 to numShards-1
+     * @return true if the checkpoint of the shard shows that all its layouts have been traced
+     */
+    public boolean isComplete(int shard) {
+        try {
+            Checkpoint checkpoint = Files.exists(checkpointPath(shard)) ? readCheckpoint(shard) : null;
+            return checkpoint != null && checkpoint.next == checkpoint.end;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Combines the run files and checkpoints of all shards into the statistics of the whole census (see
+     * getStats). Nothing is written, so the merge can be repeated.
+     *
+     * @return 0 for success, 1 for formatting error (including shards that are not complete), 2 for general file
+     * error
+     */
+    public int merge() {
+        stats = null;
+        AmbiguityStats merged = new AmbiguityStats(numAtoms);
+        long[] absorbed = new long[BitBoard.NUM_PORTS + 1];
+        long[] reflected = new long[BitBoard.NUM_PORTS + 1];
+        int numRuns = 0;
+        Checkpoint[] checkpoints = new Checkpoint[numShards];
+        try {
+            for(int shard = 0; shard < numShards; shard++) {
+                checkpoints[shard] = Files.exists(checkpointPath(shard)) ? readCheckpoint(shard) : null;
+                if(checkpoints[shard] == null || checkpoints[shard].next != checkpoints[shard].end) {
+                    return 1;
+                }
+                numRuns += checkpoints[shard].runs;
+                for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                    absorbed[inputPoint] += checkpoints[shard].absorbed[inputPoint];
+                    reflected[inputPoint] += checkpoints[shard].reflected[inputPoint];
+                }
+            }
+        } catch (IOException e) {
+            return 2;
+        }
+
+        DataInputStream[] runs = new DataInputStream[numRuns];
+        long[] remaining = new long[numRuns];
+        try {
+            int run = 0;
+            for(int shard = 0; shard < numShards; shard++) {
+                for(int n = 0; n < checkpoints[shard].runs; n++, run++) {
+                    runs[run] = new DataInputStream(new BufferedInputStream(
+                            Files.newInputStream(runPath(shard, n)), 1 << 16));
+                    if(runs[run].readInt() != RUN_MAGIC || runs[run].readInt() != VERSION) {
+                        return 1;
+                    }
+                    remaining[run] = runs[run].readLong();
+                    if(remaining[run] < 0) {
+                        return 1;
+                    }
+                }
+            }
+            AmbiguityCensus census = new AmbiguityCensus(numAtoms);
+            if(mergeRuns(runs, remaining, census, merged) != LayoutCodec.count(numAtoms)) {     // or -1 if not sorted
+                return 1;
+            }
+        } catch (EOFException e) {
+            return 1;
+        } catch (IOException e) {
+            return 2;
+        } finally {
+            for(DataInputStream in : runs) {
+                if(in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                        // only read from
+                    }
+                }
+            }
+        }
+
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            merged.addRays(inputPoint, absorbed[inputPoint], reflected[inputPoint]);
+        }
+        stats = merged;
+        return 0;
+    }
+
+    /**
+     * @return the statistics of the last successful merge, or null if there was none
+     */
+    public AmbiguityStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Merges sorted runs of keys, keeping the index of the run with the smallest next key at the top of a binary
+     * heap, and records the groups of keys with equal fingerprint bits as classes (see AmbiguityCensus.addClasses)
+     * @return the number of keys merged, or -1 if a run is not in ascending order
+     */
+    private static long mergeRuns(DataInputStream[] runs, long[] remaining, AmbiguityCensus census,
+            AmbiguityStats stats) throws IOException {
+        long[] heads = new long[runs.length];
+        int[] heap = new int[runs.length];
+        int size = 0;
+        for(int run = 0; run < runs.length; run++) {
+            if(remaining[run] > 0) {
+                heads[run] = runs[run].readLong();
+                remaining[run]--;
+                heap[size] = run;
+                siftUp(heap, heads, size++);
+            }
+        }
+
+        long total = 0;
+        long[] group = new long[16];    // the keys with the fingerprint bits of the current group
+        int groupSize = 0;
+        while(size > 0) {
+            int run = heap[0];
+            long key = heads[run];
+            if(groupSize > 0 && key < group[groupSize - 1]) {
+                return -1;
+            }
+            if(groupSize > 0 && !census.sameFingerprint(key, group[0])) {
+                census.addClasses(group, 0, groupSize, stats);
+                groupSize = 0;
+            }
+            if(groupSize == group.length) {
+                group = Arrays.copyOf(group, groupSize * 2);
+            }
+            group[groupSize++] = key;
+            total++;
+
+            if(remaining[run] > 0) {
+                heads[run] = runs[run].readLong();
+                remaining[run]--;
+            } else {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, heads, 0, size);
+        }
+        if(groupSize > 0) {
+            census.addClasses(group, 0, groupSize, stats);
+        }
+        return total;
+    }
+
+    private static void siftUp(int[] heap, long[] heads, int i) {
+        while(i > 0 && heads[heap[i]] < heads[heap[(i - 1) / 2]]) {
+            swap(heap, i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private static void siftDown(int[] heap, long[] heads, int i, int size) {
+        while(2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if(child + 1 < size && heads[heap[child + 1]] < heads[heap[child]]) {
+                child++;
+            }
+            if(heads[heap[child]] >= heads[heap[i]]) {
+                return;
+            }
+            swap(heap, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int temp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = temp;
+    }
+
+    private Path checkpointPath(int shard) {
+        return directory.resolve("shard-" + shard + ".checkpoint");
+    }
+
+    private Path runPath(int shard, int run) {
+        return directory.resolve("shard-" + shard + "-" + run + ".run");
+    }
+
+    // reads the checkpoint of a shard, returning null if it is not a valid checkpoint of this job and shard
+    private Checkpoint readCheckpoint(int shard) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(checkpointPath(shard))))) {
+            if(in.readInt() != CHECKPOINT_MAGIC || in.readInt() != VERSION || in.readInt() != numAtoms
+                    || in.readInt() != numShards || in.readInt() != shard) {
+                return null;
+            }
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.first = in.readLong();
+            checkpoint.end = in.readLong();
+            checkpoint.next = in.readLong();
+            checkpoint.runs = in.readInt();
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                checkpoint.absorbed[inputPoint] = in.readLong();
+                checkpoint.reflected[inputPoint] = in.readLong();
+            }
+            if(checkpoint.first != firstRank(shard) || checkpoint.end != firstRank(shard + 1)
+                    || checkpoint.next < checkpoint.first || checkpoint.next > checkpoint.end || checkpoint.runs < 0
+                    || in.read() != -1) {
+                return null;
+            }
+            return checkpoint;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // writes a checkpoint to a temporary file, which then replaces the checkpoint of the shard in one step
+    private void writeCheckpoint(int shard, Checkpoint checkpoint) throws IOException {
+        Path temporary = directory.resolve("shard-" + shard + ".checkpoint.tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numAtoms);
+            out.writeInt(numShards);
+            out.writeInt(shard);
+            out.writeLong(checkpoint.first);
+            out.writeLong(checkpoint.end);
+            out.writeLong(checkpoint.next);
+            out.writeInt(checkpoint.runs);
+            for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+                out.writeLong(checkpoint.absorbed[inputPoint]);
+                out.writeLong(checkpoint.reflected[inputPoint]);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        try {
+            Files.move(temporary, checkpointPath(shard), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, checkpointPath(shard), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // writes a run file, making sure it is on disk before a checkpoint refers to it
+    private static void writeRun(Path path, long[] keys) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(path.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(RUN_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(keys.length);
+            for(long key : keys) {
+                out.writeLong(key);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * Runs a worker or the merge step of a job from the command line
+     * Usage: ShardedCensus work directory numShards shard [numAtoms] [checkpointInterval]
+     *        ShardedCensus merge directory numShards filename [numAtoms]
+     */
+    public static void main(String[] args) {
+        if(args.length < 4 || !(args[0].equals("work") || args[0].equals("merge"))) {
+            System.out.println("Usage: ShardedCensus work directory numShards shard [numAtoms] [checkpointInterval]");
+            System.out.println("       ShardedCensus merge directory numShards filename [numAtoms]");
+            return;
+        }
+
+        int numAtoms = args.length > 4 ? Integer.parseInt(args[4]) : 6;
+        ShardedCensus job = new ShardedCensus(args[1], numAtoms, Integer.parseInt(args[2]));
+        if(args[0].equals("work")) {
+            if(args.length > 5) {
+                job.setCheckpointInterval(Long.parseLong(args[5]));
+            }
+            int shard = Integer.parseInt(args[3]);
+            int status = job.work(shard);
+            System.out.println(status == 0 ? "Shard " + shard + " complete"
+                    : status == 1 ? "Invalid checkpoint for shard " + shard
+                    : "Could not read or write the files of shard " + shard);
+            System.exit(status);
+        }
+
+        int status = job.merge();
+        if(status != 0) {
+            System.out.println(status == 1 ? "Not all shards are complete and valid"
+                    : "Could not read the files of the job");
+            System.exit(status);
+        }
+        if(job.getStats().save(args[3]) != 0) {
+            System.out.println("Could not write the statistics to " + args[3]);
+            System.exit(2);
+        }
+        System.out.println(job.getStats().getUniqueLayouts() + " of " + job.getStats().getNumLayouts()
+                + " layouts are unique, " + job.getStats().getNumClasses() + " signatures");
+    }
+}
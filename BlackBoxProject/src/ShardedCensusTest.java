@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedCensusTest {
+
+    private static final int NUM_ATOMS = 4;
+
+    private static AmbiguityStats expected;
+
+    @TempDir
+    Path directory;
+
+    // test fixture: the statistics of a census done in one go
+    @BeforeEach
+    void runCensus() {
+        if(expected == null) {
+            expected = new AmbiguityCensus(NUM_ATOMS).run();
+        }
+    }
+
+    private static void assertStatsEqual(AmbiguityStats expected, AmbiguityStats actual) {
+        assertEquals(expected.getNumLayouts(), actual.getNumLayouts());
+        assertEquals(expected.getNumClasses(), actual.getNumClasses());
+        assertEquals(expected.getClassSizes(), actual.getClassSizes());
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            assertEquals(expected.getAbsorbed(inputPoint), actual.getAbsorbed(inputPoint));
+            assertEquals(expected.getReflected(inputPoint), actual.getReflected(inputPoint));
+        }
+    }
+
+    private ShardedCensus createJob(int numShards) {
+        ShardedCensus job = new ShardedCensus(directory.toString(), NUM_ATOMS, numShards);
+        job.setCheckpointInterval(50000);
+        return job;
+    }
+
+    @Test
+    void testShards() {
+        ShardedCensus job = createJob(3);
+        assertEquals(0, job.firstRank(0));
+        assertEquals(LayoutCodec.count(NUM_ATOMS), job.firstRank(3));
+        for(int shard = 2; shard >= 0; shard--) {      // the order of the shards does not matter
+            assertFalse(job.isComplete(shard));
+            assertEquals(0, job.work(shard));
+            assertTrue(job.isComplete(shard));
+        }
+        assertEquals(0, job.merge());
+        assertStatsEqual(expected, job.getStats());
+    }
+
+    @Test
+    void testRestart() throws IOException {
+        ShardedCensus job = createJob(2);
+        assertEquals(0, job.work(0, 2));
+        assertFalse(job.isComplete(0));
+        assertEquals(0, job.work(1));
+        assertEquals(1, job.merge());
+        assertNull(job.getStats());
+
+        // a step that was stopped before its checkpoint leaves a run file behind, which is overwritten
+        Files.write(directory.resolve("shard-0-2.run"), new byte[]{1, 2, 3});
+        assertEquals(0, createJob(2).work(0));
+        assertTrue(job.isComplete(0));
+        assertEquals(0, job.merge());
+        assertStatsEqual(expected, job.getStats());
+
+        // working on a complete shard again changes nothing
+        assertEquals(0, job.work(0));
+        assertEquals(0, job.merge());
+        assertStatsEqual(expected, job.getStats());
+    }
+
+    // runs one worker process for each shard at the same time, with the classes of this test
+    @Test
+    void testProcesses() throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = Path.of(ShardedCensus.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                + File.pathSeparator + System.getProperty("java.class.path");
+        ArrayList<Process> workers = new ArrayList<>();
+        for(int shard = 0; shard < 3; shard++) {
+            workers.add(new ProcessBuilder(java, "-cp", classPath, "ShardedCensus",
+                    "work", directory.toString(), "3", Integer.toString(shard), Integer.toString(NUM_ATOMS), "60000")
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectErrorStream(true).start());
+        }
+        for(Process worker : workers) {
+            assertTrue(worker.waitFor(2, TimeUnit.MINUTES));
+            assertEquals(0, worker.exitValue());
+        }
+
+        ShardedCensus job = new ShardedCensus(directory.toString(), NUM_ATOMS, 3);
+        assertEquals(0, job.merge());
+        assertStatsEqual(expected, job.getStats());
+    }
+
+    @Test
+    void testMoreShardsThanLayouts() {
+        ShardedCensus job = new ShardedCensus(directory.toString(), 1, 100);
+        for(int shard = 0; shard < 100; shard++) {
+            assertEquals(0, job.work(shard));
+        }
+        assertEquals(0, job.merge());
+        assertStatsEqual(new AmbiguityCensus(1).run(), job.getStats());
+    }
+
+    @Test
+    void testInvalidFiles() throws IOException {
+        ShardedCensus job = createJob(2);
+        assertEquals(0, job.work(0));
+        assertEquals(0, job.work(1));
+
+        // a checkpoint of another job
+        assertEquals(1, new ShardedCensus(directory.toString(), NUM_ATOMS, 3).work(0));
+        assertEquals(1, new ShardedCensus(directory.toString(), NUM_ATOMS + 1, 2).merge());
+
+        Files.write(directory.resolve("shard-1-0.run"), new byte[]{1, 2, 3});
+        assertEquals(1, job.merge());
+        Files.delete(directory.resolve("shard-1-0.run"));
+        assertEquals(2, job.merge());
+
+        Files.write(directory.resolve("shard-0.checkpoint"), new byte[]{1, 2, 3});
+        assertEquals(1, job.work(0));
+        assertFalse(job.isComplete(0));
+
+        File file = directory.resolve("file").toFile();
+        assertTrue(file.createNewFile());
+        assertEquals(2, new ShardedCensus(file.getPath(), NUM_ATOMS, 2).work(0));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedCensus(directory.toString(), -1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedCensus(directory.toString(), 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> createJob(2).work(2));
+        assertThrows(IllegalArgumentException.class, () -> createJob(2).setCheckpointInterval(0));
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * Class that searches for the layouts of atoms on the standard board that give a certain signature (the results
+ * of the rays entering at all 54 input points, see Ray.processAll). A layout can be solved by the player only if
+ * no other layout with the same number of atoms gives the same signature.
+ * <p>
+ * The search decides the cells one by one, in index order, as either empty or containing an atom. After each
+ * decision, the rays whose paths only depend on the decided cells are traced further, and the search backtracks
+ * as soon as one of them gives a different result than the signature.
+ * <p>
+ * The game and the puzzle generator use UniquenessChecker and LayoutEnumerator, which prune the search much
+ * harder. This search is kept, package-private, as the reference that the tests check those classes against: it
+ * only relies on RayTable.advanceKnown and decides the cells in a fixed order, so it is simple enough to trust.
+ */
+class SignatureSearch {
+
+    // ray status for finished rays; the other rays have a state (see RayTable.advanceKnown)
+    private static final int DONE = Integer.MIN_VALUE;
+
+    private static final long ALL_CELLS = (1L << BitBoard.NUM_CELLS) - 1;
+
+    private final int[] signature;
+    private final int numAtoms;
+    private final long limit;
+
+    // rayStates[depth][inputPoint] stores the state where the ray stopped after depth cells were decided (see
+    // RayTable.advanceKnown), or DONE
+    private final int[][] rayStates = new int[BitBoard.NUM_CELLS + 1][BitBoard.NUM_PORTS + 1];
+
+    private long found;
+
+    private SignatureSearch(int[] signature, int numAtoms, long limit) {
+        this.signature = signature;
+        this.numAtoms = numAtoms;
+        this.limit = limit;
+    }
+
+    /**
+     * Counts the layouts with the given number of atoms that give the given signature, stopping once the limit
+     * is reached
+     *
+     * @param signature the output point of the ray entering at each input point, at index inputPoint-1
+     * @param numAtoms the number of atoms of the layouts
+     * @param limit the number of layouts after which the search stops
+     * @return the number of layouts found, at most limit
+     */
+    static long countLayouts(int[] signature, int numAtoms, long limit) {
+        if(signature == null || signature.length != BitBoard.NUM_PORTS || numAtoms < 0
+                || numAtoms > BitBoard.NUM_CELLS || limit <= 0) {
+            throw new IllegalArgumentException("Invalid argument to SignatureSearch.countLayouts");
+        }
+
+        SignatureSearch search = new SignatureSearch(signature, numAtoms, limit);
+        Arrays.fill(search.rayStates[0], RayTable.EDGE_STATE);
+        search.search(0, 0, 0);
+        return search.found;
+    }
+
+    /**
+     * Checks whether a layout can be told apart from every other layout with the same number of atoms using the
+     * results of all 54 rays
+     * @param atoms the atom mask of a bit board
+     */
+    static boolean isUnique(long atoms) {
+        return countLayouts(RayTable.processAll(atoms), Long.bitCount(atoms), 2) == 1;
+    }
+
+    private void search(int depth, long atoms, int count) {
+        // once the number of atoms left fits only one way (all empty or all atoms), every cell is known
+        int cellsLeft = BitBoard.NUM_CELLS - depth;
+        if(count == numAtoms || cellsLeft == numAtoms - count) {
+            long full = count == numAtoms ? atoms : atoms | (ALL_CELLS & ~((1L << depth) - 1));
+            if(advanceAll(rayStates[depth], rayStates[BitBoard.NUM_CELLS], full, ALL_CELLS | RayTable.NO_CELL_BIT)) {
+                found++;
+            }
+            return;
+        }
+
+        long known = (1L << (depth + 1)) - 1 | RayTable.NO_CELL_BIT;
+        for(int atom = 0; atom <= 1 && found < limit; atom++) {
+            long nextAtoms = atoms | (long) atom << depth;
+            if(advanceAll(rayStates[depth], rayStates[depth + 1], nextAtoms, known)) {
+                search(depth + 1, nextAtoms, count + atom);
+            }
+        }
+    }
+
+    // advances every unfinished ray as far as the known cells allow, returning false if one of them does not
+    // agree with the signature
+    private boolean advanceAll(int[] from, int[] to, long atoms, long known) {
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            int state = from[inputPoint];
+            if(state != DONE) {
+                state = RayTable.advanceKnown(atoms, known, inputPoint, state);
+                if(state < 0) {
+                    if(-2 - state != signature[inputPoint - 1]) {
+                        return false;
+                    }
+                    state = DONE;
+                }
+            }
+            to[inputPoint] = state;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureSearchTest {
+
+    // counts the layouts with each signature by tracing every layout with the given number of atoms
+    private static HashMap<String, Integer> countAll(int numAtoms) {
+        HashMap<String, Integer> counts = new HashMap<>();
+        countAll(0, numAtoms, 0L, counts);
+        return counts;
+    }
+
+    private static void countAll(int firstCell, int atomsLeft, long atoms, HashMap<String, Integer> counts) {
+        if(atomsLeft == 0) {
+            counts.merge(Arrays.toString(RayTable.processAll(atoms)), 1, Integer::sum);
+            return;
+        }
+        for(int cell = firstCell; cell < BitBoard.NUM_CELLS; cell++) {
+            countAll(cell + 1, atomsLeft - 1, atoms | 1L << cell, counts);
+        }
+    }
+
+    @Test
+    void testAgainstBruteForce() {
+        for(int numAtoms = 1; numAtoms <= 2; numAtoms++) {
+            HashMap<String, Integer> counts = countAll(numAtoms);
+            for(int first = 0; first < BitBoard.NUM_CELLS; first += 3) {
+                for(int second = first + 1; second < BitBoard.NUM_CELLS; second += 5) {
+                    long atoms = numAtoms == 1 ? 1L << first : 1L << first | 1L << second;
+                    int[] signature = RayTable.processAll(atoms);
+                    assertEquals((long) counts.get(Arrays.toString(signature)),
+                            SignatureSearch.countLayouts(signature, numAtoms, Long.MAX_VALUE), Long.toHexString(atoms));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testLimit() {
+        // four atoms around an empty cell hide it, so its content cannot be found from the rays
+        Board board = new Board();
+        long atoms = 0;
+        for(int pos : new int[]{0, 1, 3, 4}) {
+            atoms |= 1L << board.getTopology().getNeighbour(30, pos);
+        }
+        int[] signature = RayTable.processAll(atoms);
+        assertTrue(SignatureSearch.countLayouts(signature, 4, Long.MAX_VALUE) >= 1);
+        assertEquals(1, SignatureSearch.countLayouts(signature, 4, 1));
+    }
+
+    @Test
+    void testIsUnique() {
+        assertTrue(SignatureSearch.isUnique(0));
+        assertTrue(SignatureSearch.isUnique(1L << 30));
+
+        // a ring of six atoms around the centre gives the same results whether the centre has an atom or not, but
+        // the two layouts have a different number of atoms, so each is unique
+        long ring = 0;
+        for(int pos = 0; pos < 6; pos++) {
+            ring |= 1L << new Board().getTopology().getNeighbour(30, pos);
+        }
+        assertArrayEquals(RayTable.processAll(ring), RayTable.processAll(ring | 1L << 30));
+        assertTrue(SignatureSearch.isUnique(ring));
+
+
+        // with atoms in cells 1 and 4, the rays cannot tell whether the third atom is in cell 2 or cell 3
+        long first = 1L << 1 | 1L << 2 | 1L << 4 | 1L << 8;
+        long second = 1L << 1 | 1L << 3 | 1L << 4 | 1L << 8;
+        assertArrayEquals(RayTable.processAll(first), RayTable.processAll(second));
+        assertFalse(SignatureSearch.isUnique(first));
+        assertFalse(SignatureSearch.isUnique(second));
+        assertEquals(2, SignatureSearch.countLayouts(RayTable.processAll(first), 4, Long.MAX_VALUE));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        int[] signature = RayTable.processAll(0);
+        assertThrows(IllegalArgumentException.class, () -> SignatureSearch.countLayouts(null, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> SignatureSearch.countLayouts(new int[3], 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> SignatureSearch.countLayouts(signature, 62, 1));
+        assertThrows(IllegalArgumentException.class, () -> SignatureSearch.countLayouts(signature, 1, 0));
+    }
+}
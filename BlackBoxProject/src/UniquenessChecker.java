@@ -0,0 +1,91 @@
+import java.util.Iterator;
+
+/**
+ * Class that checks whether a layout of atoms on the standard board can be solved by the player: either it proves
+ * that no other layout with the same number of atoms gives the same results for all 54 rays (the signature, see
+ * Ray.processAll), or it finds such a layout.
+ * <p>
+ * Before searching, the signature alone rules out atoms in some cells: a ray that is not reflected cannot have an
+ * atom in the cell it enters first, nor at the edge of the board next to it. The remaining cells are searched by a
+ * LayoutEnumerator over all 54 rays, which traces the rays along with the decisions and cuts a branch as soon as one
+ * ray disagrees, and the search stops at the first layout other than the one checked.
+ */
+public class UniquenessChecker {
+
+    /**
+     * Result of findCollision for layouts that no other layout shares the signature with
+     */
+    public static final long UNIQUE = -1;
+
+    /**
+     * Searches for another layout with the same number of atoms and the same signature as the given layout
+     *
+     * @param atoms the atom mask of a bit board
+     * @return the atom mask of another layout with the same signature, or UNIQUE if there is none
+     */
+    public static long findCollision(long atoms) {
+        return findCollision(atoms, RayTable.processAll(atoms));
+    }
+
+    /**
+     * Searches for another layout with the same number of atoms and the same signature as the given layout, when
+     * its signature has already been computed
+     *
+     * @param atoms the atom mask of a bit board
+     * @param signature the output point of the ray entering the layout at each input point, at index inputPoint-1
+     * @return the atom mask of another layout with the same signature, or UNIQUE if there is none
+     */
+    public static long findCollision(long atoms, int[] signature) {
+        if(signature == null || signature.length != BitBoard.NUM_PORTS) {
+            throw new IllegalArgumentException("Invalid signature for UniquenessChecker.findCollision");
+        }
+
+        LayoutEnumerator enumerator = new LayoutEnumerator(Long.bitCount(atoms));
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            enumerator.addObservation(inputPoint, signature[inputPoint - 1]);
+        }
+        enumerator.setKnownCells(0, emptyCells(signature));
+
+        Iterator<Long> layouts = enumerator.iterator();
+        while(layouts.hasNext()) {
+            long layout = layouts.next();
+            if(layout != atoms) {
+                return layout;
+            }
+        }
+        return UNIQUE;
+    }
+
+    /**
+     * Searches for another layout with the same number of atoms and the same signature as the atoms of a board
+     * @param board a board of the standard size
+     * @return the atom mask of another layout with the same signature, or UNIQUE if there is none
+     */
+    public static long findCollision(Board board) {
+        return findCollision(BitBoard.fromBoard(board).atoms());
+    }
+
+    /**
+     * Checks whether the atoms of a board can be told apart from every other layout with the same number of atoms
+     * using the results of all 54 rays
+     * @param board a board of the standard size
+     */
+    public static boolean isUnique(Board board) {
+        return findCollision(board) == UNIQUE;
+    }
+
+    /**
+     * @param signature the output point of the ray entering at each input point, at index inputPoint-1
+     * @return the atom mask of the cells that are empty in every layout giving the signature, as far as can be
+     * told from each ray on its own without tracing it
+     */
+    static long emptyCells(int[] signature) {
+        long empty = 0;
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            if(signature[inputPoint - 1] != inputPoint) {
+                empty |= RayTable.edgeMask(inputPoint);     // not reflected, so the input cell is empty too
+            }
+        }
+        return empty;
+    }
+}
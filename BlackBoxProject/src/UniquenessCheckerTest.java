@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniquenessCheckerTest {
+
+    // two 4-atom layouts that give the same signature
+    private static final long FIRST = 1L << 1 | 1L << 2 | 1L << 4 | 1L << 8;
+    private static final long SECOND = 1L << 1 | 1L << 3 | 1L << 4 | 1L << 8;
+
+    @Test
+    void testCollision() {
+        assertArrayEquals(RayTable.processAll(FIRST), RayTable.processAll(SECOND));
+        assertEquals(SECOND, UniquenessChecker.findCollision(FIRST));
+        assertEquals(FIRST, UniquenessChecker.findCollision(SECOND));
+        assertFalse(UniquenessChecker.isUnique(new BitBoard(FIRST).toBoard()));
+        assertEquals(SECOND, UniquenessChecker.findCollision(new BitBoard(FIRST).toBoard()));
+    }
+
+    @Test
+    void testAgainstSignatureSearch() {
+        int ambiguous = 0;
+        for(long atoms : new LayoutGenerator(22).generate(300, 6)) {
+            int[] signature = RayTable.processAll(atoms);
+            long collision = UniquenessChecker.findCollision(atoms, signature);
+            assertEquals(SignatureSearch.isUnique(atoms), collision == UniquenessChecker.UNIQUE);
+            if(collision != UniquenessChecker.UNIQUE) {
+                ambiguous++;
+                assertNotEquals(atoms, collision);
+                assertEquals(6, Long.bitCount(collision));
+                assertArrayEquals(signature, RayTable.processAll(collision));
+            }
+        }
+        assertTrue(ambiguous > 0);
+    }
+
+    @Test
+    void testUniqueBoard() {
+        Board board = new BitBoard(1L << 10 | 1L << 33 | 1L << 52).toBoard();
+        assertTrue(UniquenessChecker.isUnique(board));
+        assertEquals(UniquenessChecker.UNIQUE, UniquenessChecker.findCollision(board));
+        assertEquals(UniquenessChecker.UNIQUE, UniquenessChecker.findCollision(0L));
+    }
+
+    @Test
+    void testEmptyCells() {
+        for(long atoms : new LayoutGenerator(23).generate(2000, 6)) {
+            assertEquals(0, UniquenessChecker.emptyCells(RayTable.processAll(atoms)) & atoms);
+        }
+        // with no atoms, no ray is reflected or absorbed, so every edge and entry cell is empty
+        long empty = UniquenessChecker.emptyCells(RayTable.processAll(0L));
+        for(int inputPoint = 1; inputPoint <= BitBoard.NUM_PORTS; inputPoint++) {
+            assertTrue((empty >>> BitBoard.INPUT_CELLS[inputPoint] & 1) != 0);
+        }
+    }
+
+    @Test
+    void testInvalidSignature() {
+        assertThrows(IllegalArgumentException.class, () -> UniquenessChecker.findCollision(FIRST, null));
+        int[] signature = Arrays.copyOf(RayTable.processAll(FIRST), BitBoard.NUM_PORTS - 1);
+        assertThrows(IllegalArgumentException.class, () -> UniquenessChecker.findCollision(FIRST, signature));
+    }
+}